@@ -0,0 +1,134 @@
+package entregaUno;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Interns byte-sequence keys (such as product IDs) into dense int indices.
+ * Keys get consecutive indices 0, 1, 2... in the order they are first added,
+ * so callers can keep per-key data in plain primitive arrays. Lookups take a
+ * slice of an existing byte array, so a key read by {@link ByteRecordReader}
+ * is resolved without building a String. The index is filled while the
+ * catalogs load and is read-only afterwards, which makes concurrent lookups
+ * safe.
+ */
+final class ByteKeyIndex implements CatalogIndex {
+
+    private byte[][] keys;
+    private int[] hashes;
+    private int[] indices;
+    private int size;
+    private int mask;
+
+    public ByteKeyIndex() {
+        this(16);
+    }
+
+    public ByteKeyIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new byte[capacity][];
+        hashes = new int[capacity];
+        indices = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Interns the UTF-8 bytes of a key
+     * @param key the key
+     * @return the key's index, either new or the one it already had
+     */
+    public int add(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        return add(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Interns the key stored in bytes[from, to)
+     * @param bytes the array holding the key
+     * @param from first index, inclusive
+     * @param to last index, exclusive
+     * @return the key's index, either new or the one it already had
+     */
+    public int add(byte[] bytes, int from, int to) {
+        int hash = hash(bytes, from, to);
+        int slot = find(bytes, from, to, hash);
+        if (keys[slot] != null) {
+            return indices[slot];
+        }
+        keys[slot] = Arrays.copyOfRange(bytes, from, to);
+        hashes[slot] = hash;
+        indices[slot] = size;
+        int index = size++;
+        if (size * 2 > keys.length) {
+            grow();
+        }
+        return index;
+    }
+
+    /**
+     * Looks up the key stored in bytes[from, to)
+     * @param bytes the array holding the key
+     * @param from first index, inclusive
+     * @param to last index, exclusive
+     * @return the key's index, or NOT_FOUND
+     */
+    @Override
+    public int get(byte[] bytes, int from, int to) {
+        int slot = find(bytes, from, to, hash(bytes, from, to));
+        return keys[slot] != null ? indices[slot] : NOT_FOUND;
+    }
+
+    /**
+     * @return the slot holding the key, or the empty slot where it would go
+     */
+    private int find(byte[] bytes, int from, int to, int hash) {
+        int slot = hash & mask;
+        byte[] key;
+        while ((key = keys[slot]) != null) {
+            if (hashes[slot] == hash && Arrays.equals(key, 0, key.length, bytes, from, to)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        byte[][] oldKeys = keys;
+        int[] oldHashes = hashes;
+        int[] oldIndices = indices;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                hashes[slot] = oldHashes[i];
+                indices[slot] = oldIndices[i];
+            }
+        }
+    }
+
+    /**
+     * @return the number of distinct keys
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + bytes[i];
+        }
+        // Spread the high bits, the table index only uses the low ones
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,321 @@
+package entregaUno;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Line and field tokenizer for the sales and catalog files.
+ * Reads straight from a byte channel into a reusable buffer and exposes the
+ * current line and its ':' separated fields as offsets into that buffer, so
+ * records can be parsed without creating Strings. A reader is meant to be
+ * reused for many files by a single thread.
+ */
+final class ByteRecordReader {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_FIELDS = 8;
+
+    // Returned by tryParseInt for anything Integer.parseInt would reject
+    public static final long INVALID_INT = Long.MIN_VALUE;
+
+    private byte[] buffer;
+    private ByteBuffer wrapper;
+    private ReadableByteChannel channel;
+    private boolean endOfInput;
+
+    // Valid bytes are buffer[position, limit)
+    private int position;
+    private int limit;
+
+    // Current line is buffer[lineStart, lineEnd), without the line terminator
+    private int lineStart;
+    private int lineEnd;
+
+    // The next nextLine() returns the current line again
+    private boolean replayLine;
+    // 1-based number of the current line since reset
+    private long lineNumber;
+
+    private final int[] fieldStarts = new int[MAX_FIELDS];
+    private final int[] fieldEnds = new int[MAX_FIELDS];
+    private int fieldCount;
+
+    public ByteRecordReader() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public ByteRecordReader(int bufferSize) {
+        buffer = new byte[bufferSize];
+        wrapper = ByteBuffer.wrap(buffer);
+    }
+
+    /**
+     * Starts reading a new input, discarding anything left from the previous one
+     * @param channel the channel to read from; it is not closed by the reader
+     */
+    public void reset(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.endOfInput = false;
+        this.position = 0;
+        this.limit = 0;
+        this.lineStart = 0;
+        this.lineEnd = 0;
+        this.fieldCount = 0;
+        this.replayLine = false;
+        this.lineNumber = 0;
+    }
+
+    /**
+     * Advances to the next line. Lines end with '\n' or "\r\n"; a last line
+     * without terminator is also returned.
+     * @return false when the input is exhausted
+     * @throws IOException if there's an error reading the channel
+     */
+    public boolean nextLine() throws IOException {
+        if (replayLine) {
+            replayLine = false;
+            fieldCount = 0;
+            return true;
+        }
+        int scan = position;
+        while (true) {
+            for (; scan < limit; scan++) {
+                if (buffer[scan] == '\n') {
+                    setLine(position, scan);
+                    position = scan + 1;
+                    return true;
+                }
+            }
+            int scanned = scan - position;
+            if (endOfInput || !fill()) {
+                if (position == limit) {
+                    return false;
+                }
+                setLine(position, limit);
+                position = limit;
+                return true;
+            }
+            // fill() moved the pending bytes to the start of the buffer
+            scan = position + scanned;
+        }
+    }
+
+    /**
+     * Steps back one line: the next call to nextLine() returns the current line
+     * again. Used to stop at a line that belongs to the next record group.
+     */
+    public void pushBack() {
+        replayLine = true;
+    }
+
+    /**
+     * @return the 1-based number of the current line since the last reset
+     */
+    public long lineNumber() {
+        return lineNumber;
+    }
+
+    private void setLine(int start, int end) {
+        lineNumber++;
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+        lineStart = start;
+        lineEnd = end;
+        fieldCount = 0;
+    }
+
+    /**
+     * Reads more bytes, compacting or growing the buffer so the pending partial
+     * line is kept
+     * @return false if the channel has no more data
+     */
+    private boolean fill() throws IOException {
+        int pending = limit - position;
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, pending);
+        } else if (pending == buffer.length) {
+            byte[] grown = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, pending);
+            buffer = grown;
+            wrapper = ByteBuffer.wrap(buffer);
+        }
+        position = 0;
+        limit = pending;
+
+        wrapper.clear().position(limit);
+        int read;
+        do {
+            read = channel.read(wrapper);
+        } while (read == 0);
+        if (read < 0) {
+            endOfInput = true;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    /**
+     * Splits the current line into ':' separated fields, ignoring a trailing ';'
+     * when requested. Like String.split, trailing empty fields are dropped.
+     * @param stripSemicolon whether a final ';' terminates the record
+     * @return the number of fields
+     */
+    public int splitFields(boolean stripSemicolon) {
+        int end = lineEnd;
+        if (stripSemicolon && end > lineStart && buffer[end - 1] == ';') {
+            end--;
+        }
+
+        int count = 0;
+        int start = lineStart;
+        for (int i = lineStart; i < end && count < MAX_FIELDS - 1; i++) {
+            if (buffer[i] == ':') {
+                fieldStarts[count] = start;
+                fieldEnds[count] = i;
+                count++;
+                start = i + 1;
+            }
+        }
+        fieldStarts[count] = start;
+        fieldEnds[count] = end;
+        count++;
+
+        while (count > 0 && fieldStarts[count - 1] == fieldEnds[count - 1]) {
+            count--;
+        }
+        fieldCount = count;
+        return count;
+    }
+
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    public int lineStart() {
+        return lineStart;
+    }
+
+    public int lineEnd() {
+        return lineEnd;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public int fieldStart(int index) {
+        return fieldStarts[index];
+    }
+
+    public int fieldEnd(int index) {
+        return fieldEnds[index];
+    }
+
+    /**
+     * Decodes the current line; only meant for catalog data and error messages
+     * @return the line as a String
+     */
+    public String lineAsString() {
+        return new String(buffer, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes a field of the current line; only meant for catalog data and error messages
+     * @param index the field index
+     * @return the field as a String
+     */
+    public String fieldAsString(int index) {
+        return new String(buffer, fieldStarts[index], fieldEnds[index] - fieldStarts[index], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses a field of the current line as an int, accepting the same input as Integer.parseInt
+     * @param index the field index
+     * @return the parsed value
+     * @throws NumberFormatException if the field is not a valid int
+     */
+    public int parseIntField(int index) {
+        return parseInt(buffer, fieldStarts[index], fieldEnds[index]);
+    }
+
+    /**
+     * Parses a field of the current line as an int without throwing
+     * @param index the field index
+     * @return the parsed value, or INVALID_INT if the field is not a valid int
+     */
+    public long tryParseIntField(int index) {
+        return tryParseInt(buffer, fieldStarts[index], fieldEnds[index]);
+    }
+
+    /**
+     * Parses a decimal-comma amount field of the current line into cents
+     * @param index the field index
+     * @return the amount in cents
+     * @throws NumberFormatException if the field is not a valid amount
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public long parseCentsField(int index) {
+        return Money.parseCents(buffer, fieldStarts[index], fieldEnds[index]);
+    }
+
+    /**
+     * Parses an int from ASCII digits with an optional sign
+     * @param bytes the source bytes
+     * @param from first index, inclusive
+     * @param to last index, exclusive
+     * @return the parsed value
+     * @throws NumberFormatException if the bytes are not a valid int
+     */
+    public static int parseInt(byte[] bytes, int from, int to) {
+        long value = tryParseInt(bytes, from, to);
+        if (value == INVALID_INT) {
+            throw invalidNumber(bytes, from, to);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses an int from ASCII digits with an optional sign, reporting invalid
+     * input through the return value: dirty data costs no exception
+     * @param bytes the source bytes
+     * @param from first index, inclusive
+     * @param to last index, exclusive
+     * @return the parsed value, or INVALID_INT if the bytes are not a valid int
+     */
+    public static long tryParseInt(byte[] bytes, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        if (i == to) {
+            return INVALID_INT;
+        }
+
+        // Accumulate negatively so Integer.MIN_VALUE can be represented
+        int limitValue = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int result = 0;
+        for (; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9 || result < limitValue / 10) {
+                return INVALID_INT;
+            }
+            result *= 10;
+            if (result < limitValue + digit) {
+                return INVALID_INT;
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    private static NumberFormatException invalidNumber(byte[] bytes, int from, int to) {
+        return new NumberFormatException("For input string: \""
+            + new String(bytes, from, to - from, StandardCharsets.UTF_8) + "\"");
+    }
+}
@@ -0,0 +1,23 @@
+package entregaUno;
+
+/**
+ * Lookup of catalog keys into dense indices. Implemented by the hash indices
+ * filled while the text catalogs are parsed and by the sorted index of a
+ * memory-mapped {@link CatalogSnapshot}; either way it is read-only once the
+ * catalog is loaded, so workers can look keys up concurrently.
+ */
+interface CatalogIndex {
+
+    int NOT_FOUND = -1;
+
+    /**
+     * Looks up the key stored in bytes[from, to)
+     * @return the key's index, or NOT_FOUND
+     */
+    int get(byte[] bytes, int from, int to);
+
+    /**
+     * @return the number of distinct keys
+     */
+    int size();
+}
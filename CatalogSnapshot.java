@@ -0,0 +1,376 @@
+package entregaUno;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Binary copy of the seller and product catalogs that is memory-mapped
+ * instead of parsed, so loading it costs the same for a hundred sellers as
+ * for ten million. The text catalogs remain the source of truth: the snapshot
+ * records their size and modification time and is ignored, to be rebuilt from
+ * the text, as soon as either changes.
+ *
+ * Layout (big-endian): a fixed header, then for each catalog fixed-width
+ * records in catalog index order with (offset, length) references into a
+ * shared UTF-8 string pool, and an index of record numbers sorted by key bytes
+ * that is binary searched in place. Product prices are a separate array of
+ * longs in cents. Sellers are decoded one at a time when a report asks for
+ * them; nothing is read up front except the header and the product prices.
+ *
+ * The file is written to a temporary file, synced and renamed, so a reader
+ * sees either the old or the new snapshot. Opening only checks the header and
+ * the section bounds; a checksum would have to read the whole file.
+ */
+final class CatalogSnapshot {
+
+    private static final int MAGIC = 0x45434154; // "ECAT"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 80;
+    // Key, name and last name references
+    private static final int SELLER_RECORD_SIZE = 24;
+    // Key and name references
+    private static final int PRODUCT_RECORD_SIZE = 16;
+    // Every sales line looks its product up: small product catalogs get a hash index built from the snapshot
+    private static final int MAX_HASHED_PRODUCTS = 1 << 16;
+
+    private final ByteBuffer buffer;
+    private final int sellerCount;
+    private final int productCount;
+    private final int sellerRecords;
+    private final int sellerOrder;
+    private final int productRecords;
+    private final int productOrder;
+    private final int productPrices;
+    private final int pool;
+
+    private CatalogSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        sellerCount = buffer.getInt(40);
+        productCount = buffer.getInt(44);
+        sellerRecords = buffer.getInt(48);
+        sellerOrder = buffer.getInt(52);
+        productRecords = buffer.getInt(56);
+        productOrder = buffer.getInt(60);
+        productPrices = buffer.getInt(64);
+        pool = buffer.getInt(68);
+        int poolLength = buffer.getInt(72);
+        if (sellerCount < 0 || productCount < 0
+                || sellerRecords != HEADER_SIZE
+                || sellerOrder != sellerRecords + (long) sellerCount * SELLER_RECORD_SIZE
+                || productRecords != sellerOrder + (long) sellerCount * 4
+                || productOrder != productRecords + (long) productCount * PRODUCT_RECORD_SIZE
+                || productPrices != productOrder + (long) productCount * 4
+                || pool != productPrices + (long) productCount * 8
+                || (long) pool + poolLength != buffer.capacity()) {
+            throw new IOException("secciones inconsistentes");
+        }
+    }
+
+    /**
+     * Maps a snapshot if it exists and was built from the current text catalogs
+     * @param file the snapshot file
+     * @param sellersFile the text seller catalog
+     * @param productsFile the text product catalog
+     * @return the snapshot, or null if it is missing, outdated or damaged
+     */
+    static CatalogSnapshot open(Path file, File sellersFile, File productsFile) {
+        if (!Files.isRegularFile(file) || !sellersFile.isFile() || !productsFile.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("tamaño inválido");
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                System.out.println("Instantánea del catálogo con otro formato, se reconstruye: " + file);
+                return null;
+            }
+            if (buffer.getLong(8) != sellersFile.length() || buffer.getLong(16) != sellersFile.lastModified()
+                    || buffer.getLong(24) != productsFile.length() || buffer.getLong(32) != productsFile.lastModified()) {
+                System.out.println("Catálogos modificados, se reconstruye la instantánea: " + file);
+                return null;
+            }
+            return new CatalogSnapshot(buffer);
+        } catch (IOException e) {
+            System.out.println("Instantánea del catálogo dañada, se reconstruye: " + file + " (" + e.getMessage() + ")");
+            return null;
+        }
+    }
+
+    /**
+     * Writes a snapshot of loaded catalogs, replacing the old one atomically
+     * @param file the snapshot file
+     * @param stamp size and modification time of the text catalogs, taken before they were read
+     * @param sellers the sellers, in index order
+     * @param products the products, in index order
+     * @throws IOException if the snapshot cannot be written or would exceed 2 GB
+     */
+    static void write(Path file, long[] stamp, List<SalesProcessor.Seller> sellers, List<SalesProcessor.Product> products)
+            throws IOException {
+        byte[][] sellerKeys = new byte[sellers.size()][];
+        for (int i = 0; i < sellerKeys.length; i++) {
+            SalesProcessor.Seller seller = sellers.get(i);
+            sellerKeys[i] = utf8(seller.getDocumentType() + ":" + seller.getDocumentNumber());
+        }
+        byte[][] productKeys = new byte[products.size()][];
+        for (int i = 0; i < productKeys.length; i++) {
+            productKeys[i] = utf8(products.get(i).getId());
+        }
+
+        long sellerOrder = HEADER_SIZE + (long) sellers.size() * SELLER_RECORD_SIZE;
+        long productRecords = sellerOrder + (long) sellers.size() * 4;
+        long productOrder = productRecords + (long) products.size() * PRODUCT_RECORD_SIZE;
+        long productPrices = productOrder + (long) products.size() * 4;
+        long pool = productPrices + (long) products.size() * 8;
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = directory.resolve(file.getFileName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temporary.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+            // Pool offsets are assigned in the order the strings are written below
+            long poolLength = 0;
+            for (int i = 0; i < sellerKeys.length; i++) {
+                poolLength += sellerKeys[i].length + utf8(sellers.get(i).getName()).length
+                    + utf8(sellers.get(i).getLastName()).length;
+            }
+            for (int i = 0; i < productKeys.length; i++) {
+                poolLength += productKeys[i].length + utf8(products.get(i).getName()).length;
+            }
+            if (pool + poolLength > Integer.MAX_VALUE) {
+                throw new IOException("el catálogo no cabe en una instantánea de 2 GB");
+            }
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for (long value : stamp) {
+                out.writeLong(value);
+            }
+            out.writeInt(sellers.size());
+            out.writeInt(products.size());
+            out.writeInt(HEADER_SIZE);
+            out.writeInt((int) sellerOrder);
+            out.writeInt((int) productRecords);
+            out.writeInt((int) productOrder);
+            out.writeInt((int) productPrices);
+            out.writeInt((int) pool);
+            out.writeInt((int) poolLength);
+            out.writeInt(0);
+
+            int offset = 0;
+            for (int i = 0; i < sellerKeys.length; i++) {
+                offset = writeReference(out, offset, sellerKeys[i].length);
+                offset = writeReference(out, offset, utf8(sellers.get(i).getName()).length);
+                offset = writeReference(out, offset, utf8(sellers.get(i).getLastName()).length);
+            }
+            writeOrder(out, sellerKeys);
+            for (int i = 0; i < productKeys.length; i++) {
+                offset = writeReference(out, offset, productKeys[i].length);
+                offset = writeReference(out, offset, utf8(products.get(i).getName()).length);
+            }
+            writeOrder(out, productKeys);
+            for (SalesProcessor.Product product : products) {
+                out.writeLong(product.getPriceCents());
+            }
+
+            for (int i = 0; i < sellerKeys.length; i++) {
+                out.write(sellerKeys[i]);
+                out.write(utf8(sellers.get(i).getName()));
+                out.write(utf8(sellers.get(i).getLastName()));
+            }
+            for (int i = 0; i < productKeys.length; i++) {
+                out.write(productKeys[i]);
+                out.write(utf8(products.get(i).getName()));
+            }
+            out.flush();
+            // Make the data durable before the rename makes it visible
+            stream.getFD().sync();
+        }
+        SalesProcessor.publishReport(temporary, file);
+    }
+
+    /**
+     * @param sellersFile the text seller catalog
+     * @param productsFile the text product catalog
+     * @return the size and modification time of both catalogs, as recorded in the header
+     */
+    static long[] stamp(File sellersFile, File productsFile) {
+        return new long[] {sellersFile.length(), sellersFile.lastModified(), productsFile.length(), productsFile.lastModified()};
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int writeReference(DataOutputStream out, int offset, int length) throws IOException {
+        out.writeInt(offset);
+        out.writeInt(length);
+        return offset + length;
+    }
+
+    /**
+     * Writes the record numbers sorted by unsigned key bytes, the order the lookups binary search
+     */
+    private static void writeOrder(DataOutputStream out, byte[][] keys) throws IOException {
+        for (int record : Ranking.sortByKey(keys)) {
+            out.writeInt(record);
+        }
+    }
+
+    /**
+     * @return the sellers, decoded from the mapping on every get
+     */
+    List<SalesProcessor.Seller> sellers() {
+        return new MappedList<>(sellerCount) {
+            @Override
+            public SalesProcessor.Seller get(int index) {
+                int record = sellerRecords + Objects.checkIndex(index, sellerCount) * SELLER_RECORD_SIZE;
+                String key = string(record);
+                int separator = key.indexOf(':');
+                return new SalesProcessor.Seller(key.substring(0, separator), key.substring(separator + 1),
+                    string(record + 8), string(record + 16));
+            }
+        };
+    }
+
+    CatalogIndex sellerIndex() {
+        return new SortedIndex(sellerRecords, SELLER_RECORD_SIZE, sellerOrder, sellerCount);
+    }
+
+    /**
+     * @return the products, decoded from the mapping on every get
+     */
+    List<SalesProcessor.Product> products() {
+        long[] prices = productPrices();
+        return new MappedList<>(productCount) {
+            @Override
+            public SalesProcessor.Product get(int index) {
+                int record = productRecords + Objects.checkIndex(index, productCount) * PRODUCT_RECORD_SIZE;
+                return new SalesProcessor.Product(string(record), string(record + 8), prices[index]);
+            }
+        };
+    }
+
+    /**
+     * @return a hash index for a small product catalog, the mapped sorted index otherwise
+     */
+    CatalogIndex productIndex() {
+        if (productCount > MAX_HASHED_PRODUCTS) {
+            return new SortedIndex(productRecords, PRODUCT_RECORD_SIZE, productOrder, productCount);
+        }
+        ByteKeyIndex index = new ByteKeyIndex(productCount);
+        for (int i = 0; i < productCount; i++) {
+            byte[] key = bytes(productRecords + i * PRODUCT_RECORD_SIZE);
+            index.add(key, 0, key.length);
+        }
+        return index;
+    }
+
+    /**
+     * @return the product prices in cents, in index order
+     */
+    long[] productPrices() {
+        long[] prices = new long[productCount];
+        buffer.duplicate().position(productPrices).asLongBuffer().get(prices);
+        return prices;
+    }
+
+    private byte[] bytes(int reference) {
+        byte[] bytes = new byte[buffer.getInt(reference + 4)];
+        // A duplicate keeps the shared buffer's position untouched, so decoding is thread-safe
+        buffer.duplicate().position(pool + buffer.getInt(reference)).get(bytes);
+        return bytes;
+    }
+
+    private String string(int reference) {
+        return new String(bytes(reference), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read-only list view over the records of one catalog
+     */
+    private abstract static class MappedList<T> extends AbstractList<T> implements RandomAccess {
+        private final int size;
+
+        MappedList(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Binary search of a key over the sorted record numbers, comparing the
+     * key bytes in the mapping: no lookup structure is built at load time
+     */
+    private final class SortedIndex implements CatalogIndex {
+        private final int records;
+        private final int recordSize;
+        private final int order;
+        private final int count;
+
+        SortedIndex(int records, int recordSize, int order, int count) {
+            this.records = records;
+            this.recordSize = recordSize;
+            this.order = order;
+            this.count = count;
+        }
+
+        @Override
+        public int get(byte[] bytes, int from, int to) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int record = buffer.getInt(order + middle * 4);
+                int comparison = compareKey(records + record * recordSize, bytes, from, to);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return record;
+                }
+            }
+            return NOT_FOUND;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        private int compareKey(int reference, byte[] bytes, int from, int to) {
+            int offset = pool + buffer.getInt(reference);
+            int length = buffer.getInt(reference + 4);
+            int common = Math.min(length, to - from);
+            for (int i = 0; i < common; i++) {
+                int difference = (buffer.get(offset + i) & 0xff) - (bytes[from + i] & 0xff);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return length - (to - from);
+        }
+    }
+}
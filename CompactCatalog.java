@@ -0,0 +1,253 @@
+package entregaUno;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Struct-of-arrays storage for the catalogs, an alternative to one Seller or
+ * Product object per record with a String per attribute. A record is just its
+ * int index: its attributes live in parallel primitive arrays, and its texts
+ * are int handles into a pool that stores every distinct string once as UTF-8,
+ * so the few thousand distinct first names, last names and document types of
+ * millions of sellers cost almost nothing. Document numbers, unique per
+ * seller, are packed into a long when they are up to 17 digits.
+ *
+ * The lists decode a Seller or Product on every get, so the report code reads
+ * them like the object lists. Records are filled straight from the bytes of
+ * the catalog line, without creating a String, and the lists are read-only
+ * once the catalog is loaded.
+ */
+final class CompactCatalog {
+
+    private CompactCatalog() {
+    }
+
+    /**
+     * Deduplicated UTF-8 strings addressed by dense int handles
+     */
+    static final class StringPool {
+        private byte[] bytes = new byte[4096];
+        // String h spans bytes[starts[h], starts[h + 1])
+        private int[] starts = new int[64];
+        private int count;
+        // Only needed while loading; released by trim()
+        private ByteKeyIndex handles = new ByteKeyIndex();
+
+        /**
+         * Interns the string stored in source[from, to)
+         * @return the string's handle, either new or the one it already had
+         */
+        int add(byte[] source, int from, int to) {
+            int handle = handles.add(source, from, to);
+            if (handle == count) {
+                int start = starts[count];
+                if (start + (to - from) > bytes.length) {
+                    bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, start + (to - from)));
+                }
+                System.arraycopy(source, from, bytes, start, to - from);
+                if (count + 2 > starts.length) {
+                    starts = Arrays.copyOf(starts, starts.length * 2);
+                }
+                starts[++count] = start + (to - from);
+            }
+            return handle;
+        }
+
+        int add(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            return add(bytes, 0, bytes.length);
+        }
+
+        String get(int handle) {
+            return new String(bytes, starts[handle], starts[handle + 1] - starts[handle], StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Drops the spare capacity and the lookup table once loading is done
+         */
+        void trim() {
+            bytes = Arrays.copyOf(bytes, starts[count]);
+            starts = Arrays.copyOf(starts, count + 1);
+            handles = null;
+        }
+    }
+
+    /**
+     * The seller catalog: document type, name and last name handles and the packed document number
+     */
+    static final class Sellers extends AbstractList<SalesProcessor.Seller> implements RandomAccess {
+        private static final int MAX_PACKED_DIGITS = 17;
+        private static final long VALUE_MASK = (1L << 57) - 1;
+
+        private final StringPool pool = new StringPool();
+        private int[] documentTypes = new int[1024];
+        // Digit count << 57 | value, or ~handle of a number that does not pack
+        private long[] documentNumbers = new long[1024];
+        private int[] names = new int[1024];
+        private int[] lastNames = new int[1024];
+        private int size;
+
+        /**
+         * Stores the seller of a catalog line split in at least four fields
+         * @param index the seller's index: the next one, or an existing one to replace
+         * @param reader the reader, on the catalog line
+         */
+        void set(int index, ByteRecordReader reader) {
+            ensureCapacity(index);
+            byte[] line = reader.buffer();
+            documentTypes[index] = pool.add(line, reader.fieldStart(0), reader.fieldEnd(0));
+            documentNumbers[index] = packNumber(line, reader.fieldStart(1), reader.fieldEnd(1));
+            names[index] = pool.add(line, reader.fieldStart(2), reader.fieldEnd(2));
+            lastNames[index] = pool.add(line, reader.fieldStart(3), reader.fieldEnd(3));
+            size = Math.max(size, index + 1);
+        }
+
+        /**
+         * Stores a seller given as strings, e.g. pushed by a SalesSource
+         * @param index the seller's index: the next one, or an existing one to replace
+         */
+        void set(int index, String documentType, String documentNumber, String name, String lastName) {
+            ensureCapacity(index);
+            documentTypes[index] = pool.add(documentType);
+            byte[] number = documentNumber.getBytes(StandardCharsets.UTF_8);
+            documentNumbers[index] = packNumber(number, 0, number.length);
+            names[index] = pool.add(name);
+            lastNames[index] = pool.add(lastName);
+            size = Math.max(size, index + 1);
+        }
+
+        private void ensureCapacity(int index) {
+            if (index == documentTypes.length) {
+                int capacity = index * 2;
+                documentTypes = Arrays.copyOf(documentTypes, capacity);
+                documentNumbers = Arrays.copyOf(documentNumbers, capacity);
+                names = Arrays.copyOf(names, capacity);
+                lastNames = Arrays.copyOf(lastNames, capacity);
+            }
+        }
+
+        private long packNumber(byte[] bytes, int from, int to) {
+            if (to - from <= MAX_PACKED_DIGITS) {
+                long value = 0;
+                int i = from;
+                while (i < to && bytes[i] >= '0' && bytes[i] <= '9') {
+                    value = value * 10 + (bytes[i++] - '0');
+                }
+                if (i == to) {
+                    return ((long) (to - from) << 57) | value;
+                }
+            }
+            return ~(long) pool.add(bytes, from, to);
+        }
+
+        private String documentNumber(int index) {
+            long packed = documentNumbers[index];
+            if (packed < 0) {
+                return pool.get((int) ~packed);
+            }
+            int digits = (int) (packed >>> 57);
+            String value = Long.toString(packed & VALUE_MASK);
+            if (value.length() >= digits) {
+                return digits == 0 ? "" : value;
+            }
+            // Leading zeros are part of the number
+            StringBuilder padded = new StringBuilder(digits);
+            for (int i = value.length(); i < digits; i++) {
+                padded.append('0');
+            }
+            return padded.append(value).toString();
+        }
+
+        /**
+         * Drops the spare capacity once loading is done
+         */
+        void trim() {
+            documentTypes = Arrays.copyOf(documentTypes, size);
+            documentNumbers = Arrays.copyOf(documentNumbers, size);
+            names = Arrays.copyOf(names, size);
+            lastNames = Arrays.copyOf(lastNames, size);
+            pool.trim();
+        }
+
+        @Override
+        public SalesProcessor.Seller get(int index) {
+            Objects.checkIndex(index, size);
+            return new SalesProcessor.Seller(pool.get(documentTypes[index]), documentNumber(index),
+                pool.get(names[index]), pool.get(lastNames[index]));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * The product catalog: ID and name handles and the price in cents
+     */
+    static final class Products extends AbstractList<SalesProcessor.Product> implements RandomAccess {
+        private final StringPool pool = new StringPool();
+        private int[] ids = new int[64];
+        private int[] names = new int[64];
+        private long[] prices = new long[64];
+        private int size;
+
+        /**
+         * Stores the product of a catalog line split in at least two fields
+         * @param index the product's index: the next one, or an existing one to replace
+         * @param reader the reader, on the catalog line
+         * @param priceCents the price parsed from the line
+         */
+        void set(int index, ByteRecordReader reader, long priceCents) {
+            ensureCapacity(index);
+            ids[index] = pool.add(reader.buffer(), reader.fieldStart(0), reader.fieldEnd(0));
+            names[index] = pool.add(reader.buffer(), reader.fieldStart(1), reader.fieldEnd(1));
+            prices[index] = priceCents;
+            size = Math.max(size, index + 1);
+        }
+
+        /**
+         * Stores a product given as strings, e.g. pushed by a SalesSource
+         * @param index the product's index: the next one, or an existing one to replace
+         */
+        void set(int index, String id, String name, long priceCents) {
+            ensureCapacity(index);
+            ids[index] = pool.add(id);
+            names[index] = pool.add(name);
+            prices[index] = priceCents;
+            size = Math.max(size, index + 1);
+        }
+
+        private void ensureCapacity(int index) {
+            if (index == ids.length) {
+                ids = Arrays.copyOf(ids, index * 2);
+                names = Arrays.copyOf(names, index * 2);
+                prices = Arrays.copyOf(prices, index * 2);
+            }
+        }
+
+        /**
+         * Drops the spare capacity once loading is done
+         */
+        void trim() {
+            ids = Arrays.copyOf(ids, size);
+            names = Arrays.copyOf(names, size);
+            prices = Arrays.copyOf(prices, size);
+            pool.trim();
+        }
+
+        @Override
+        public SalesProcessor.Product get(int index) {
+            Objects.checkIndex(index, size);
+            return new SalesProcessor.Product(pool.get(ids[index]), pool.get(names[index]), prices[index]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package entregaUno;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes CSV reports as UTF-8 bytes into a reused buffer that is flushed to a
+ * FileChannel (or any other byte channel) in large blocks, optionally through a streaming gzip encoder.
+ * Strings are encoded and numbers formatted straight into the buffer, so a
+ * row allocates nothing. Text fields containing a comma, a quote or a line
+ * break are quoted as in RFC 4180; amounts keep the reports' decimal comma
+ * and are therefore always quoted.
+ */
+final class CsvReportWriter implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    // Longest encoding of a single value written without a capacity check per byte
+    private static final int MAX_NUMBER_BYTES = 24;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final WritableByteChannel channel;
+    private final OutputStream gzip;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+    private int position;
+    private boolean rowStarted;
+
+    /**
+     * Creates or truncates a report file
+     * @param file the report file
+     * @param compress whether to gzip the output
+     * @throws IOException if the file cannot be opened
+     */
+    public CsvReportWriter(Path file, boolean compress) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING), compress);
+    }
+
+    /**
+     * Writes CSV to any channel, e.g. an HTTP response body
+     * @param channel the destination, closed by close()
+     * @param compress whether to gzip the output
+     * @throws IOException if the gzip header cannot be written
+     */
+    public CsvReportWriter(WritableByteChannel channel, boolean compress) throws IOException {
+        this.channel = channel;
+        gzip = compress ? new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE) : null;
+    }
+
+    /**
+     * Writes a text field, quoted if it contains a separator, a quote or a line break
+     * @param value the field
+     * @return this writer
+     * @throws IOException if the buffer cannot be flushed
+     */
+    public CsvReportWriter field(String value) throws IOException {
+        separator();
+        boolean quoted = needsQuotes(value);
+        if (quoted) {
+            put((byte) '"');
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (position + 4 > BUFFER_SIZE) {
+                flushBuffer();
+            }
+            if (c < 0x80) {
+                if (c == '"') {
+                    buffer[position++] = '"';
+                }
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate, encoded as '?' like String.getBytes does
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        if (quoted) {
+            put((byte) '"');
+        }
+        return this;
+    }
+
+    /**
+     * Writes an integer field
+     * @param value the field
+     * @return this writer
+     * @throws IOException if the buffer cannot be flushed
+     */
+    public CsvReportWriter field(long value) throws IOException {
+        separator();
+        ensure(MAX_NUMBER_BYTES);
+        if (value < 0) {
+            buffer[position++] = '-';
+        }
+        // Digits of a negative number are taken from the negative value, so Long.MIN_VALUE works too
+        position = putDigits(value < 0 ? value : -value);
+        return this;
+    }
+
+    /**
+     * Writes an amount with a decimal comma and two decimals, quoted because
+     * of the comma, e.g. 12345 as "123,45"
+     * @param cents the amount in cents
+     * @return this writer
+     * @throws IOException if the buffer cannot be flushed
+     */
+    public CsvReportWriter money(long cents) throws IOException {
+        separator();
+        ensure(MAX_NUMBER_BYTES);
+        buffer[position++] = '"';
+        if (cents < 0) {
+            buffer[position++] = '-';
+        }
+        long negative = cents < 0 ? cents : -cents;
+        position = putDigits(negative / 100);
+        int fraction = (int) -(negative % 100);
+        buffer[position++] = ',';
+        buffer[position++] = (byte) ('0' + fraction / 10);
+        buffer[position++] = (byte) ('0' + fraction % 10);
+        buffer[position++] = '"';
+        return this;
+    }
+
+    /**
+     * Writes a row of text fields and ends it
+     * @param values the fields
+     * @throws IOException if the buffer cannot be flushed
+     */
+    public void row(String... values) throws IOException {
+        for (String value : values) {
+            field(value);
+        }
+        endRow();
+    }
+
+    /**
+     * Ends the current row
+     * @throws IOException if the buffer cannot be flushed
+     */
+    public void endRow() throws IOException {
+        ensure(LINE_SEPARATOR.length);
+        for (byte b : LINE_SEPARATOR) {
+            buffer[position++] = b;
+        }
+        rowStarted = false;
+    }
+
+    /**
+     * Writes the buffered rows to the file, e.g. to make a long-lived log readable
+     * @throws IOException if the buffer cannot be written
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        if (gzip != null) {
+            gzip.flush();
+        }
+    }
+
+    /**
+     * Flushes the buffer, finishes the gzip stream if any and closes the file
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            if (gzip != null) {
+                gzip.close();
+            }
+            channel.close();
+        }
+    }
+
+    private void separator() throws IOException {
+        if (rowStarted) {
+            put((byte) ',');
+        }
+        rowStarted = true;
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the digits of -negative at the current position
+     * @param negative a number &lt;= 0
+     * @return the position after the digits
+     */
+    private int putDigits(long negative) {
+        int digits = 1;
+        for (long rest = negative / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int end = position + digits;
+        for (int i = end - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' - (negative % 10));
+            negative /= 10;
+        }
+        return end;
+    }
+
+    private void put(byte b) throws IOException {
+        ensure(1);
+        buffer[position++] = b;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (position + bytes > BUFFER_SIZE) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (gzip != null) {
+            gzip.write(buffer, 0, position);
+        } else {
+            wrapped.clear().limit(position);
+            while (wrapped.hasRemaining()) {
+                channel.write(wrapped);
+            }
+        }
+        position = 0;
+    }
+}
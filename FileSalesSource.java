@@ -0,0 +1,74 @@
+package entregaUno;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The default source: vendedores.txt, productos.txt and the sales files of a
+ * directory, read through file channels
+ */
+final class FileSalesSource implements SalesSource {
+
+    static final String SELLERS_FILE = "vendedores.txt";
+    static final String PRODUCTS_FILE = "productos.txt";
+
+    private final String inputDir;
+    private final FilenameFilter salesFiles;
+
+    /**
+     * @param inputDir the directory, ending in '/'
+     * @param salesFiles which files of the directory are sales files
+     */
+    FileSalesSource(String inputDir, FilenameFilter salesFiles) {
+        this.inputDir = inputDir;
+        this.salesFiles = salesFiles;
+    }
+
+    @Override
+    public String describe() {
+        return inputDir;
+    }
+
+    @Override
+    public void readCatalogs(CatalogSink sink) throws IOException {
+        readSellers(inputDir, sink);
+        readProducts(inputDir, sink);
+    }
+
+    @Override
+    public void readSales(SalesSink sink) throws IOException {
+        File[] files = new File(inputDir).listFiles(salesFiles);
+        sink.files(files != null ? files : new File[0]);
+    }
+
+    /**
+     * Sends the sellers of inputDir/vendedores.txt
+     * @throws IOException if the file does not exist or cannot be read
+     */
+    static void readSellers(String inputDir, CatalogSink sink) throws IOException {
+        File sellersFile = new File(inputDir + SELLERS_FILE);
+        if (!sellersFile.exists()) {
+            throw new IOException("Archivo de vendedores no encontrado: " + sellersFile.getPath());
+        }
+        try (FileChannel channel = FileChannel.open(sellersFile.toPath(), StandardOpenOption.READ)) {
+            sink.sellerText(channel);
+        }
+    }
+
+    /**
+     * Sends the products of inputDir/productos.txt
+     * @throws IOException if the file does not exist or cannot be read
+     */
+    static void readProducts(String inputDir, CatalogSink sink) throws IOException {
+        File productsFile = new File(inputDir + PRODUCTS_FILE);
+        if (!productsFile.exists()) {
+            throw new IOException("Archivo de productos no encontrado: " + productsFile.getPath());
+        }
+        try (FileChannel channel = FileChannel.open(productsFile.toPath(), StandardOpenOption.READ)) {
+            sink.productText(channel);
+        }
+    }
+}
@@ -1,15 +1,33 @@
 package entregaUno;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Class for generating test files for the sales system.
  * Generates files with sellers, products and random sales.
+ * Every seller and product draws from its own SplittableRandom stream derived
+ * from the seed and its index, so a seed always produces the same files no
+ * matter how many threads write them.
  */
 public class GenerateInfoFiles {
     
@@ -19,15 +37,36 @@ public class GenerateInfoFiles {
     private static final String[] LAST_NAMES = {"Gómez", "Rodríguez", "López", "Martínez", "González", "Pérez", "Sánchez", "Ramírez", "Torres", "Díaz"};
     private static final String[] PRODUCTS = {"Laptop", "Smartphone", "Tablet", "Monitor", "Teclado", "Mouse", "Audífonos", "Impresora", "Cámara", "Altavoces"};
     
+    // UTF-8 forms of the constants, written straight into the output buffers
+    private static final byte[][] DOCUMENT_TYPE_BYTES = utf8(DOCUMENT_TYPES);
+    private static final byte[][] NAME_BYTES = utf8(NAMES);
+    private static final byte[][] LAST_NAME_BYTES = utf8(LAST_NAMES);
+    private static final byte[][] PRODUCT_BYTES = utf8(PRODUCTS);
+    
     // Directory where files will be saved
     private static final String OUTPUT_DIR = "data/";
     
-    // Random number generator
+    // Random number generator (createSalesManFile)
     private static final Random random = new Random();
     
+    // Independent random streams per entity
+    private static final long SELLER_STREAM = 1;
+    private static final long PRODUCT_STREAM = 2;
+    private static final long SALES_STREAM = 3;
+    private static final long DATE_STREAM = 4;
+    
+    // Document numbers are a bijection of the seller index, so they never repeat
+    private static final long DOCUMENT_NUMBER_MULTIPLIER = 48_271_227L;
+    private static final int MIN_DOCUMENT_DIGITS = 8;
+    private static final int MIN_PRODUCT_DIGITS = 3;
+    
+    private static final int FILES_PER_BATCH = 256;
+    private static final int CATALOG_BUFFER_SIZE = 1 << 20;
+    
     /**
      * Main method for generating test files
-     * @param args command line arguments
+     * @param args command line arguments: [numVendedores] [numProductos] and the
+     *             options [--seed=N] [--threads=N] [--lines=MIN-MAX] [--zipf=S] [--dates=FROM..TO]
      */
     public static void main(String[] args) {
         // Create directory if it doesn't exist
@@ -40,113 +79,595 @@ public class GenerateInfoFiles {
             // Generate default sellers and products if no arguments are specified
             int salesmenCount = 5;
             int productsCount = 10;
+            Settings settings = new Settings();
+            settings.seed = System.nanoTime();
             
             // If arguments are provided, use those values
-            if (args.length >= 1) {
-                salesmenCount = Integer.parseInt(args[0]);
+            List<String> positional = new ArrayList<>();
+            for (String arg : args) {
+                if (arg.startsWith("--")) {
+                    settings.parseOption(arg);
+                } else {
+                    positional.add(arg);
+                }
             }
-            if (args.length >= 2) {
-                productsCount = Integer.parseInt(args[1]);
+            if (positional.size() >= 1) {
+                salesmenCount = Integer.parseInt(positional.get(0));
+            }
+            if (positional.size() >= 2) {
+                productsCount = Integer.parseInt(positional.get(1));
+            }
+            if (salesmenCount < 0 || productsCount < 1) {
+                throw new IllegalArgumentException("se necesita al menos un producto y un número de vendedores no negativo");
             }
             
             // Generate files
-            List<String> salesmen = createSalesmenFile(salesmenCount);
-            createProductsFile(productsCount);
-            createSalesFiles(salesmen, productsCount);
+            long start = System.nanoTime();
+            long bytes = generate(OUTPUT_DIR, salesmenCount, productsCount, settings);
+            double seconds = (System.nanoTime() - start) / 1e9;
             
             System.out.println("Archivos generados exitosamente en el directorio: " + OUTPUT_DIR);
+            System.out.printf("Semilla: %d, %d vendedores, %d productos, %.1f MB en %.2f s (%.1f MB/s)%n",
+                settings.seed, salesmenCount, productsCount, bytes / 1e6, seconds, bytes / 1e6 / seconds);
         } catch (IOException e) {
             System.err.println("Error al generar los archivos: " + e.getMessage());
-        } catch (NumberFormatException e) {
-            System.err.println("Error en los argumentos. Uso: java GenerateInfoFiles [numVendedores] [numProductos]");
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error en los argumentos: " + e.getMessage());
+            System.err.println("Uso: java GenerateInfoFiles [numVendedores] [numProductos] [--seed=N] [--threads=N] [--lines=MIN-MAX] [--zipf=S] [--dates=DESDE..HASTA]");
+        }
+    }
+    
+    /**
+     * Generation options
+     */
+    static final class Settings {
+        long seed;
+        // Sales file writers (0 = every available core)
+        int threads = 0;
+        // Each sales file lists between minLines and maxLines distinct products
+        int minLines = 1;
+        int maxLines = 5;
+        // Product popularity follows a Zipf law with this exponent (0 = uniform)
+        double zipfExponent = 0;
+        // Each sales line gets a date drawn uniformly from firstDate and the following dateDays - 1 days (0 = no dates)
+        LocalDate firstDate;
+        int dateDays = 0;
+        
+        /**
+         * Reads one --option=value argument
+         * @throws IllegalArgumentException if the option is unknown or malformed
+         */
+        void parseOption(String arg) {
+            if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+                if (threads < 0) {
+                    throw new IllegalArgumentException("el número de hilos no puede ser negativo: " + threads);
+                }
+            } else if (arg.startsWith("--lines=")) {
+                String range = arg.substring("--lines=".length());
+                int dash = range.indexOf('-');
+                minLines = Integer.parseInt(dash < 0 ? range : range.substring(0, dash));
+                maxLines = dash < 0 ? minLines : Integer.parseInt(range.substring(dash + 1));
+                if (minLines < 0 || maxLines < minLines) {
+                    throw new IllegalArgumentException("rango de líneas inválido: " + range);
+                }
+            } else if (arg.startsWith("--zipf=")) {
+                zipfExponent = Double.parseDouble(arg.substring("--zipf=".length()));
+                if (!(zipfExponent >= 0)) {
+                    throw new IllegalArgumentException("el exponente de Zipf no puede ser negativo: " + zipfExponent);
+                }
+            } else if (arg.startsWith("--dates=")) {
+                String range = arg.substring("--dates=".length());
+                int dots = range.indexOf("..");
+                try {
+                    firstDate = LocalDate.parse(dots < 0 ? range : range.substring(0, dots));
+                    LocalDate lastDate = dots < 0 ? firstDate : LocalDate.parse(range.substring(dots + 2));
+                    dateDays = Math.toIntExact(lastDate.toEpochDay() - firstDate.toEpochDay() + 1);
+                } catch (DateTimeParseException | ArithmeticException e) {
+                    throw new IllegalArgumentException("rango de fechas inválido (AAAA-MM-DD..AAAA-MM-DD): " + range);
+                }
+                if (dateDays <= 0 || firstDate.getYear() < 1970 || firstDate.plusDays(dateDays - 1).getYear() > 9999) {
+                    throw new IllegalArgumentException("rango de fechas inválido: " + range);
+                }
+            } else {
+                throw new IllegalArgumentException("opción desconocida: " + arg);
+            }
         }
     }
     
+    /**
+     * Generates the seller catalog, the product catalog and one sales file per seller
+     * @param outputDir directory for the files, ending in '/'
+     * @param salesmenCount number of sellers
+     * @param productsCount number of products
+     * @param settings the seed and distributions
+     * @return the number of bytes written
+     * @throws IOException if there's an error writing the files
+     */
+    static long generate(String outputDir, int salesmenCount, int productsCount, Settings settings) throws IOException {
+        Layout layout = new Layout(salesmenCount, productsCount, settings);
+        long bytes = createSalesmenFile(outputDir, layout);
+        bytes += createProductsFile(outputDir, layout);
+        bytes += createSalesFiles(outputDir, layout);
+        return bytes;
+    }
+    
     /**
      * Creates a file with seller information
-     * @param count number of sellers to generate
-     * @return list of seller identifiers (for creating sales files)
+     * @param outputDir directory for the file
+     * @param layout the generation layout
+     * @return the number of bytes written
      * @throws IOException if there's an error writing to the file
      */
-    private static List<String> createSalesmenFile(int count) throws IOException {
-        List<String> salesmen = new ArrayList<>();
-        
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(OUTPUT_DIR + "vendedores.txt"))) {
-            for (int i = 0; i < count; i++) {
-                String docType = DOCUMENT_TYPES[random.nextInt(DOCUMENT_TYPES.length)];
-                String docNumber = String.format("%08d", random.nextInt(100000000));
-                String name = NAMES[random.nextInt(NAMES.length)];
-                String lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
-                
-                String seller = docType + ":" + docNumber + ":" + name + ":" + lastName;
-                writer.write(seller);
-                writer.newLine();
-                
-                // Save identifier for creating sales files
-                salesmen.add(docType + ":" + docNumber);
+    private static long createSalesmenFile(String outputDir, Layout layout) throws IOException {
+        LineBuffer line = new LineBuffer();
+        long bytes = 0;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputDir + "vendedores.txt"), CATALOG_BUFFER_SIZE)) {
+            for (int i = 0; i < layout.salesmenCount; i++) {
+                line.clear();
+                layout.appendSellerLine(line, i);
+                out.write(line.bytes, 0, line.length);
+                bytes += line.length;
             }
         }
-        
-        return salesmen;
+        return bytes;
     }
     
     /**
      * Creates a file with product information
-     * @param count number of products to generate
+     * @param outputDir directory for the file
+     * @param layout the generation layout
+     * @return the number of bytes written
      * @throws IOException if there's an error writing to the file
      */
-    private static void createProductsFile(int count) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(OUTPUT_DIR + "productos.txt"))) {
-            for (int i = 0; i < count; i++) {
-                String id = "P" + String.format("%03d", i + 1);
-                String name = PRODUCTS[i % PRODUCTS.length] + " " + (i / PRODUCTS.length + 1);
-                double price = 10000 + random.nextDouble() * 990000; // Price between 10,000 and 1,000,000
-                
-                String product = id + ":" + name + ":" + String.format("%.2f", price);
-                writer.write(product);
-                writer.newLine();
+    private static long createProductsFile(String outputDir, Layout layout) throws IOException {
+        LineBuffer line = new LineBuffer();
+        long bytes = 0;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputDir + "productos.txt"), CATALOG_BUFFER_SIZE)) {
+            for (int i = 0; i < layout.productsCount; i++) {
+                line.clear();
+                layout.appendProductLine(line, i);
+                out.write(line.bytes, 0, line.length);
+                bytes += line.length;
             }
         }
+        return bytes;
     }
     
     /**
-     * Creates sales files for each seller
-     * @param salesmen list of seller identifiers
-     * @param productsCount total number of available products
+     * Creates sales files for each seller, on a pool of writer threads that
+     * claim batches of sellers
+     * @param outputDir directory for the files
+     * @param layout the generation layout
+     * @return the number of bytes written
      * @throws IOException if there's an error writing to the files
      */
-    private static void createSalesFiles(List<String> salesmen, int productsCount) throws IOException {
-        for (String seller : salesmen) {
+    private static long createSalesFiles(String outputDir, Layout layout) throws IOException {
+        int threads = layout.settings.threads == 0 ? Runtime.getRuntime().availableProcessors() : layout.settings.threads;
+        AtomicInteger nextSeller = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                writers.add(pool.submit(() -> {
+                    SalesWriter writer = new SalesWriter(outputDir, layout);
+                    int from;
+                    while ((from = nextSeller.getAndAdd(FILES_PER_BATCH)) < layout.salesmenCount) {
+                        int to = Math.min(from + FILES_PER_BATCH, layout.salesmenCount);
+                        for (int i = from; i < to; i++) {
+                            writer.write(i);
+                        }
+                    }
+                    return writer.bytes;
+                }));
+            }
+            long bytes = 0;
+            for (Future<Long> writer : writers) {
+                bytes += writer.get();
+            }
+            return bytes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Generación interrumpida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    /**
+     * Writes the sales file of one seller at a time, reusing its buffers
+     */
+    private static final class SalesWriter {
+        private final String outputDir;
+        private final Layout layout;
+        private final LineBuffer content = new LineBuffer();
+        private final LineBuffer fileName = new LineBuffer();
+        private final SalesDraw draw;
+        private long bytes;
+        
+        SalesWriter(String outputDir, Layout layout) {
+            this.outputDir = outputDir;
+            this.layout = layout;
+            this.draw = new SalesDraw(layout);
+        }
+        
+        void write(int sellerIndex) throws IOException {
+            // First line: seller identification, the key drawn from the seller's own stream
+            content.clear();
+            layout.appendSellerKey(content, sellerIndex, layout.stream(SELLER_STREAM, sellerIndex));
+            int keyLength = content.length;
+            content.put((byte) '\n');
+            
+            int lines = draw.draw(sellerIndex);
+            for (int i = 0; i < lines; i++) {
+                layout.appendProductId(content, draw.products[i]);
+                content.put((byte) ':').putNumber(draw.quantities[i]);
+                if (draw.days[i] >= 0) {
+                    content.put((byte) ':').put(layout.dates[draw.days[i]]);
+                }
+                content.put((byte) ';').put((byte) '\n');
+            }
+            
             // Create a filename based on the seller's ID
-            String fileName = seller.replace(":", "_") + ".txt";
+            fileName.clear();
+            fileName.put(outputDir.getBytes(StandardCharsets.UTF_8));
+            int nameStart = fileName.length;
+            fileName.put(content.bytes, 0, keyLength);
+            for (int i = nameStart; i < fileName.length; i++) {
+                if (fileName.bytes[i] == ':') {
+                    fileName.bytes[i] = '_';
+                }
+            }
+            fileName.put(".txt".getBytes(StandardCharsets.US_ASCII));
             
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(OUTPUT_DIR + fileName))) {
-                // First line: seller identification
-                writer.write(seller);
-                writer.newLine();
-                
-                // Generate random sales (between 1 and 5 products sold)
-                int numProductsSold = 1 + random.nextInt(5);
-                List<Integer> productsSold = new ArrayList<>();
-                
-                for (int i = 0; i < numProductsSold; i++) {
-                    int productId;
-                    // Avoid duplicate products
-                    do {
-                        productId = random.nextInt(productsCount);
-                    } while (productsSold.contains(productId));
-                    
-                    productsSold.add(productId);
-                    
-                    String id = "P" + String.format("%03d", productId + 1);
-                    int quantity = 1 + random.nextInt(10); // Between 1 and 10 units
-                    
-                    String sale = id + ":" + quantity + ";";
-                    writer.write(sale);
-                    writer.newLine();
+            try (FileOutputStream out = new FileOutputStream(new String(fileName.bytes, 0, fileName.length, StandardCharsets.UTF_8))) {
+                out.write(content.bytes, 0, content.length);
+            }
+            bytes += content.length;
+        }
+    }
+    
+    /**
+     * Draws the sales lines of one seller at a time, the same for files and
+     * records; the arrays are reused, valid until the next draw
+     */
+    static final class SalesDraw {
+        private final Layout layout;
+        // Products already drawn for the current seller: stamp[p] == seller + 1
+        private final int[] stamp;
+        final int[] products;
+        final int[] quantities;
+        // Offset of each line's date from the first date, or -1 without dates
+        final int[] days;
+        
+        SalesDraw(Layout layout) {
+            this.layout = layout;
+            this.stamp = new int[layout.productsCount];
+            int maxLines = Math.min(layout.settings.maxLines, layout.productsCount);
+            this.products = new int[maxLines];
+            this.quantities = new int[maxLines];
+            this.days = new int[maxLines];
+        }
+        
+        /**
+         * @return the number of sales lines of the seller, filled into the arrays
+         */
+        int draw(int sellerIndex) {
+            // Random sales: distinct products, popular ones first under a Zipf law
+            SplittableRandom sales = layout.stream(SALES_STREAM, sellerIndex);
+            // Dates come from their own stream, so the products and quantities are those of an undated run
+            SplittableRandom dates = layout.dates != null ? layout.stream(DATE_STREAM, sellerIndex) : null;
+            Settings settings = layout.settings;
+            int lines = settings.minLines + (settings.maxLines > settings.minLines
+                ? sales.nextInt(settings.maxLines - settings.minLines + 1) : 0);
+            lines = Math.min(lines, layout.productsCount);
+            int mark = sellerIndex + 1;
+            for (int i = 0; i < lines; i++) {
+                int product = layout.drawProduct(sales);
+                // A repeated product moves on to the next one not listed yet
+                while (stamp[product] == mark) {
+                    product = product + 1 == layout.productsCount ? 0 : product + 1;
+                }
+                stamp[product] = mark;
+                products[i] = product;
+                quantities[i] = 1 + sales.nextInt(10); // Between 1 and 10 units
+                days[i] = dates != null ? dates.nextInt(layout.dates.length) : -1;
+            }
+            return lines;
+        }
+    }
+    
+    /**
+     * A generated dataset handed over in memory instead of written to files:
+     * the catalogs as text streams rendered on demand and the sales as drawn
+     * lines, byte for byte and value for value what generate() writes
+     */
+    static final class Dataset {
+        private final Layout layout;
+        
+        Dataset(int salesmenCount, int productsCount, Settings settings) {
+            this.layout = new Layout(salesmenCount, productsCount, settings);
+        }
+        
+        int salesmenCount() {
+            return layout.salesmenCount;
+        }
+        
+        /**
+         * @return the text of vendedores.txt, rendered as it is read
+         */
+        ReadableByteChannel sellerCatalog() {
+            return new CatalogChannel(layout.salesmenCount, layout::appendSellerLine);
+        }
+        
+        /**
+         * @return the text of productos.txt, rendered as it is read
+         */
+        ReadableByteChannel productCatalog() {
+            return new CatalogChannel(layout.productsCount, layout::appendProductLine);
+        }
+        
+        /**
+         * @return a drawer of sales lines, one per thread
+         */
+        SalesDraw newSalesDraw() {
+            return new SalesDraw(layout);
+        }
+        
+        /**
+         * @return the epoch day of date offset 0, meaningful with --dates only
+         */
+        long firstEpochDay() {
+            return layout.settings.firstDate != null ? layout.settings.firstDate.toEpochDay() : 0;
+        }
+    }
+    
+    /**
+     * A catalog file that is never written: each read renders the next lines
+     */
+    private static final class CatalogChannel implements ReadableByteChannel {
+        interface LineSource {
+            void append(LineBuffer line, int index);
+        }
+        
+        private final int count;
+        private final LineSource lines;
+        private final LineBuffer line = new LineBuffer();
+        private int next;
+        private int position;
+        private boolean open = true;
+        
+        CatalogChannel(int count, LineSource lines) {
+            this.count = count;
+            this.lines = lines;
+        }
+        
+        @Override
+        public int read(ByteBuffer target) {
+            int read = 0;
+            while (target.hasRemaining()) {
+                if (position == line.length) {
+                    if (next == count) {
+                        break;
+                    }
+                    line.clear();
+                    lines.append(line, next++);
+                    position = 0;
+                }
+                int chunk = Math.min(target.remaining(), line.length - position);
+                target.put(line.bytes, position, chunk);
+                position += chunk;
+                read += chunk;
+            }
+            return read == 0 && next == count ? -1 : read;
+        }
+        
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+        
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+    
+    /**
+     * Everything derived from the counts and the settings: ID widths, the
+     * product popularity distribution and the per-entity random streams
+     */
+    private static final class Layout {
+        final int salesmenCount;
+        final int productsCount;
+        final Settings settings;
+        final int documentDigits;
+        final long documentModulus;
+        final long documentOffset;
+        final int productDigits;
+        // Cumulative Zipf probabilities by product index, null when uniform
+        final double[] popularity;
+        // UTF-8 "YYYY-MM-DD" of each day of the date range, null without dates
+        final byte[][] dates;
+        
+        Layout(int salesmenCount, int productsCount, Settings settings) {
+            this.salesmenCount = salesmenCount;
+            this.productsCount = productsCount;
+            this.settings = settings;
+            // One spare digit keeps document numbers sparse; wide enough for millions of sellers
+            this.documentDigits = Math.max(MIN_DOCUMENT_DIGITS, digits(salesmenCount) + 1);
+            long modulus = 1;
+            for (int i = 0; i < documentDigits; i++) {
+                modulus *= 10;
+            }
+            this.documentModulus = modulus;
+            this.documentOffset = Math.floorMod(mix(settings.seed), modulus);
+            this.productDigits = Math.max(MIN_PRODUCT_DIGITS, digits(productsCount));
+            this.popularity = settings.zipfExponent > 0 ? zipf(productsCount, settings.zipfExponent) : null;
+            if (settings.dateDays > 0) {
+                this.dates = new byte[settings.dateDays][];
+                for (int i = 0; i < dates.length; i++) {
+                    dates[i] = settings.firstDate.plusDays(i).toString().getBytes(StandardCharsets.US_ASCII);
                 }
+            } else {
+                this.dates = null;
+            }
+        }
+        
+        /**
+         * @return the random stream of an entity, the same for a seed, a stream kind and an index
+         */
+        SplittableRandom stream(long kind, long index) {
+            return new SplittableRandom(mix(mix(settings.seed ^ kind * 0x9E3779B97F4A7C15L) + index));
+        }
+        
+        /**
+         * Appends the catalog line of a seller, "TYPE:NUMBER:NAME:LASTNAME\n"
+         */
+        void appendSellerLine(LineBuffer line, int sellerIndex) {
+            SplittableRandom seller = stream(SELLER_STREAM, sellerIndex);
+            appendSellerKey(line, sellerIndex, seller);
+            line.put((byte) ':').put(NAME_BYTES[seller.nextInt(NAME_BYTES.length)]);
+            line.put((byte) ':').put(LAST_NAME_BYTES[seller.nextInt(LAST_NAME_BYTES.length)]);
+            line.put((byte) '\n');
+        }
+        
+        /**
+         * Appends the catalog line of a product, "ID:NAME:PRICE\n"
+         */
+        void appendProductLine(LineBuffer line, int productIndex) {
+            SplittableRandom product = stream(PRODUCT_STREAM, productIndex);
+            // Price between 10,000 and 1,000,000, written with a decimal comma
+            long priceCents = 1_000_000 + product.nextLong(99_000_000);
+            
+            appendProductId(line, productIndex);
+            line.put((byte) ':').put(PRODUCT_BYTES[productIndex % PRODUCT_BYTES.length]).put((byte) ' ')
+                .putNumber(productIndex / PRODUCT_BYTES.length + 1);
+            line.put((byte) ':').putNumber(priceCents / 100).put((byte) ',').putDigits(priceCents % 100, 2);
+            line.put((byte) '\n');
+        }
+        
+        /**
+         * Appends "TYPE:NUMBER"; the type is the first draw of the seller's stream
+         */
+        void appendSellerKey(LineBuffer line, int sellerIndex, SplittableRandom seller) {
+            line.put(DOCUMENT_TYPE_BYTES[seller.nextInt(DOCUMENT_TYPE_BYTES.length)]).put((byte) ':');
+            // The multiplier is coprime with 10^digits, so distinct indices get distinct numbers
+            long number = (sellerIndex * DOCUMENT_NUMBER_MULTIPLIER % documentModulus + documentOffset) % documentModulus;
+            line.putDigits(number, documentDigits);
+        }
+        
+        void appendProductId(LineBuffer line, int productIndex) {
+            line.put((byte) 'P').putDigits(productIndex + 1, productDigits);
+        }
+        
+        int drawProduct(SplittableRandom random) {
+            if (popularity == null) {
+                return random.nextInt(productsCount);
+            }
+            int found = Arrays.binarySearch(popularity, random.nextDouble());
+            return Math.min(found >= 0 ? found : -found - 1, productsCount - 1);
+        }
+        
+        private static double[] zipf(int count, double exponent) {
+            double[] cumulative = new double[count];
+            double sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += 1 / Math.pow(i + 1, exponent);
+                cumulative[i] = sum;
+            }
+            for (int i = 0; i < count; i++) {
+                cumulative[i] /= sum;
+            }
+            return cumulative;
+        }
+        
+        private static int digits(long value) {
+            int digits = 1;
+            while (value >= 10) {
+                value /= 10;
+                digits++;
+            }
+            return digits;
+        }
+        
+        private static long mix(long z) {
+            // SplitMix64 finalizer
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+    
+    /**
+     * Growable byte buffer for building lines without Strings
+     */
+    private static final class LineBuffer {
+        byte[] bytes = new byte[256];
+        int length;
+        
+        void clear() {
+            length = 0;
+        }
+        
+        LineBuffer put(byte b) {
+            ensure(1);
+            bytes[length++] = b;
+            return this;
+        }
+        
+        LineBuffer put(byte[] source) {
+            return put(source, 0, source.length);
+        }
+        
+        LineBuffer put(byte[] source, int from, int count) {
+            ensure(count);
+            System.arraycopy(source, from, bytes, length, count);
+            length += count;
+            return this;
+        }
+        
+        LineBuffer putNumber(long value) {
+            return putDigits(value, 1);
+        }
+        
+        /**
+         * Appends a non-negative number, left padded with zeros to at least width digits
+         */
+        LineBuffer putDigits(long value, int width) {
+            int digits = Math.max(width, Layout.digits(value));
+            ensure(digits);
+            for (int i = length + digits - 1; i >= length; i--) {
+                bytes[i] = (byte) ('0' + value % 10);
+                value /= 10;
             }
+            length += digits;
+            return this;
+        }
+        
+        private void ensure(int count) {
+            if (length + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+            }
+        }
+    }
+    
+    private static byte[][] utf8(String[] values) {
+        byte[][] bytes = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = values[i].getBytes(StandardCharsets.UTF_8);
         }
+        return bytes;
     }
     
     /**
@@ -0,0 +1,99 @@
+package entregaUno;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A dataset generated in memory by GenerateInfoFiles and pushed straight into
+ * the processor: the catalogs as text streams rendered while they are parsed
+ * and the sales as resolved records, so nothing touches the disk and nothing
+ * is parsed on the sales side. The records are those GenerateInfoFiles would
+ * write with the same counts and settings, so a run over this source gives
+ * the reports of a run over the generated files.
+ */
+final class GeneratedSalesSource implements SalesSource {
+
+    // Sellers a writer thread claims at a time
+    private static final int SELLERS_PER_BATCH = 1024;
+
+    private final int salesmenCount;
+    private final int productsCount;
+    private final GenerateInfoFiles.Settings settings;
+    private final GenerateInfoFiles.Dataset dataset;
+
+    GeneratedSalesSource(int salesmenCount, int productsCount, GenerateInfoFiles.Settings settings) {
+        this.salesmenCount = salesmenCount;
+        this.productsCount = productsCount;
+        this.settings = settings;
+        this.dataset = new GenerateInfoFiles.Dataset(salesmenCount, productsCount, settings);
+    }
+
+    /**
+     * Reads the spec of --source=sintetico
+     * @param spec "VENDEDORES:PRODUCTOS" followed by comma separated GenerateInfoFiles options
+     *             without their dashes, e.g. "100000:1000,seed=7,lines=1-20,zipf=1.1"
+     * @return the source
+     * @throws IllegalArgumentException if the spec is malformed
+     */
+    static GeneratedSalesSource parse(String spec) {
+        String[] parts = spec.split(",");
+        int colon = parts[0].indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("la fuente sintética debe tener la forma VENDEDORES:PRODUCTOS[,opción=valor...]: " + spec);
+        }
+        int salesmen = Integer.parseInt(parts[0].substring(0, colon));
+        int productCount = Integer.parseInt(parts[0].substring(colon + 1));
+        if (salesmen < 0 || productCount < 1) {
+            throw new IllegalArgumentException("se necesita al menos un producto y un número de vendedores no negativo");
+        }
+        GenerateInfoFiles.Settings settings = new GenerateInfoFiles.Settings();
+        settings.seed = System.nanoTime();
+        for (int i = 1; i < parts.length; i++) {
+            if (parts[i].startsWith("threads=")) {
+                // The records are pushed on the processor's --threads workers
+                throw new IllegalArgumentException("la fuente sintética usa los hilos de --threads: " + parts[i]);
+            }
+            settings.parseOption("--" + parts[i]);
+        }
+        return new GeneratedSalesSource(salesmen, productCount, settings);
+    }
+
+    @Override
+    public String describe() {
+        return "sintético: " + salesmenCount + " vendedores, " + productsCount + " productos, semilla " + settings.seed
+            + ", líneas " + settings.minLines + "-" + settings.maxLines
+            + (settings.zipfExponent > 0 ? ", zipf " + settings.zipfExponent : "")
+            + (settings.dateDays > 0 ? ", " + settings.dateDays + " día(s) desde " + settings.firstDate : "");
+    }
+
+    @Override
+    public void readCatalogs(CatalogSink sink) throws IOException {
+        // Generated keys are unique, so catalog indices are generation indices
+        if (sink.sellerText(dataset.sellerCatalog()) != salesmenCount
+                || sink.productText(dataset.productCatalog()) != productsCount) {
+            throw new IOException("el catálogo sintético no coincide con los índices generados");
+        }
+    }
+
+    @Override
+    public void readSales(SalesSink sink) throws IOException {
+        AtomicInteger nextSeller = new AtomicInteger();
+        long firstDay = dataset.firstEpochDay();
+        SalesSource.inParallel(sink.workers(), () -> {
+            GenerateInfoFiles.SalesDraw draw = dataset.newSalesDraw();
+            try (SalesWriter writer = sink.writer()) {
+                int from;
+                while ((from = nextSeller.getAndAdd(SELLERS_PER_BATCH)) < salesmenCount) {
+                    int to = Math.min(from + SELLERS_PER_BATCH, salesmenCount);
+                    for (int seller = from; seller < to; seller++) {
+                        int lines = draw.draw(seller);
+                        for (int i = 0; i < lines; i++) {
+                            int day = draw.days[i] < 0 ? SalesSegments.NO_DAY : (int) (firstDay + draw.days[i]);
+                            writer.sale(seller, draw.products[i], draw.quantities[i], day);
+                        }
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,19 @@
+package entregaUno;
+
+/**
+ * Stops a strict mode run at the first rejected sales record or unreadable
+ * sales file. Unchecked, so it crosses the per-file error handling and the
+ * worker threads up to main.
+ */
+final class InvalidSalesDataException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    InvalidSalesDataException(String message) {
+        super(message);
+    }
+
+    InvalidSalesDataException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
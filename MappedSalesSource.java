@@ -0,0 +1,175 @@
+package entregaUno;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The files of a directory, like FileSalesSource, read from memory: the
+ * catalogs and the large sales files (shards) are memory-mapped, and each
+ * small per-seller file is read with a single positional read into a buffer
+ * of its thread. Mapping a file of a few hundred bytes would cost more than
+ * reading it, and millions of live mappings would exhaust the process's map
+ * count before the collector released them.
+ *
+ * Compressed files, files over 2 GB and files that cannot be opened are left
+ * to the processor's file pipeline, which decompresses, cuts and reports them
+ * as usual.
+ */
+final class MappedSalesSource implements SalesSource {
+
+    // Files up to this size are read into the thread's buffer, larger ones are mapped
+    private static final int READ_LIMIT = 64 * 1024;
+
+    private final String inputDir;
+    private final FilenameFilter salesFiles;
+
+    /**
+     * @param inputDir the directory, ending in '/'
+     * @param salesFiles which files of the directory are sales files
+     */
+    MappedSalesSource(String inputDir, FilenameFilter salesFiles) {
+        this.inputDir = inputDir;
+        this.salesFiles = salesFiles;
+    }
+
+    @Override
+    public String describe() {
+        return inputDir + " (mapeado)";
+    }
+
+    @Override
+    public void readCatalogs(CatalogSink sink) throws IOException {
+        File sellersFile = new File(inputDir + FileSalesSource.SELLERS_FILE);
+        File productsFile = new File(inputDir + FileSalesSource.PRODUCTS_FILE);
+        if (!sellersFile.exists() || !productsFile.exists()) {
+            // Same messages as the file source
+            FileSalesSource.readSellers(inputDir, sink);
+            FileSalesSource.readProducts(inputDir, sink);
+            return;
+        }
+        sink.sellerText(new BufferChannel(map(sellersFile)));
+        sink.productText(new BufferChannel(map(productsFile)));
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("archivo demasiado grande para mapearlo (más de 2 GB): " + file.getPath());
+            }
+            // The mapping outlives the channel
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    @Override
+    public void readSales(SalesSink sink) throws IOException {
+        File[] listed = new File(inputDir).listFiles(salesFiles);
+        if (listed == null || listed.length == 0) {
+            // Lets the processor warn about the empty directory
+            sink.files(new File[0]);
+            return;
+        }
+        List<File> readable = new ArrayList<>();
+        Queue<File> leftOver = new ConcurrentLinkedQueue<>();
+        for (File file : listed) {
+            if (file.length() > Integer.MAX_VALUE || SalesInput.hasCodecExtension(file.getName())) {
+                leftOver.add(file);
+            } else {
+                readable.add(file);
+            }
+        }
+
+        File[] files = readable.toArray(new File[0]);
+        AtomicInteger next = new AtomicInteger();
+        SalesSource.inParallel(Math.min(sink.workers(), Math.max(1, files.length)), () -> {
+            ByteBuffer scratch = ByteBuffer.allocate(READ_LIMIT);
+            try (SalesWriter writer = sink.writer()) {
+                int claimed;
+                while ((claimed = next.getAndIncrement()) < files.length) {
+                    File file = files[claimed];
+                    ByteBuffer bytes;
+                    try {
+                        bytes = read(file, scratch);
+                    } catch (IOException e) {
+                        leftOver.add(file);
+                        continue;
+                    }
+                    if (SalesInput.isCompressed(file.getName(), bytes)) {
+                        // Compressed without a codec extension, found by its magic bytes
+                        leftOver.add(file);
+                        continue;
+                    }
+                    writer.text(file.getName(), new BufferChannel(bytes), bytes.limit());
+                }
+            }
+        });
+        if (!leftOver.isEmpty()) {
+            sink.files(leftOver.toArray(new File[0]));
+        }
+    }
+
+    /**
+     * @return the whole file, in the scratch buffer if it fits or mapped otherwise
+     */
+    private static ByteBuffer read(File file, ByteBuffer scratch) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > READ_LIMIT) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            scratch.clear().limit((int) size);
+            // One read in practice; more only after a short read
+            while (scratch.hasRemaining()) {
+                if (channel.read(scratch, scratch.position()) < 0) {
+                    break;
+                }
+            }
+            return scratch.flip();
+        }
+    }
+
+    /**
+     * Reads of a byte buffer, from its position to its limit
+     */
+    private static final class BufferChannel implements ReadableByteChannel {
+        private final ByteBuffer buffer;
+        private boolean open = true;
+
+        BufferChannel(ByteBuffer buffer) {
+            this.buffer = buffer.duplicate();
+        }
+
+        @Override
+        public int read(ByteBuffer target) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int chunk = Math.min(target.remaining(), buffer.remaining());
+            ByteBuffer slice = buffer.duplicate();
+            slice.limit(slice.position() + chunk);
+            target.put(slice);
+            buffer.position(buffer.position() + chunk);
+            return chunk;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+}
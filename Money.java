@@ -0,0 +1,126 @@
+package entregaUno;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-point money helpers. Amounts are held as a long number of cents, so
+ * sums are exact and cheap; the decimal-comma text of the catalogs and
+ * reports is parsed into cents and formatted back without going through
+ * double or String.format. Arithmetic that would overflow a long throws
+ * ArithmeticException instead of wrapping silently.
+ */
+final class Money {
+
+    private Money() {
+    }
+
+    /**
+     * Parses an amount such as "123,45" or "123.45" into cents. Digits beyond the
+     * second decimal are rounded half-up.
+     * @param bytes the source bytes
+     * @param from first index, inclusive
+     * @param to last index, exclusive
+     * @return the amount in cents
+     * @throws NumberFormatException if the bytes are not a valid amount
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static long parseCents(byte[] bytes, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+
+        long cents = 0;
+        boolean anyDigit = false;
+        int decimals = -1;
+        boolean roundUp = false;
+        for (; i < to; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                anyDigit = true;
+                if (decimals < 2) {
+                    cents = Math.addExact(Math.multiplyExact(cents, 10), b - '0');
+                    if (decimals >= 0) {
+                        decimals++;
+                    }
+                } else if (decimals == 2) {
+                    roundUp = b >= '5';
+                    decimals++;
+                }
+            } else if ((b == ',' || b == '.') && decimals < 0) {
+                decimals = 0;
+            } else {
+                throw invalidAmount(bytes, from, to);
+            }
+        }
+        if (!anyDigit) {
+            throw invalidAmount(bytes, from, to);
+        }
+
+        // Scale to exactly two decimals
+        for (int d = Math.max(decimals, 0); d < 2; d++) {
+            cents = Math.multiplyExact(cents, 10);
+        }
+        if (roundUp) {
+            cents = Math.addExact(cents, 1);
+        }
+        return negative ? -cents : cents;
+    }
+
+    /**
+     * Parses an amount such as "123,45" into cents
+     * @param text the amount
+     * @return the amount in cents
+     * @throws NumberFormatException if the text is not a valid amount
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static long parseCents(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        return parseCents(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Multiplies a unit price by a quantity
+     * @param priceCents the unit price in cents
+     * @param quantity the number of units
+     * @return the amount in cents
+     * @throws ArithmeticException if the result overflows
+     */
+    public static long times(long priceCents, long quantity) {
+        return Math.multiplyExact(priceCents, quantity);
+    }
+
+    /**
+     * Adds two amounts
+     * @throws ArithmeticException if the result overflows
+     */
+    public static long add(long cents, long moreCents) {
+        return Math.addExact(cents, moreCents);
+    }
+
+    /**
+     * Appends an amount with a decimal comma and two decimals, e.g. 12345 as "123,45"
+     * @param builder the destination
+     * @param cents the amount in cents
+     * @return the builder
+     */
+    public static StringBuilder appendTo(StringBuilder builder, long cents) {
+        long units = cents / 100;
+        int fraction = (int) Math.abs(cents % 100);
+        if (cents < 0 && units == 0) {
+            builder.append('-');
+        }
+        builder.append(units).append(',');
+        if (fraction < 10) {
+            builder.append('0');
+        }
+        return builder.append(fraction);
+    }
+
+    private static NumberFormatException invalidAmount(byte[] bytes, int from, int to) {
+        return new NumberFormatException("Valor monetario inválido: \""
+            + new String(bytes, from, to - from, StandardCharsets.UTF_8) + "\"");
+    }
+}
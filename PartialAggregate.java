@@ -0,0 +1,294 @@
+package entregaUno;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary partial aggregate of a subset of the sales files, written by map
+ * mode so several processes or machines can split a dataset and one merge
+ * produces the reports of a single run. It holds the total sold by seller key
+ * and the quantity sold by product ID, both sorted by unsigned key bytes, so
+ * any number of partials merge k-way in one streaming pass that keeps a single
+ * entry per input in memory. Keys are the raw catalog keys, not catalog
+ * indices, so partials do not depend on the order of the catalog files.
+ *
+ * Layout (big-endian): magic and version, the seller section, the product
+ * section and a CRC32 of everything before it. A section is a sequence of
+ * (key length, key bytes, value) entries ended by a length of -1. Entries
+ * with a zero value are left out: the merge takes the zero totals from the
+ * catalog, like the single run does.
+ */
+final class PartialAggregate {
+
+    static final String EXTENSION = ".parcial";
+
+    private static final int MAGIC = 0x56504152; // "VPAR"
+    private static final int VERSION = 1;
+    private static final int END_OF_SECTION = -1;
+    // Sanity limit, so a damaged length field fails fast instead of allocating huge arrays
+    private static final int MAX_KEY_LENGTH = 1 << 16;
+
+    private PartialAggregate() {
+    }
+
+    /**
+     * Receives the entries of a section, in ascending key order
+     */
+    interface EntrySink {
+        void accept(byte[] key, long value) throws IOException;
+
+        /**
+         * Called once the section has no more entries
+         */
+        default void endSection() throws IOException {
+        }
+    }
+
+    /**
+     * Writes one section from totals by catalog index: the entries with a
+     * non-zero value, sorted by key
+     * @param writer the partial being written
+     * @param values the value of each catalog index
+     * @param keyOf the key of a catalog index, only asked for the non-zero ones
+     * @throws IOException if the file cannot be written
+     */
+    static void writeSection(Writer writer, long[] values, IntFunction<byte[]> keyOf) throws IOException {
+        writeSection(writer, values.length, keyOf, i -> values[i]);
+    }
+
+    /**
+     * Writes one section from entries in any order: those with a non-zero value, sorted by key
+     * @param writer the partial being written
+     * @param count the number of entries
+     * @param keyOf the key of an entry, only asked for the non-zero ones
+     * @param valueOf the value of an entry
+     * @throws IOException if the file cannot be written
+     */
+    static void writeSection(Writer writer, int count, IntFunction<byte[]> keyOf, IntToLongFunction valueOf) throws IOException {
+        int nonZero = 0;
+        for (int i = 0; i < count; i++) {
+            if (valueOf.applyAsLong(i) != 0) {
+                nonZero++;
+            }
+        }
+        byte[][] keys = new byte[nonZero][];
+        long[] values = new long[nonZero];
+        for (int i = 0, entry = 0; i < count; i++) {
+            long value = valueOf.applyAsLong(i);
+            if (value != 0) {
+                keys[entry] = keyOf.apply(i);
+                values[entry] = value;
+                entry++;
+            }
+        }
+        for (int entry : Ranking.sortByKey(keys)) {
+            writer.accept(keys[entry], values[entry]);
+        }
+        writer.endSection();
+    }
+
+    /**
+     * Merges the partials k-way: equal keys are summed and every distinct key
+     * reaches the sink once, sellers first and then products. The checksums
+     * are verified once every input is consumed, so a damaged partial fails
+     * the merge before its result is used.
+     * @param inputs the partial files, in any order
+     * @param sellers receives the seller totals
+     * @param products receives the product quantities
+     * @throws IOException if a partial cannot be read or is damaged
+     */
+    static void merge(List<Path> inputs, EntrySink sellers, EntrySink products) throws IOException {
+        List<Cursor> cursors = new ArrayList<>();
+        try {
+            for (Path input : inputs) {
+                cursors.add(new Cursor(input));
+            }
+            mergeSection(cursors, sellers, "vendedores");
+            mergeSection(cursors, products, "productos");
+            for (Cursor cursor : cursors) {
+                cursor.verify();
+            }
+        } finally {
+            for (Cursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+    }
+
+    private static void mergeSection(List<Cursor> cursors, EntrySink sink, String section) throws IOException {
+        PriorityQueue<Cursor> heap = new PriorityQueue<>((a, b) -> Arrays.compareUnsigned(a.key, b.key));
+        for (Cursor cursor : cursors) {
+            if (cursor.next()) {
+                heap.add(cursor);
+            }
+        }
+        while (!heap.isEmpty()) {
+            Cursor first = heap.poll();
+            byte[] key = first.key;
+            long total = first.value;
+            advance(first, heap, key, section);
+            while (!heap.isEmpty() && Arrays.equals(heap.peek().key, key)) {
+                Cursor same = heap.poll();
+                total = Money.add(total, same.value);
+                advance(same, heap, key, section);
+            }
+            sink.accept(key, total);
+        }
+        sink.endSection();
+    }
+
+    private static void advance(Cursor cursor, PriorityQueue<Cursor> heap, byte[] previous, String section) throws IOException {
+        if (cursor.next()) {
+            if (Arrays.compareUnsigned(cursor.key, previous) <= 0) {
+                throw new IOException("claves de " + section + " desordenadas en " + cursor.path);
+            }
+            heap.add(cursor);
+        }
+    }
+
+    /**
+     * Sequential reader of one partial, positioned on one entry at a time
+     */
+    private static final class Cursor implements Closeable {
+        private final Path path;
+        private final DataInputStream in;
+        private final DataInputStream checked;
+        private final CRC32 checksum = new CRC32();
+        private byte[] key;
+        private long value;
+
+        Cursor(Path path) throws IOException {
+            this.path = path;
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+            checked = new DataInputStream(new CheckedInputStream(in, checksum));
+            try {
+                if (checked.readInt() != MAGIC || checked.readInt() != VERSION) {
+                    throw new IOException("no es un agregado parcial o tiene otro formato: " + path);
+                }
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Moves to the next entry of the current section
+         * @return false at the end of the section
+         */
+        boolean next() throws IOException {
+            try {
+                int length = checked.readInt();
+                if (length == END_OF_SECTION) {
+                    return false;
+                }
+                if (length < 0 || length > MAX_KEY_LENGTH) {
+                    throw new IOException("longitud de clave inválida en " + path + ": " + length);
+                }
+                key = new byte[length];
+                checked.readFully(key);
+                value = checked.readLong();
+                return true;
+            } catch (EOFException e) {
+                throw new IOException("agregado parcial incompleto: " + path, e);
+            }
+        }
+
+        void verify() throws IOException {
+            long expected = checksum.getValue();
+            if (in.readLong() != expected || in.read() != -1) {
+                throw new IOException("suma de verificación incorrecta en " + path);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes a partial section by section into a temporary file, which
+     * finish() publishes in one step; closing an unfinished writer discards it
+     */
+    static final class Writer implements EntrySink, Closeable {
+        private final Path target;
+        private final Path temporary;
+        private final FileOutputStream file;
+        private final DataOutputStream out;
+        private final DataOutputStream checked;
+        private final CRC32 checksum = new CRC32();
+        private int sections;
+        private boolean finished;
+
+        Writer(Path target) throws IOException {
+            this.target = target;
+            Path directory = target.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            temporary = directory.resolve(target.getFileName() + ".tmp");
+            file = new FileOutputStream(temporary.toFile());
+            out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+            checked = new DataOutputStream(new CheckedOutputStream(out, checksum));
+            checked.writeInt(MAGIC);
+            checked.writeInt(VERSION);
+        }
+
+        /**
+         * Appends an entry; keys must come in ascending order within a section
+         */
+        @Override
+        public void accept(byte[] key, long value) throws IOException {
+            checked.writeInt(key.length);
+            checked.write(key);
+            checked.writeLong(value);
+        }
+
+        @Override
+        public void endSection() throws IOException {
+            checked.writeInt(END_OF_SECTION);
+            sections++;
+        }
+
+        /**
+         * Seals the partial after its two sections and replaces the target with it
+         * @throws IOException if the file cannot be written or moved
+         */
+        void finish() throws IOException {
+            if (sections != 2) {
+                throw new IllegalStateException("agregado parcial sin sus dos secciones");
+            }
+            checked.flush();
+            out.writeLong(checksum.getValue());
+            out.flush();
+            // Make the data durable before the rename makes it visible
+            file.getFD().sync();
+            file.close();
+            SalesProcessor.publishReport(temporary, target);
+            finished = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                file.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package entregaUno;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * CSV file of the sales records rejected by SalesProcessor: the file, the
+ * line number, the reason and the rejected line. A line number of 0 means the
+ * record is not a single line, e.g. an empty file. Lines of a shard are
+ * numbered within their seller block, whose header is line 1, which is the
+ * line number the record had in the per-seller file the block was packed from.
+ *
+ * Workers reject records concurrently, so rows are written under a lock; the
+ * lock is only taken for rejected records, never on the clean path.
+ */
+final class Quarantine implements AutoCloseable {
+
+    private static final String[] HEADER = {"Archivo", "Línea", "Motivo", "Contenido"};
+
+    /**
+     * Why a record was rejected
+     */
+    enum Reason {
+        EMPTY_FILE("archivo vacío"),
+        UNKNOWN_SELLER("vendedor no encontrado"),
+        UNKNOWN_PRODUCT("producto no encontrado"),
+        MISSING_QUANTITY("falta la cantidad"),
+        INVALID_QUANTITY("cantidad inválida"),
+        INVALID_DATE("fecha inválida"),
+        OUTSIDE_BLOCK("línea fuera de un bloque de vendedor");
+
+        final String description;
+
+        Reason(String description) {
+            this.description = description;
+        }
+    }
+
+    private final CsvReportWriter writer;
+    private long rejected;
+
+    /**
+     * Creates or truncates the quarantine file and writes its header
+     * @param file the quarantine file
+     * @throws IOException if the file cannot be written
+     */
+    Quarantine(Path file) throws IOException {
+        writer = new CsvReportWriter(file, false);
+        writer.row(HEADER);
+    }
+
+    /**
+     * Appends a rejected record
+     * @param source the file the record comes from
+     * @param line the line number, or 0
+     * @param reason why the record was rejected
+     * @param content the rejected line or key
+     * @throws IOException if the row cannot be written
+     */
+    synchronized void reject(String source, long line, Reason reason, String content) throws IOException {
+        writer.field(source)
+            .field(line > 0 ? Long.toString(line) : "")
+            .field(reason.description)
+            .field(content);
+        writer.endRow();
+        rejected++;
+    }
+
+    synchronized long rejected() {
+        return rejected;
+    }
+
+    /**
+     * Makes the records written so far visible in the file
+     * @throws IOException if the file cannot be written
+     */
+    synchronized void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
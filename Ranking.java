@@ -0,0 +1,208 @@
+package entregaUno;
+
+import java.util.Arrays;
+
+/**
+ * Orders records by a primitive value, highest first, without wrapper objects
+ * or a boxed Comparator. Records are identified by their dense index and ties
+ * are always broken by ascending index (catalog order), so every mode gives
+ * the same, stable ranking. Keys written in sorted order (partials and
+ * catalog snapshots) are ordered the same way, ascending by their bytes.
+ */
+final class Ranking {
+
+    private Ranking() {
+    }
+
+    /**
+     * Ranks every record. When the value range and the index fit together in
+     * 63 bits, each record is packed into one long and the keys are sorted with
+     * Arrays.parallelSort; otherwise the indices are merge sorted on the values.
+     * @param values the value of each record
+     * @return the record indices, best first
+     */
+    public static int[] sort(long[] values) {
+        int n = values.length;
+        if (n == 0) {
+            return new int[0];
+        }
+
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (long value : values) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        int indexBits = 64 - Long.numberOfLeadingZeros(n - 1);
+        long range = max - min;
+        boolean packable = range >= 0 && (indexBits == 0 || range >>> (63 - indexBits) == 0);
+        return packable ? sortPacked(values, min, indexBits) : sortIndices(values);
+    }
+
+    /**
+     * Packs (value - min, reversed index) so that an ascending sort of the keys,
+     * read backwards, gives value descending and index ascending
+     */
+    private static int[] sortPacked(long[] values, long min, int indexBits) {
+        int n = values.length;
+        long lastIndex = n - 1;
+        long indexMask = indexBits == 0 ? 0 : -1L >>> (64 - indexBits);
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = ((values[i] - min) << indexBits) | (lastIndex - i);
+        }
+        Arrays.parallelSort(keys);
+
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = (int) (lastIndex - (keys[n - 1 - i] & indexMask));
+        }
+        return order;
+    }
+
+    /**
+     * Fallback for extreme value ranges: stable merge sort of the indices
+     */
+    private static int[] sortIndices(long[] values) {
+        int n = values.length;
+        int[] order = new int[n];
+        int[] buffer = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        for (int width = 1; width < n; width *= 2) {
+            for (int from = 0; from < n - width; from += 2 * width) {
+                int middle = from + width;
+                int to = Math.min(from + 2 * width, n);
+                int left = from;
+                int right = middle;
+                int out = from;
+                while (left < middle && right < to) {
+                    buffer[out++] = values[order[right]] > values[order[left]] ? order[right++] : order[left++];
+                }
+                while (left < middle) {
+                    buffer[out++] = order[left++];
+                }
+                while (right < to) {
+                    buffer[out++] = order[right++];
+                }
+                System.arraycopy(buffer, from, order, from, to - from);
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Orders records by their key bytes, compared unsigned, with a stable
+     * merge sort of the indices
+     * @param keys the key of each record
+     * @return the record indices, smallest key first
+     */
+    public static int[] sortByKey(byte[][] keys) {
+        int n = keys.length;
+        int[] order = new int[n];
+        int[] buffer = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        for (int width = 1; width < n; width *= 2) {
+            for (int from = 0; from < n - width; from += 2 * width) {
+                int middle = from + width;
+                int to = Math.min(from + 2 * width, n);
+                int left = from;
+                int right = middle;
+                int out = from;
+                while (left < middle && right < to) {
+                    buffer[out++] = Arrays.compareUnsigned(keys[order[right]], keys[order[left]]) < 0 ? order[right++] : order[left++];
+                }
+                while (left < middle) {
+                    buffer[out++] = order[left++];
+                }
+                while (right < to) {
+                    buffer[out++] = order[right++];
+                }
+                System.arraycopy(buffer, from, order, from, to - from);
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Returns the k best records using a bounded heap, in O(n log k)
+     * @param values the value of each record
+     * @param k the number of records wanted
+     * @return the indices of at most k records, best first
+     */
+    public static int[] top(long[] values, int k) {
+        int n = values.length;
+        k = Math.min(k, n);
+        if (k <= 0) {
+            return new int[0];
+        }
+
+        // Min-heap on rank: the root is the worst record kept so far
+        int[] heap = new int[k];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            if (size < k) {
+                heap[size] = i;
+                siftUp(heap, size++, values);
+            } else if (isBetter(values, i, heap[0])) {
+                heap[0] = i;
+                siftDown(heap, size, values);
+            }
+        }
+
+        // Removing the worst record repeatedly fills the result from the back
+        int[] result = new int[size];
+        for (int last = size - 1; last >= 0; last--) {
+            result[last] = heap[0];
+            heap[0] = heap[last];
+            siftDown(heap, last, values);
+        }
+        return result;
+    }
+
+    /**
+     * @return whether record a ranks before record b
+     */
+    private static boolean isBetter(long[] values, int a, int b) {
+        return values[a] > values[b] || (values[a] == values[b] && a < b);
+    }
+
+    private static void siftUp(int[] heap, int position, long[] values) {
+        int item = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!isBetter(values, heap[parent], item)) {
+                break;
+            }
+            heap[position] = heap[parent];
+            position = parent;
+        }
+        heap[position] = item;
+    }
+
+    private static void siftDown(int[] heap, int size, long[] values) {
+        if (size == 0) {
+            return;
+        }
+        int position = 0;
+        int item = heap[0];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && isBetter(values, heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!isBetter(values, item, heap[child])) {
+                break;
+            }
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = item;
+    }
+}
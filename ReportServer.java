@@ -0,0 +1,356 @@
+package entregaUno;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP endpoint over the latest SalesSnapshot, for dashboards that poll
+ * the rankings. Bound to the loopback address only.
+ *
+ *   GET /vendedores/top?n=10          best sellers by total sold
+ *   GET /productos/top?n=10           best products by quantity sold
+ *   GET /vendedores/buscar?documento=CC:123   one seller, with its position
+ *   GET /estado                       version and size of the aggregates
+ *
+ * Every query takes formato=json (default) or formato=csv; the CSV rows are
+ * those of the reports. Responses carry the snapshot version as ETag, so a
+ * client sending If-None-Match gets 304 until the aggregates change.
+ */
+final class ReportServer {
+
+    private static final int DEFAULT_TOP = 10;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    // Replaced as a whole by the ingestion thread; null until the first ingestion ends
+    private volatile SalesSnapshot snapshot;
+
+    /**
+     * Binds the server to localhost
+     * @param port the TCP port (0 picks a free one)
+     * @param threads number of request threads
+     * @throws IOException if the port cannot be bound
+     */
+    ReportServer(int port, int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/vendedores/top", exchange -> handle(exchange, this::topSellers));
+        server.createContext("/productos/top", exchange -> handle(exchange, this::topProducts));
+        server.createContext("/vendedores/buscar", exchange -> handle(exchange, this::findSeller));
+        server.createContext("/estado", exchange -> handle(exchange, this::status));
+        server.createContext("/", exchange -> handle(exchange, (current, query, csv) -> {
+            throw new RequestException(404, "ruta desconocida: " + exchange.getRequestURI().getPath());
+        }));
+    }
+
+    void start() {
+        server.start();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Makes new aggregates visible to the next requests
+     * @param snapshot the aggregates
+     */
+    void publish(SalesSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Renders a response body from a snapshot
+     */
+    private interface Query {
+        byte[] render(SalesSnapshot snapshot, Map<String, String> query, boolean csv) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, Query handler) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendError(exchange, 405, "solo se admite GET");
+                return;
+            }
+            SalesSnapshot current = snapshot;
+            if (current == null) {
+                sendError(exchange, 503, "los datos todavía se están cargando");
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String format = query.getOrDefault("formato", "json");
+            if (!format.equals("json") && !format.equals("csv")) {
+                sendError(exchange, 400, "formato desconocido: " + format);
+                return;
+            }
+            boolean csv = format.equals("csv");
+
+            String etag = "\"" + current.version + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            byte[] body;
+            try {
+                body = handler.render(current, query, csv);
+            } catch (RequestException e) {
+                sendError(exchange, e.status, e.getMessage());
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type",
+                csv ? "text/csv; charset=utf-8" : "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (RuntimeException e) {
+            // The executor would swallow it and leave the client waiting
+            System.err.println("Error al atender " + exchange.getRequestURI() + ": " + e);
+            throw e;
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private byte[] topSellers(SalesSnapshot current, Map<String, String> query, boolean csv) {
+        int n = Math.min(count(query), current.sellers.size());
+        return current.response("vendedores " + n + (csv ? " csv" : " json"), () -> {
+            int[] order = current.sellerOrder();
+            if (csv) {
+                return csv(writer -> {
+                    writer.row(SalesProcessor.SELLER_REPORT_HEADER);
+                    for (int rank = 0; rank < n; rank++) {
+                        SalesProcessor.writeSellerRow(writer, current.sellers.get(order[rank]), current.sellerTotals[order[rank]]);
+                        writer.endRow();
+                    }
+                });
+            }
+            StringBuilder json = new StringBuilder(64 + n * 128);
+            json.append("{\"version\":").append(current.version).append(",\"vendedores\":[");
+            for (int rank = 0; rank < n; rank++) {
+                if (rank > 0) {
+                    json.append(',');
+                }
+                appendSeller(json, current, order[rank], rank + 1);
+            }
+            return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+        });
+    }
+
+    private byte[] topProducts(SalesSnapshot current, Map<String, String> query, boolean csv) {
+        int n = Math.min(count(query), current.products.size());
+        return current.response("productos " + n + (csv ? " csv" : " json"), () -> {
+            int[] order = current.productOrder();
+            if (csv) {
+                return csv(writer -> {
+                    writer.row(SalesProcessor.PRODUCT_REPORT_HEADER);
+                    for (int rank = 0; rank < n; rank++) {
+                        SalesProcessor.writeProductRow(writer, current.products.get(order[rank]), current.productTotals[order[rank]]);
+                        writer.endRow();
+                    }
+                });
+            }
+            StringBuilder json = new StringBuilder(64 + n * 96);
+            json.append("{\"version\":").append(current.version).append(",\"productos\":[");
+            for (int rank = 0; rank < n; rank++) {
+                int index = order[rank];
+                SalesProcessor.Product product = current.products.get(index);
+                if (rank > 0) {
+                    json.append(',');
+                }
+                json.append("{\"posicion\":").append(rank + 1);
+                json.append(",\"id\":");
+                appendString(json, product.getId());
+                json.append(",\"nombre\":");
+                appendString(json, product.getName());
+                json.append(",\"precio\":");
+                appendAmount(json, product.getPriceCents());
+                json.append(",\"cantidadVendida\":").append(current.productTotals[index]).append('}');
+            }
+            return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+        });
+    }
+
+    private byte[] findSeller(SalesSnapshot current, Map<String, String> query, boolean csv) throws IOException {
+        String document = query.get("documento");
+        if (document == null || document.isEmpty()) {
+            throw new RequestException(400, "falta el parámetro documento (tipo:número)");
+        }
+        int seller = current.findSeller(document.getBytes(StandardCharsets.UTF_8));
+        if (seller == CatalogIndex.NOT_FOUND) {
+            throw new RequestException(404, "vendedor no encontrado: " + document);
+        }
+        int rank = current.sellerRank(seller);
+        if (csv) {
+            return csv(writer -> {
+                writer.row(concat(SalesProcessor.SELLER_REPORT_HEADER, "Posición"));
+                SalesProcessor.writeSellerRow(writer, current.sellers.get(seller), current.sellerTotals[seller]);
+                writer.field(rank).endRow();
+            });
+        }
+        StringBuilder json = new StringBuilder(192);
+        json.append("{\"version\":").append(current.version).append(",\"vendedor\":");
+        appendSeller(json, current, seller, rank);
+        return json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] status(SalesSnapshot current, Map<String, String> query, boolean csv) throws IOException {
+        if (csv) {
+            return csv(writer -> {
+                writer.row("Versión", "Actualizado", "Vendedores", "Productos");
+                writer.field(current.version).field(current.createdMillis)
+                    .field(current.sellers.size()).field(current.products.size()).endRow();
+            });
+        }
+        return ("{\"version\":" + current.version + ",\"actualizado\":" + current.createdMillis
+            + ",\"vendedores\":" + current.sellers.size() + ",\"productos\":" + current.products.size() + "}")
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendSeller(StringBuilder json, SalesSnapshot current, int index, int rank) {
+        SalesProcessor.Seller seller = current.sellers.get(index);
+        json.append("{\"posicion\":").append(rank);
+        json.append(",\"tipoDocumento\":");
+        appendString(json, seller.getDocumentType());
+        json.append(",\"numeroDocumento\":");
+        appendString(json, seller.getDocumentNumber());
+        json.append(",\"nombre\":");
+        appendString(json, seller.getName());
+        json.append(",\"apellido\":");
+        appendString(json, seller.getLastName());
+        json.append(",\"totalVendido\":");
+        appendAmount(json, current.sellerTotals[index]);
+        json.append('}');
+    }
+
+    /**
+     * Appends an amount as a JSON number with two decimals, e.g. 12345 as 123.45
+     */
+    private static void appendAmount(StringBuilder json, long cents) {
+        int start = json.length();
+        Money.appendTo(json, cents);
+        int comma = json.indexOf(",", start);
+        json.setCharAt(comma, '.');
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Writes rows with the report CSV writer into a byte array
+     */
+    private interface CsvBody {
+        void write(CsvReportWriter writer) throws IOException;
+    }
+
+    private static byte[] csv(CsvBody body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CsvReportWriter writer = new CsvReportWriter(Channels.newChannel(bytes), false)) {
+            body.write(writer);
+        } catch (IOException e) {
+            // A byte array does not fail
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String[] concat(String[] header, String column) {
+        String[] columns = Arrays.copyOf(header, header.length + 1);
+        columns[header.length] = column;
+        return columns;
+    }
+
+    private static int count(Map<String, String> query) {
+        String value = query.get("n");
+        if (value == null) {
+            return DEFAULT_TOP;
+        }
+        try {
+            int n = Integer.parseInt(value);
+            if (n > 0) {
+                return n;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new RequestException(400, "n debe ser un entero positivo: " + value);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        byte[] body = json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * A request that cannot be answered, with its HTTP status
+     */
+    private static final class RequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
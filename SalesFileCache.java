@@ -0,0 +1,210 @@
+package entregaUno;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary sidecar cache with the partial aggregate of every sales file.
+ * An entry is keyed by the file path, size and modification time and holds
+ * the raw seller key and the quantity sold of each product ID, never prices
+ * or catalog indices, so a price or catalog change does not invalidate it.
+ * The file carries a version number and a CRC32 of its contents; it is
+ * written to a temporary file, synced and atomically renamed, so a crash
+ * leaves either the old or the new cache, and a damaged file is ignored.
+ */
+final class SalesFileCache {
+
+    private static final int MAGIC = 0x56434348; // "VCCH"
+    private static final int VERSION = 1;
+    // Sanity limits, so a damaged length field fails fast instead of allocating huge arrays
+    private static final int MAX_KEY_LENGTH = 1 << 16;
+    private static final int MAX_PRODUCTS_PER_FILE = 1 << 24;
+
+    private final Map<String, Entry> entries;
+
+    private SalesFileCache(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Reads a cache file. A missing, outdated or damaged file gives an empty cache.
+     * @param path the cache file
+     * @return the cache
+     */
+    public static SalesFileCache load(Path path) {
+        Map<String, Entry> entries = new HashMap<>();
+        if (!Files.isRegularFile(path)) {
+            return new SalesFileCache(entries);
+        }
+
+        CRC32 checksum = new CRC32();
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            DataInputStream checked = new DataInputStream(new CheckedInputStream(in, checksum));
+            if (checked.readInt() != MAGIC || checked.readInt() != VERSION) {
+                System.out.println("Caché de ventas con otro formato, se reconstruye: " + path);
+                return new SalesFileCache(new HashMap<>());
+            }
+            int count = checked.readInt();
+            for (int i = 0; i < count; i++) {
+                Entry entry = readEntry(checked);
+                entries.put(entry.path, entry);
+            }
+            long expected = checksum.getValue();
+            if (in.readLong() != expected || in.read() != -1) {
+                throw new IOException("suma de verificación incorrecta");
+            }
+        } catch (EOFException e) {
+            System.out.println("Caché de ventas incompleta, se ignora: " + path);
+            entries.clear();
+        } catch (IOException e) {
+            System.out.println("Caché de ventas dañada, se ignora: " + path + " (" + e.getMessage() + ")");
+            entries.clear();
+        }
+        return new SalesFileCache(entries);
+    }
+
+    /**
+     * Returns the cached partial aggregate of a file if the file did not change
+     * @param file the sales file
+     * @return the entry, or null if the file is not cached or changed
+     */
+    public Entry lookup(File file) {
+        Entry entry = entries.get(file.getPath());
+        if (entry == null || entry.size != file.length() || entry.lastModified != file.lastModified()) {
+            return null;
+        }
+        return entry;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes a new cache file with the given entries, replacing the old one atomically
+     * @param path the cache file
+     * @param entries the entries of the files seen in this run
+     * @throws IOException if the cache cannot be written
+     */
+    public static void write(Path path, Collection<Entry> entries) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = directory.resolve(path.getFileName() + ".tmp");
+
+        CRC32 checksum = new CRC32();
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+            DataOutputStream checked = new DataOutputStream(new CheckedOutputStream(out, checksum));
+            checked.writeInt(MAGIC);
+            checked.writeInt(VERSION);
+            checked.writeInt(entries.size());
+            for (Entry entry : entries) {
+                writeEntry(checked, entry);
+            }
+            checked.flush();
+            out.writeLong(checksum.getValue());
+            out.flush();
+            // Make the data durable before the rename makes it visible
+            file.getFD().sync();
+        }
+
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        String path = in.readUTF();
+        long size = in.readLong();
+        long lastModified = in.readLong();
+        byte[] sellerKey = readBytes(in);
+        int count = in.readInt();
+        if (count < 0 || count > MAX_PRODUCTS_PER_FILE) {
+            throw new IOException("número de productos inválido: " + count);
+        }
+        byte[][] productIds = new byte[count][];
+        long[] quantities = new long[count];
+        for (int i = 0; i < count; i++) {
+            productIds[i] = readBytes(in);
+            quantities[i] = in.readLong();
+        }
+        return new Entry(path, size, lastModified, sellerKey, productIds, quantities);
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+        out.writeUTF(entry.path);
+        out.writeLong(entry.size);
+        out.writeLong(entry.lastModified);
+        writeBytes(out, entry.sellerKey);
+        out.writeInt(entry.productIds.length);
+        for (int i = 0; i < entry.productIds.length; i++) {
+            writeBytes(out, entry.productIds[i]);
+            out.writeLong(entry.quantities[i]);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_KEY_LENGTH) {
+            throw new IOException("longitud de clave inválida: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Partial aggregate of one sales file
+     */
+    static final class Entry {
+        final String path;
+        final long size;
+        final long lastModified;
+        // Raw first line of the file, null for an empty file
+        final byte[] sellerKey;
+        // Distinct product IDs as written in the file, with their total quantity
+        final byte[][] productIds;
+        final long[] quantities;
+
+        Entry(String path, long size, long lastModified, byte[] sellerKey, byte[][] productIds, long[] quantities) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.sellerKey = sellerKey;
+            this.productIds = productIds;
+            this.quantities = quantities;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package entregaUno;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Opens a sales file as one or more byte streams, decompressing on the fly
+ * with the codecs of the JDK, so compressed drops are ingested without a
+ * decompressed copy on disk. The codec comes from the extension (.gz, .gzip,
+ * .zz, .deflate, .zip) or, without one, from the magic bytes of gzip and zip;
+ * zlib has no reliable magic and needs its extension. Anything else is read
+ * as is through the file channel.
+ *
+ * A gzip or zlib file holds one sales file, named by its name without the
+ * codec extension (ventas_00001.shard.gz is a shard). A zip archive holds
+ * any number of plain per-seller files and shards, one stream per entry.
+ */
+final class SalesInput implements Closeable {
+
+    enum Codec {
+        NONE,
+        GZIP,
+        ZLIB,
+        ZIP
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String fileName;
+    private final FileChannel file;
+    private final Codec codec;
+    private InputStream stream;
+    private ZipInputStream zip;
+    private ReadableByteChannel channel;
+    private String entryName;
+    private boolean started;
+
+    private SalesInput(File file, FileChannel channel, Codec codec) {
+        this.fileName = file.getName();
+        this.file = channel;
+        this.codec = codec;
+    }
+
+    /**
+     * Opens a sales file, detecting its codec
+     * @param file the sales file
+     * @return the input, positioned before its first stream
+     * @throws IOException if the file cannot be opened
+     */
+    static SalesInput open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new SalesInput(file, channel, detect(file.getName(), channel));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static Codec detect(String name, FileChannel channel) throws IOException {
+        Codec codec = codecOfName(name);
+        if (codec != Codec.NONE) {
+            return codec;
+        }
+        // A positional read leaves the channel at 0 for an uncompressed file
+        ByteBuffer magic = ByteBuffer.allocate(4);
+        while (magic.hasRemaining()) {
+            if (channel.read(magic, magic.position()) <= 0) {
+                break;
+            }
+        }
+        return codecOfMagic(magic, magic.position());
+    }
+
+    /**
+     * @param magic the first bytes of a file, from index 0
+     * @param length how many of them were read, up to 4
+     */
+    private static Codec codecOfMagic(ByteBuffer magic, int length) {
+        if (length >= 2 && (magic.get(0) & 0xff) == 0x1f && (magic.get(1) & 0xff) == 0x8b) {
+            return Codec.GZIP;
+        }
+        if (length == 4 && magic.getInt(0) == 0x504b0304) {
+            return Codec.ZIP;
+        }
+        return Codec.NONE;
+    }
+
+    /**
+     * @param name a file name
+     * @param head the bytes of the file, from index 0
+     * @return whether open() would decompress the file, by its extension or its magic bytes
+     */
+    static boolean isCompressed(String name, ByteBuffer head) {
+        return hasCodecExtension(name) || codecOfMagic(head, Math.min(head.limit(), 4)) != Codec.NONE;
+    }
+
+    /**
+     * @param name a file name
+     * @return whether the name ends in the extension of a codec
+     */
+    static boolean hasCodecExtension(String name) {
+        return codecOfName(name) != Codec.NONE;
+    }
+
+    private static Codec codecOfName(String name) {
+        if (name.endsWith(".gz") || name.endsWith(".gzip")) {
+            return Codec.GZIP;
+        }
+        if (name.endsWith(".zz") || name.endsWith(".deflate")) {
+            return Codec.ZLIB;
+        }
+        if (name.endsWith(".zip")) {
+            return Codec.ZIP;
+        }
+        return Codec.NONE;
+    }
+
+    /**
+     * @param name a file name
+     * @return the name without its codec extension, e.g. "ventas_00001.shard" for "ventas_00001.shard.gz"
+     */
+    static String baseName(String name) {
+        switch (codecOfName(name)) {
+            case GZIP:
+            case ZLIB:
+                return name.substring(0, name.lastIndexOf('.'));
+            default:
+                return name;
+        }
+    }
+
+    /**
+     * @param name a file name
+     * @return whether the file may hold the sales of many sellers: a shard, compressed or not, or a zip archive
+     */
+    static boolean holdsManySellers(String name) {
+        return codecOfName(name) == Codec.ZIP || SalesShards.isShardFileName(baseName(name));
+    }
+
+    /**
+     * Advances to the next sales stream: the only one of a plain, gzip or
+     * zlib file, or the next sales entry of a zip archive
+     * @return false when there are no more streams
+     * @throws IOException if the file cannot be read
+     */
+    boolean next() throws IOException {
+        if (codec != Codec.ZIP) {
+            if (started) {
+                return false;
+            }
+            started = true;
+            entryName = baseName(fileName);
+            if (codec == Codec.NONE) {
+                channel = file;
+            } else {
+                InputStream in = Channels.newInputStream(file);
+                stream = codec == Codec.GZIP
+                    ? new GZIPInputStream(in, BUFFER_SIZE)
+                    : new InflaterInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+                channel = Channels.newChannel(stream);
+            }
+            return true;
+        }
+
+        if (zip == null) {
+            zip = new ZipInputStream(new BufferedInputStream(Channels.newInputStream(file), BUFFER_SIZE));
+        }
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            String name = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+            if (!entry.isDirectory() && SalesProcessor.isSalesFileName(name)) {
+                entryName = name;
+                // Reads end at the end of the entry; the channel is never closed on its own
+                channel = Channels.newChannel(zip);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the decompressed bytes of the current stream
+     */
+    ReadableByteChannel channel() {
+        return channel;
+    }
+
+    /**
+     * @return the name of the current stream for messages: the file name, or "archive.zip!entry"
+     */
+    String source() {
+        return codec == Codec.ZIP ? fileName + "!" + entryName : fileName;
+    }
+
+    /**
+     * @return whether the current stream is a shard
+     */
+    boolean isShard() {
+        return SalesShards.isShardFileName(entryName);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (zip != null) {
+                zip.close();
+            } else if (stream != null) {
+                stream.close();
+            }
+        } finally {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package entregaUno;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Metrics of a SalesProcessor run: wall time per phase, volume ingested and
+ * counters of bad data. Workers update the counters concurrently (LongAdder),
+ * once per file for the volume and once per event for the data problems.
+ *
+ * Problems in the data are also reported on the console, but only as a
+ * sample: at most maxMessagesPerSecond messages are printed per second and the
+ * rest are just counted, so a dirty input does not turn the parse loop into a
+ * console-bound one.
+ */
+final class SalesMetrics implements SalesMetricsMBean {
+
+    static final String OBJECT_NAME = "entregaUno:type=SalesProcessor";
+
+    /**
+     * Timed phases of a run; the last measurement of each is kept
+     */
+    enum Phase {
+        CATALOG_LOAD("catalogLoad"),
+        INGESTION("ingestion"),
+        SELLER_REPORT("sellerReport"),
+        PRODUCT_REPORT("productReport"),
+        ROLLUP_REPORTS("rollupReports");
+
+        final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+    }
+
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+    // Every ingestion of the run, for the rates: watch mode ingests many times
+    private final LongAdder ingestionNanos = new LongAdder();
+
+    final LongAdder filesProcessed = new LongAdder();
+    final LongAdder linesProcessed = new LongAdder();
+    final LongAdder bytesProcessed = new LongAdder();
+    final LongAdder unknownProducts = new LongAdder();
+    final LongAdder unknownSellers = new LongAdder();
+    final LongAdder emptyFiles = new LongAdder();
+    final LongAdder parseErrors = new LongAdder();
+    final LongAdder failedFiles = new LongAdder();
+
+    // Sample log: messages allowed in the current one second window
+    static final int DEFAULT_MESSAGES_PER_SECOND = 10;
+    private volatile int maxMessagesPerSecond = DEFAULT_MESSAGES_PER_SECOND;
+    private volatile long windowStartNanos = System.nanoTime();
+    private final AtomicInteger messagesInWindow = new AtomicInteger();
+    private final LongAdder suppressedMessages = new LongAdder();
+
+    /**
+     * @param maxMessagesPerSecond data problem messages printed per second (0 prints none)
+     */
+    void setMaxMessagesPerSecond(int maxMessagesPerSecond) {
+        this.maxMessagesPerSecond = maxMessagesPerSecond;
+    }
+
+    void recordPhase(Phase phase, long nanos) {
+        phaseNanos.set(phase.ordinal(), nanos);
+        if (phase == Phase.INGESTION) {
+            ingestionNanos.add(nanos);
+        }
+    }
+
+    long phaseMillis(Phase phase) {
+        return phaseNanos.get(phase.ordinal()) / 1_000_000;
+    }
+
+    /**
+     * Decides whether a data problem message is printed; callers build the
+     * message only when this returns true
+     * @return true if the message fits in the current window's allowance
+     */
+    boolean sample() {
+        long now = System.nanoTime();
+        if (now - windowStartNanos >= 1_000_000_000L) {
+            // Racy by design: two threads may both open a window, which only lets a few more messages through
+            windowStartNanos = now;
+            messagesInWindow.set(0);
+        }
+        if (messagesInWindow.incrementAndGet() <= maxMessagesPerSecond) {
+            return true;
+        }
+        suppressedMessages.increment();
+        return false;
+    }
+
+    /**
+     * Registers these metrics in the platform MBean server, replacing those of
+     * an earlier processor in the same JVM
+     * @return whether the registration succeeded
+     */
+    boolean register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new StandardMBean(this, SalesMetricsMBean.class), name);
+            return true;
+        } catch (JMException e) {
+            System.err.println("No se pudieron registrar las métricas JMX: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Prints the data problems found, if any
+     */
+    void printDataProblems() {
+        if (unknownProducts.sum() + unknownSellers.sum() + emptyFiles.sum() + parseErrors.sum() + failedFiles.sum() == 0) {
+            return;
+        }
+        System.out.println("Problemas en los datos: " + unknownProducts.sum() + " producto(s) no encontrado(s), "
+            + unknownSellers.sum() + " vendedor(es) no encontrado(s), " + emptyFiles.sum() + " archivo(s) vacío(s), "
+            + parseErrors.sum() + " línea(s) inválida(s), " + failedFiles.sum() + " archivo(s) con error de lectura"
+            + (suppressedMessages.sum() > 0 ? " (" + suppressedMessages.sum() + " mensaje(s) omitidos)" : ""));
+    }
+
+    /**
+     * Writes the run summary as JSON, replacing the file atomically
+     * @param file the summary file
+     * @throws IOException if the file cannot be written
+     */
+    void writeSummary(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            out.write("{\n");
+            out.write("  \"phasesMillis\": {");
+            for (Phase phase : Phase.values()) {
+                out.write((phase.ordinal() == 0 ? "\n" : ",\n") + "    \"" + phase.key + "\": " + phaseMillis(phase));
+            }
+            out.write("\n  },\n");
+            out.write("  \"filesProcessed\": " + getFilesProcessed() + ",\n");
+            out.write("  \"linesProcessed\": " + getLinesProcessed() + ",\n");
+            out.write("  \"bytesProcessed\": " + getBytesProcessed() + ",\n");
+            out.write("  \"filesPerSecond\": " + jsonNumber(getFilesPerSecond()) + ",\n");
+            out.write("  \"linesPerSecond\": " + jsonNumber(getLinesPerSecond()) + ",\n");
+            out.write("  \"bytesPerSecond\": " + jsonNumber(getBytesPerSecond()) + ",\n");
+            out.write("  \"unknownProducts\": " + getUnknownProducts() + ",\n");
+            out.write("  \"unknownSellers\": " + getUnknownSellers() + ",\n");
+            out.write("  \"emptyFiles\": " + getEmptyFiles() + ",\n");
+            out.write("  \"parseErrors\": " + getParseErrors() + ",\n");
+            out.write("  \"failedFiles\": " + getFailedFiles() + ",\n");
+            out.write("  \"suppressedMessages\": " + getSuppressedMessages() + "\n");
+            out.write("}\n");
+        }
+        SalesProcessor.publishReport(temporary, file);
+    }
+
+    private static String jsonNumber(double value) {
+        // JSON has no NaN or Infinity; rates are 0 until the ingestion has been timed
+        return Double.isFinite(value) ? String.format(Locale.ROOT, "%.1f", value) : "0";
+    }
+
+    private double perSecond(long count) {
+        long nanos = ingestionNanos.sum();
+        return nanos > 0 ? count * 1e9 / nanos : 0;
+    }
+
+    @Override
+    public long getCatalogLoadMillis() {
+        return phaseMillis(Phase.CATALOG_LOAD);
+    }
+
+    @Override
+    public long getIngestionMillis() {
+        return phaseMillis(Phase.INGESTION);
+    }
+
+    @Override
+    public long getSellerReportMillis() {
+        return phaseMillis(Phase.SELLER_REPORT);
+    }
+
+    @Override
+    public long getProductReportMillis() {
+        return phaseMillis(Phase.PRODUCT_REPORT);
+    }
+
+    @Override
+    public long getRollupReportsMillis() {
+        return phaseMillis(Phase.ROLLUP_REPORTS);
+    }
+
+    @Override
+    public long getFilesProcessed() {
+        return filesProcessed.sum();
+    }
+
+    @Override
+    public long getLinesProcessed() {
+        return linesProcessed.sum();
+    }
+
+    @Override
+    public long getBytesProcessed() {
+        return bytesProcessed.sum();
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return perSecond(getFilesProcessed());
+    }
+
+    @Override
+    public double getLinesPerSecond() {
+        return perSecond(getLinesProcessed());
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return perSecond(getBytesProcessed());
+    }
+
+    @Override
+    public long getUnknownProducts() {
+        return unknownProducts.sum();
+    }
+
+    @Override
+    public long getUnknownSellers() {
+        return unknownSellers.sum();
+    }
+
+    @Override
+    public long getEmptyFiles() {
+        return emptyFiles.sum();
+    }
+
+    @Override
+    public long getParseErrors() {
+        return parseErrors.sum();
+    }
+
+    @Override
+    public long getFailedFiles() {
+        return failedFiles.sum();
+    }
+
+    @Override
+    public long getSuppressedMessages() {
+        return suppressedMessages.sum();
+    }
+}
@@ -0,0 +1,43 @@
+package entregaUno;
+
+/**
+ * JMX view of the SalesProcessor metrics, registered as
+ * "entregaUno:type=SalesProcessor". Counters grow during ingestion, so a
+ * console such as jconsole shows the progress of a long run or of watch mode.
+ */
+public interface SalesMetricsMBean {
+
+    long getCatalogLoadMillis();
+
+    long getIngestionMillis();
+
+    long getSellerReportMillis();
+
+    long getProductReportMillis();
+
+    long getRollupReportsMillis();
+
+    long getFilesProcessed();
+
+    long getLinesProcessed();
+
+    long getBytesProcessed();
+
+    double getFilesPerSecond();
+
+    double getLinesPerSecond();
+
+    double getBytesPerSecond();
+
+    long getUnknownProducts();
+
+    long getUnknownSellers();
+
+    long getEmptyFiles();
+
+    long getParseErrors();
+
+    long getFailedFiles();
+
+    long getSuppressedMessages();
+}
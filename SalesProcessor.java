@@ -1,293 +1,2366 @@
 package entregaUno;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class SalesProcessor {
     
-    // Input and output directories
+    // Default input and output directories
     private static final String INPUT_DIR = "data/";
     private static final String OUTPUT_DIR = "reports/";
     
-    // Data structures to store information
-    private final Map<String, Seller> sellers = new HashMap<>();
-    private final  Map<String, Product> products = new HashMap<>();
-    private final Map<String, List<Sale>> salesBySeller = new HashMap<>();
-    private final Map<String, Integer> totalProductsSold = new HashMap<>();
+    private String inputDir;
+    private final String outputDir;
+    
+    static final String[] SELLER_REPORT_HEADER = {"Tipo Documento", "Número Documento", "Nombre", "Apellido", "Total Vendido"};
+    static final String[] PRODUCT_REPORT_HEADER = {"ID", "Nombre", "Precio", "Cantidad Vendida"};
+    
+    // Catalogs: every seller and product gets a dense index into these lists; a reload replaces them
+    private List<Seller> sellers = new ArrayList<>();
+    private List<Product> products = new ArrayList<>();
+    private CatalogIndex sellerIndex = new SellerKeyIndex();
+    private CatalogIndex productIndex = new ByteKeyIndex();
+    // Product prices in cents by product index, read on every sales line
+    private long[] productPrices = new long[0];
+    // UTF-8 product IDs by product index, used to fill the file cache
+    private byte[][] productKeys = new byte[0][];
+    
+    // Totals by seller index (in cents) and by product index, filled by the ingestion
+    private long[] totalSoldBySeller = new long[0];
+    private long[] totalProductsSold = new long[0];
+    
+    // Number of worker threads used to ingest sales files (1 = sequential)
+    private int workerCount = 1;
+    
+    // Number of files a worker claims at a time from the shared file list
+    private static final int FILES_PER_BATCH = 64;
+    // Shards are cut into about this many ranges per worker, of at least MIN_SHARD_RANGE bytes
+    private static final int SHARD_RANGES_PER_WORKER = 4;
+    private static final long MIN_SHARD_RANGE = 4L * 1024 * 1024;
+    
+    // Sidecar cache of per-file partial aggregates (null = disabled)
+    private Path cachePath = null;
+    private SalesFileCache cache;
+    // Entries for the next cache file and how many files were reused or parsed
+    private final List<SalesFileCache.Entry> cacheEntries = new ArrayList<>();
+    private int filesFromCache;
+    private static final String DEFAULT_CACHE_FILE = ".ventas.cache";
+    
+    // Memory-mapped binary copy of the catalogs, rebuilt when the text catalogs change (null = disabled)
+    private Path catalogSnapshotPath = null;
+    private static final String DEFAULT_CATALOG_SNAPSHOT_FILE = ".catalogo.snapshot";
+    // Catalog records as parallel arrays and pooled strings instead of one object per record
+    private boolean compactStorage = false;
+    
+    // Report shape: only the best topK rows (0 = all), split in pages of pageSize rows (0 = one file),
+    // optionally gzip compressed
+    private int topK = 0;
+    private int pageSize = 0;
+    private boolean compressReports = false;
+    
+    // Watch mode: keep running and update the reports as sales files change
+    private boolean watchMode = false;
+    private long debounceMillis = 500;
+    
+    // Watch mode: sales of every ingested file, so a changed or deleted file can be subtracted
+    private final Map<Path, FileSales> salesByFile = new HashMap<>();
+    private final ByteRecordReader watchReader = new ByteRecordReader();
+    
+    // Daemon mode: watch mode plus an HTTP server over snapshots of the totals (-1 = no server)
+    private int servePort = -1;
+    private ReportServer server;
+    private long snapshotVersion;
+    private static final int DEFAULT_SERVE_PORT = 8080;
+    private static final int SERVER_THREADS = 4;
+    
+    // Spill-to-disk seller aggregation; 0 keeps every seller in memory
+    private long memoryBudget = 0;
+    private SpillingSellerAggregator spillingSellers;
+    
+    // Phase times, volume and data problem counters, also published over JMX
+    final SalesMetrics metrics = new SalesMetrics();
+    // JSON run summary (null = <outputDir>/resumen_ejecucion.json)
+    private Path summaryPath = null;
+    private static final String DEFAULT_SUMMARY_FILE = "resumen_ejecucion.json";
+    // Codes returned by parseSaleQuantity in place of a quantity, all below Integer.MIN_VALUE
+    private static final long BLANK_LINE = Long.MIN_VALUE;
+    private static final long MISSING_QUANTITY = Long.MIN_VALUE + 1;
+    private static final long INVALID_QUANTITY = Long.MIN_VALUE + 2;
+    private static final long INVALID_DATE = Long.MIN_VALUE + 3;
+    
+    // Rejected records (null = only counted); strict mode stops at the first one instead
+    private Path quarantinePath = null;
+    private Quarantine quarantine;
+    private static final String DEFAULT_QUARANTINE_FILE = "cuarentena.csv";
+    private boolean strict = false;
+    
+    // Extra aggregations computed in the ingestion pass and written as extra reports (none by default)
+    private Set<SalesRollups.Kind> rollupKinds = EnumSet.noneOf(SalesRollups.Kind.class);
+    private SalesRollups rollups;
+    static final String[] SELLER_PRODUCT_REPORT_HEADER = {"Tipo Documento", "Número Documento", "ID Producto", "Producto", "Cantidad", "Ingresos"};
+    static final String[] PRODUCT_REVENUE_REPORT_HEADER = {"ID", "Nombre", "Precio", "Cantidad Vendida", "Ingresos"};
+    static final String[] DOCUMENT_TYPE_REPORT_HEADER = {"Tipo Documento", "Vendedores", "Vendedores con Ventas", "Unidades", "Total Vendido"};
+    static final String[] STATISTICS_REPORT_HEADER = {"Medida", "Cantidad", "Mínimo", "Máximo", "Media", "Desviación", "P50", "P90", "P99"};
+    
+    // Map/merge: write a partial aggregate instead of the reports (null = off), build the reports
+    // or a new partial from partials (null = off), and the part of the sales files this process ingests
+    private Path mapPath = null;
+    private List<Path> mergeInputs = null;
+    private int partIndex = 0;
+    private int partCount = 1;
+    
+    // Per-day rollup segments of dated sales (null = off), and the date range of a query over them (null = none)
+    private Path segmentsPath = null;
+    private static final String DEFAULT_SEGMENTS_DIR = "segmentos";
+    private LocalDate rangeFrom = null;
+    private LocalDate rangeTo = null;
+    private SalesSegments segments;
+    // Appended to the report names, so range reports do not replace the full ones
+    private String reportSuffix = "";
+    
+    // Where the catalogs and sales come from (null = the files of inputDir), as chosen by --source
+    private SalesSource source = null;
+    private String sourceSpec = "archivos";
+    // Sales pushed as records or text streams by the source, counted as their writers close
+    private long recordsPushed;
+    private int streamsPushed;
+    
+    /**
+     * Creates a processor that reads data/ and writes reports/
+     */
+    public SalesProcessor() {
+        this(INPUT_DIR, OUTPUT_DIR);
+    }
+    
+    /**
+     * Creates a processor over other directories, e.g. a benchmark dataset
+     * @param inputDir directory with the catalogs and sales files, ending in '/'
+     * @param outputDir directory for the reports, ending in '/'
+     */
+    SalesProcessor(String inputDir, String outputDir) {
+        this.inputDir = inputDir;
+        this.outputDir = outputDir;
+    }
+    
+    /**
+     * Selects the struct-of-arrays catalog storage, as --storage=compacto does
+     */
+    void useCompactStorage() {
+        compactStorage = true;
+    }
+    
+    /**
+     * Takes the catalogs and sales from a source instead of the files of the
+     * input directory, for programs that embed the processor
+     * @param source the source, read by loadCatalogs and processSalesFiles
+     */
+    void useSource(SalesSource source) {
+        this.source = source;
+    }
+    
+    /**
+     * @return the loaded sellers, in index order
+     */
+    List<Seller> sellers() {
+        return sellers;
+    }
+    
+    /**
+     * Main method that executes file processing and report generation
+     * @param args command line arguments: [--threads=N] where N is the number
+     *             of ingestion workers (0 uses every available core),
+     *             [--watch] to keep updating the reports as sales files arrive,
+     *             [--debounce=MS] quiet period before the reports are rewritten,
+     *             [--cache[=FILE]] to reuse the partial aggregates of unchanged files,
+     *             [--top=K] to write only the K best rows of each report,
+     *             [--page-size=N] to split each report into files of N rows,
+     *             [--gzip] to write the reports gzip compressed (.csv.gz),
+     *             [--memory-budget=MB] to aggregate sellers on disk within MB megabytes,
+     *             [--input=DIR] to read the catalogs and sales from DIR instead of data/,
+     *             [--summary=FILE] where to write the JSON run summary,
+     *             [--log-rate=N] data problem messages printed per second (the rest are only counted),
+     *             [--quarantine=FILE] where to write the rejected records,
+     *             [--strict] to stop at the first rejected record or unreadable file,
+     *             [--serve[=PORT]] to run as a daemon answering ranking queries over HTTP (implies --watch),
+     *             [--rollups=LIST] extra aggregations to compute in the same pass and write as reports,
+     *             [--catalog-snapshot[=FILE]] to load the catalogs from a memory-mapped binary snapshot,
+     *             [--storage=objetos|compacto] how the catalog records are held in memory,
+     *             [--map=FILE] to write a partial aggregate of the ingested files instead of the reports,
+     *             [--merge=LIST] to build the reports (or, with --map, a new partial) from partial aggregates,
+     *             [--part=I/N] to ingest only part I of N of the sales files,
+     *             [--segments[=DIR]] to write per-day rollup segments of the dated sales,
+     *             [--range=FROM..TO] to write the reports of a date range from the segments,
+     *             [--source=archivos|mapeado|sintetico:SELLERS:PRODUCTS[,option=value...]] where the
+     *             catalogs and sales come from: the files, the files memory-mapped, or a dataset generated in memory
+     */
+    
+    public static void main(String[] args) {
+        int exitCode = run(new SalesProcessor(), args);
+        // Fail fast also for scripts, once the quarantine and the server are closed
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
+    }
+    
+    /**
+     * Runs the processor as main does, without ending the JVM
+     * @param processor the processor, which fixes the input and output directories unless --input is given
+     * @param args command line arguments, as for main
+     * @return the exit code: 1 when strict mode stopped the run, 0 otherwise (errors are reported on the console)
+     */
+    static int run(SalesProcessor processor, String[] args) {
+        try {
+            processor.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error en los argumentos: " + e.getMessage());
+            System.err.println("Uso: java SalesProcessor [--threads=N] [--watch] [--debounce=MS] [--cache[=ARCHIVO]] [--top=K] [--page-size=N] [--gzip] [--memory-budget=MB] [--input=DIR] [--summary=ARCHIVO] [--log-rate=N] [--quarantine=ARCHIVO] [--strict] [--serve[=PUERTO]] [--rollups=LISTA] [--catalog-snapshot[=ARCHIVO]] [--storage=objetos|compacto] [--map=ARCHIVO] [--merge=LISTA] [--part=I/N] [--segments[=DIR]] [--range=DESDE..HASTA] [--source=archivos|mapeado|sintetico:VENDEDORES:PRODUCTOS[,opción=valor...]]");
+            return 0;
+        }
+        
+        int exitCode = 0;
+        try {
+            // Create output directory if it doesn't exist
+            File directory = new File(processor.outputDir);
+            if (!directory.exists()) {
+                directory.mkdirs();
+            }
+            
+            processor.metrics.register();
+            processor.openQuarantine();
+            if (processor.servePort >= 0) {
+                processor.startServer();
+            }
+            
+            if (processor.memoryBudget > 0) {
+                processor.processWithSpilling();
+                processor.finishRun();
+                System.out.println("Procesamiento completado exitosamente. Reportes generados en: " + processor.outputDir);
+                return 0;
+            }
+            
+            if (processor.rangeFrom != null) {
+                processor.queryRange();
+                processor.finishRun();
+                System.out.println("Consulta completada exitosamente. Reportes generados en: " + processor.outputDir);
+                return 0;
+            }
+            
+            if (processor.mergeInputs != null) {
+                processor.mergePartials();
+                processor.finishRun();
+                System.out.println("Combinación completada exitosamente. "
+                    + (processor.mapPath != null ? "Agregado parcial generado: " + processor.mapPath
+                        : "Reportes generados en: " + processor.outputDir));
+                return 0;
+            }
+            
+            // Load seller and product information
+            processor.loadCatalogs();
+            
+            if (processor.watchMode) {
+                processor.watchSalesDirectory();
+                return 0;
+            }
+            
+            // Process sales files
+            processor.processSalesFiles();
+            
+            if (processor.mapPath != null) {
+                processor.writePartial();
+                processor.finishRun();
+                System.out.println("Procesamiento completado exitosamente. Agregado parcial generado: " + processor.mapPath);
+                return 0;
+            }
+            
+            // Generate reports
+            processor.createSellerReport();
+            processor.createProductReport();
+            processor.createRollupReports();
+            processor.writeSegments();
+            processor.finishRun();
+            
+            System.out.println("Procesamiento completado exitosamente. Reportes generados en: " + processor.outputDir);
+        } catch (IOException e) {
+            System.err.println("Error durante el procesamiento: " + e.getMessage());
+            e.printStackTrace();
+        } catch (ArithmeticException e) {
+            System.err.println("Desbordamiento en los totales de venta: " + e.getMessage());
+        } catch (SegmentRangeException e) {
+            System.err.println("Error en el rango: " + e.getMessage());
+        } catch (InvalidSalesDataException e) {
+            System.err.println("Modo estricto, procesamiento detenido: " + e.getMessage());
+            // The summary records how far the run got before it stopped
+            try {
+                processor.finishRun();
+            } catch (IOException summaryError) {
+                System.err.println("Error al escribir el resumen de la ejecución: " + summaryError.getMessage());
+            }
+            exitCode = 1;
+        } finally {
+            processor.closeQuarantine();
+            if (processor.server != null) {
+                processor.server.stop();
+            }
+        }
+        return exitCode;
+    }
+    
+    /**
+     * Reads the command line options
+     * @param args command line arguments
+     * @throws IllegalArgumentException if an option is unknown or malformed
+     */
+    private void parseArguments(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--threads=")) {
+                int threads = Integer.parseInt(arg.substring("--threads=".length()));
+                if (threads < 0) {
+                    throw new IllegalArgumentException("el número de hilos no puede ser negativo: " + threads);
+                }
+                workerCount = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+            } else if (arg.startsWith("--top=")) {
+                topK = Integer.parseInt(arg.substring("--top=".length()));
+                if (topK <= 0) {
+                    throw new IllegalArgumentException("el valor de --top debe ser positivo: " + topK);
+                }
+            } else if (arg.startsWith("--page-size=")) {
+                pageSize = Integer.parseInt(arg.substring("--page-size=".length()));
+                if (pageSize <= 0) {
+                    throw new IllegalArgumentException("el tamaño de página debe ser positivo: " + pageSize);
+                }
+            } else if (arg.equals("--cache")) {
+                cachePath = Paths.get(outputDir, DEFAULT_CACHE_FILE);
+            } else if (arg.startsWith("--cache=")) {
+                cachePath = Paths.get(arg.substring("--cache=".length()));
+            } else if (arg.equals("--catalog-snapshot")) {
+                catalogSnapshotPath = Paths.get(outputDir, DEFAULT_CATALOG_SNAPSHOT_FILE);
+            } else if (arg.startsWith("--catalog-snapshot=")) {
+                catalogSnapshotPath = Paths.get(arg.substring("--catalog-snapshot=".length()));
+            } else if (arg.startsWith("--storage=")) {
+                String storage = arg.substring("--storage=".length());
+                if (!storage.equals("objetos") && !storage.equals("compacto")) {
+                    throw new IllegalArgumentException("almacenamiento desconocido: " + storage + " (objetos o compacto)");
+                }
+                compactStorage = storage.equals("compacto");
+            } else if (arg.equals("--gzip")) {
+                compressReports = true;
+            } else if (arg.equals("--watch")) {
+                watchMode = true;
+            } else if (arg.equals("--serve") || arg.startsWith("--serve=")) {
+                servePort = arg.equals("--serve") ? DEFAULT_SERVE_PORT : Integer.parseInt(arg.substring("--serve=".length()));
+                if (servePort < 0 || servePort > 65535) {
+                    throw new IllegalArgumentException("puerto inválido: " + servePort);
+                }
+                watchMode = true;
+            } else if (arg.startsWith("--debounce=")) {
+                debounceMillis = Long.parseLong(arg.substring("--debounce=".length()));
+                if (debounceMillis < 0) {
+                    throw new IllegalArgumentException("el tiempo de espera no puede ser negativo: " + debounceMillis);
+                }
+            } else if (arg.startsWith("--input=")) {
+                String directory = arg.substring("--input=".length());
+                if (directory.isEmpty()) {
+                    throw new IllegalArgumentException("el directorio de entrada no puede estar vacío");
+                }
+                inputDir = directory.endsWith("/") ? directory : directory + "/";
+            } else if (arg.startsWith("--summary=")) {
+                summaryPath = Paths.get(arg.substring("--summary=".length()));
+            } else if (arg.startsWith("--log-rate=")) {
+                int rate = Integer.parseInt(arg.substring("--log-rate=".length()));
+                if (rate < 0) {
+                    throw new IllegalArgumentException("la tasa de mensajes no puede ser negativa: " + rate);
+                }
+                metrics.setMaxMessagesPerSecond(rate);
+            } else if (arg.startsWith("--quarantine=")) {
+                quarantinePath = Paths.get(arg.substring("--quarantine=".length()));
+            } else if (arg.equals("--strict")) {
+                strict = true;
+            } else if (arg.startsWith("--rollups=")) {
+                rollupKinds = SalesRollups.parseKinds(arg.substring("--rollups=".length()));
+            } else if (arg.startsWith("--map=")) {
+                mapPath = Paths.get(arg.substring("--map=".length()));
+            } else if (arg.startsWith("--merge=")) {
+                mergeInputs = partialFiles(arg.substring("--merge=".length()));
+            } else if (arg.startsWith("--part=")) {
+                String part = arg.substring("--part=".length());
+                int slash = part.indexOf('/');
+                if (slash < 0) {
+                    throw new IllegalArgumentException("la parte debe tener la forma I/N: " + part);
+                }
+                partIndex = Integer.parseInt(part.substring(0, slash));
+                partCount = Integer.parseInt(part.substring(slash + 1));
+                if (partCount <= 0 || partIndex < 0 || partIndex >= partCount) {
+                    throw new IllegalArgumentException("parte inválida: " + part + " (0 <= I < N)");
+                }
+            } else if (arg.equals("--segments")) {
+                segmentsPath = Paths.get(outputDir, DEFAULT_SEGMENTS_DIR);
+            } else if (arg.startsWith("--segments=")) {
+                segmentsPath = Paths.get(arg.substring("--segments=".length()));
+            } else if (arg.startsWith("--range=")) {
+                String range = arg.substring("--range=".length());
+                int dots = range.indexOf("..");
+                if (dots < 0) {
+                    throw new IllegalArgumentException("el rango debe tener la forma DESDE..HASTA: " + range);
+                }
+                try {
+                    rangeFrom = LocalDate.parse(range.substring(0, dots));
+                    rangeTo = LocalDate.parse(range.substring(dots + 2));
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException("fecha inválida en el rango (AAAA-MM-DD): " + range);
+                }
+                if (rangeTo.isBefore(rangeFrom)) {
+                    throw new IllegalArgumentException("el rango termina antes de empezar: " + range);
+                }
+            } else if (arg.startsWith("--source=")) {
+                sourceSpec = arg.substring("--source=".length());
+            } else if (arg.startsWith("--memory-budget=")) {
+                long megabytes = Long.parseLong(arg.substring("--memory-budget=".length()));
+                if (megabytes <= 0) {
+                    throw new IllegalArgumentException("el presupuesto de memoria debe ser positivo: " + megabytes);
+                }
+                memoryBudget = Math.multiplyExact(megabytes, 1024L * 1024L);
+            } else {
+                throw new IllegalArgumentException("opción desconocida: " + arg);
+            }
+        }
+        if (memoryBudget > 0 && servePort >= 0) {
+            throw new IllegalArgumentException("--memory-budget no se puede combinar con --serve");
+        }
+        if (memoryBudget > 0 && (watchMode || cachePath != null)) {
+            throw new IllegalArgumentException("--memory-budget no se puede combinar con --watch ni con --cache");
+        }
+        if (memoryBudget > 0 && catalogSnapshotPath != null) {
+            // The spilling aggregator streams the seller catalog from the text file itself
+            throw new IllegalArgumentException("--memory-budget no se puede combinar con --catalog-snapshot");
+        }
+        if (!rollupKinds.isEmpty() && (watchMode || cachePath != null || memoryBudget > 0 || rangeFrom != null)) {
+            // These modes do not see every sales line in one pass: cached files are replayed as per-product sums,
+            // and a range query reads only the segment totals
+            throw new IllegalArgumentException("--rollups no se puede combinar con --watch, --serve, --cache, --memory-budget ni --range");
+        }
+        if ((mapPath != null || mergeInputs != null) && (watchMode || memoryBudget > 0 || !rollupKinds.isEmpty())) {
+            // Partials hold only the seller and product totals, of a finished batch ingestion
+            throw new IllegalArgumentException("--map y --merge no se pueden combinar con --watch, --serve, --memory-budget ni --rollups");
+        }
+        if (mergeInputs != null && partCount > 1) {
+            throw new IllegalArgumentException("--part no se puede combinar con --merge");
+        }
+        if (rangeFrom != null && segmentsPath == null) {
+            segmentsPath = Paths.get(outputDir, DEFAULT_SEGMENTS_DIR);
+        }
+        if (segmentsPath != null && (watchMode || cachePath != null || memoryBudget > 0 || mapPath != null || mergeInputs != null)) {
+            // Segments need the date of every line: cached files keep only per-product sums
+            throw new IllegalArgumentException("--segments y --range no se pueden combinar con --watch, --serve, --cache, --memory-budget, --map ni --merge");
+        }
+        if (sourceSpec.equals("mapeado")) {
+            source = new MappedSalesSource(inputDir, this::isPartSalesFile);
+        } else if (sourceSpec.startsWith("sintetico:")) {
+            source = GeneratedSalesSource.parse(sourceSpec.substring("sintetico:".length()));
+            if (catalogSnapshotPath != null || partCount > 1) {
+                // Neither has files to stamp or split
+                throw new IllegalArgumentException("la fuente sintética no se puede combinar con --catalog-snapshot ni --part");
+            }
+        } else if (!sourceSpec.equals("archivos")) {
+            throw new IllegalArgumentException("fuente desconocida: " + sourceSpec + " (archivos, mapeado o sintetico:VENDEDORES:PRODUCTOS)");
+        }
+        if (source != null && (watchMode || cachePath != null || memoryBudget > 0)) {
+            // These modes work on the files themselves: their changes, their cache entries or the seller catalog file
+            throw new IllegalArgumentException("--source=" + sourceSpec.split(":")[0] + " no se puede combinar con --watch, --serve, --cache ni --memory-budget");
+        }
+    }
+    
+    /**
+     * Resolves the partial aggregates named by --merge
+     * @param list comma separated partial files and directories, whose *.parcial files are all taken
+     * @return the partial files
+     * @throws IllegalArgumentException if an entry does not exist or nothing is found
+     */
+    private static List<Path> partialFiles(String list) {
+        List<Path> files = new ArrayList<>();
+        for (String name : list.split(",")) {
+            if (name.isEmpty()) {
+                continue;
+            }
+            File file = new File(name);
+            if (file.isDirectory()) {
+                File[] partials = file.listFiles((dir, child) -> child.endsWith(PartialAggregate.EXTENSION));
+                if (partials != null) {
+                    Arrays.sort(partials);
+                    for (File partial : partials) {
+                        files.add(partial.toPath());
+                    }
+                }
+            } else if (file.isFile()) {
+                files.add(file.toPath());
+            } else {
+                throw new IllegalArgumentException("no existe el agregado parcial: " + name);
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("no se encontraron agregados parciales en: " + list);
+        }
+        return files;
+    }
+    
+    /**
+     * Loads both catalogs, timing the load. With a catalog snapshot they are
+     * mapped from it when it is current; otherwise they are read from the
+     * source and the snapshot is rebuilt for the next run.
+     * @throws IOException if there's an error reading the files
+     */
+    void loadCatalogs() throws IOException {
+        long start = System.nanoTime();
+        if (catalogSnapshotPath == null || !loadCatalogSnapshot()) {
+            File sellersFile = new File(inputDir + "vendedores.txt");
+            File productsFile = new File(inputDir + "productos.txt");
+            // Taken before parsing, so an edit during the load leaves the snapshot outdated rather than wrong
+            long[] stamp = CatalogSnapshot.stamp(sellersFile, productsFile);
+            CatalogBuilder builder = new CatalogBuilder();
+            salesSource().readCatalogs(builder);
+            builder.installSellers();
+            builder.installProducts();
+            if (catalogSnapshotPath != null) {
+                try {
+                    CatalogSnapshot.write(catalogSnapshotPath, stamp, sellers, products);
+                    System.out.println("Instantánea del catálogo generada: " + catalogSnapshotPath);
+                } catch (IOException e) {
+                    // The text catalogs are loaded, so the run goes on without the snapshot
+                    System.err.println("No se pudo escribir la instantánea del catálogo: " + e.getMessage());
+                }
+            }
+        }
+        metrics.recordPhase(SalesMetrics.Phase.CATALOG_LOAD, System.nanoTime() - start);
+    }
+    
+    /**
+     * Maps the catalogs from the snapshot if it was built from the current text files
+     * @return whether the catalogs were loaded
+     */
+    private boolean loadCatalogSnapshot() {
+        CatalogSnapshot snapshot = CatalogSnapshot.open(catalogSnapshotPath,
+            new File(inputDir + "vendedores.txt"), new File(inputDir + "productos.txt"));
+        if (snapshot == null) {
+            return false;
+        }
+        sellers = snapshot.sellers();
+        sellerIndex = snapshot.sellerIndex();
+        products = snapshot.products();
+        productIndex = snapshot.productIndex();
+        productPrices = snapshot.productPrices();
+        productKeys = cachePath != null ? productKeys(products) : new byte[0][];
+        System.out.println("Catálogos cargados desde la instantánea: " + sellers.size() + " vendedores, "
+            + products.size() + " productos");
+        return true;
+    }
+    
+    private static byte[][] productKeys(List<Product> products) {
+        byte[][] keys = new byte[products.size()][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = products.get(i).getId().getBytes(StandardCharsets.UTF_8);
+        }
+        return keys;
+    }
+    
+    /**
+     * Opens the quarantine file; not used in strict mode, where the first
+     * rejected record stops the run
+     * @throws IOException if the file cannot be created
+     */
+    private void openQuarantine() throws IOException {
+        if (!strict) {
+            quarantine = new Quarantine(quarantinePath != null ? quarantinePath : Paths.get(outputDir, DEFAULT_QUARANTINE_FILE));
+        }
+    }
+    
+    private void closeQuarantine() {
+        if (quarantine != null) {
+            try {
+                quarantine.close();
+            } catch (IOException e) {
+                System.err.println("Error al escribir el archivo de cuarentena: " + e.getMessage());
+            }
+            quarantine = null;
+        }
+    }
+    
+    /**
+     * Daemon mode: starts the HTTP server, which answers 503 until the first ingestion is published
+     * @throws IOException if the port cannot be bound
+     */
+    private void startServer() throws IOException {
+        server = new ReportServer(servePort, SERVER_THREADS);
+        server.start();
+        System.out.println("Servidor de reportes en http://localhost:" + server.port() + "/");
+    }
+    
+    /**
+     * Daemon mode: hands a copy of the current totals to the server. Requests
+     * keep using the previous copy until this one is published, so they never
+     * wait for the ingestion and the ingestion never waits for them.
+     */
+    private void publishSnapshot() {
+        if (server == null) {
+            return;
+        }
+        // The catalog lists are replaced on reload, never modified, so they are shared instead of copied
+        server.publish(new SalesSnapshot(++snapshotVersion, Collections.unmodifiableList(sellers), totalSoldBySeller.clone(),
+            sellerIndex, Collections.unmodifiableList(products), totalProductsSold.clone()));
+    }
+    
+    /**
+     * Prints the data problems of the run and writes the JSON run summary
+     * @throws IOException if the summary cannot be written
+     */
+    private void finishRun() throws IOException {
+        if (quarantine != null) {
+            quarantine.flush();
+            if (quarantine.rejected() > 0) {
+                System.out.println("Registros rechazados: " + quarantine.rejected() + " (ver "
+                    + (quarantinePath != null ? quarantinePath : Paths.get(outputDir, DEFAULT_QUARANTINE_FILE)) + ")");
+            }
+        }
+        metrics.printDataProblems();
+        metrics.writeSummary(summaryPath != null ? summaryPath : Paths.get(outputDir, DEFAULT_SUMMARY_FILE));
+    }
+    
+    /**
+     * Map mode: writes the totals of this ingestion as a partial aggregate,
+     * keyed by catalog key so it merges with partials of other processes
+     * @throws IOException if the partial cannot be written
+     */
+    private void writePartial() throws IOException {
+        try (PartialAggregate.Writer writer = new PartialAggregate.Writer(mapPath)) {
+            PartialAggregate.writeSection(writer, totalSoldBySeller, index -> sellerKey(sellers.get(index)));
+            PartialAggregate.writeSection(writer, totalProductsSold,
+                index -> products.get(index).getId().getBytes(StandardCharsets.UTF_8));
+            writer.finish();
+        }
+    }
+    
+    /**
+     * Merge mode: combines the partial aggregates in one streaming k-way pass.
+     * With --map the result is a new partial, written without the catalogs;
+     * otherwise the merged totals are resolved against the catalogs and the
+     * reports are written as a single run over all the sales files would.
+     * Keys missing from the catalogs are rejected like unknown sales lines.
+     * @throws IOException if a partial cannot be read or is damaged
+     */
+    private void mergePartials() throws IOException {
+        if (mapPath != null) {
+            long start = System.nanoTime();
+            try (PartialAggregate.Writer writer = new PartialAggregate.Writer(mapPath)) {
+                PartialAggregate.merge(mergeInputs, writer, writer);
+                writer.finish();
+            }
+            metrics.recordPhase(SalesMetrics.Phase.INGESTION, System.nanoTime() - start);
+            System.out.println("Agregados parciales combinados: " + mergeInputs.size() + " archivo(s) ("
+                + (System.nanoTime() - start) / 1_000_000 + " ms)");
+            return;
+        }
+        
+        loadCatalogs();
+        totalSoldBySeller = new long[sellers.size()];
+        totalProductsSold = new long[products.size()];
+        long start = System.nanoTime();
+        String source = "agregados parciales";
+        PartialAggregate.merge(mergeInputs,
+            (key, total) -> {
+                int seller = sellerIndex.get(key, 0, key.length);
+                if (seller == CatalogIndex.NOT_FOUND) {
+                    reject(source, null, 0, Quarantine.Reason.UNKNOWN_SELLER, new String(key, StandardCharsets.UTF_8));
+                } else {
+                    totalSoldBySeller[seller] = total;
+                }
+            },
+            (key, quantity) -> {
+                int product = productIndex.get(key, 0, key.length);
+                if (product == CatalogIndex.NOT_FOUND) {
+                    reject(source, null, 0, Quarantine.Reason.UNKNOWN_PRODUCT, new String(key, StandardCharsets.UTF_8));
+                } else {
+                    totalProductsSold[product] = quantity;
+                }
+            });
+        metrics.recordPhase(SalesMetrics.Phase.INGESTION, System.nanoTime() - start);
+        System.out.println("Agregados parciales combinados: " + mergeInputs.size() + " archivo(s) ("
+            + (System.nanoTime() - start) / 1_000_000 + " ms)");
+        
+        createSellerReport();
+        createProductReport();
+    }
+    
+    /**
+     * Segments mode: writes the per-day segments of this ingestion and compacts the old ones
+     * @throws IOException if a segment cannot be read or written
+     */
+    private void writeSegments() throws IOException {
+        if (segments == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        int written = segments.write(segmentsPath, index -> sellerKey(sellers.get(index)),
+            index -> products.get(index).getId().getBytes(StandardCharsets.UTF_8));
+        int compacted = SalesSegments.compact(segmentsPath);
+        System.out.println("Segmentos diarios escritos: " + written + ", compactados: " + compacted + " en " + segmentsPath
+            + " (" + (System.nanoTime() - start) / 1_000_000 + " ms)"
+            + (segments.undatedLines() > 0 ? "; " + segments.undatedLines() + " línea(s) sin fecha solo cuentan en los reportes completos" : ""));
+    }
+    
+    /**
+     * Range query: writes the reports of the dates in the range by merging
+     * only the segments inside it, without reading the sales files
+     * @throws SegmentRangeException if the range cuts a compacted segment
+     * @throws IOException if a segment cannot be read
+     */
+    private void queryRange() throws IOException {
+        mergeInputs = SalesSegments.select(segmentsPath, rangeFrom, rangeTo);
+        if (mergeInputs.isEmpty()) {
+            System.out.println("ADVERTENCIA: No hay segmentos entre " + rangeFrom + " y " + rangeTo + " en " + segmentsPath);
+        }
+        reportSuffix = "_" + rangeFrom + "_" + rangeTo;
+        mergePartials();
+    }
+    
+    private static byte[] sellerKey(Seller seller) {
+        return (seller.getDocumentType() + ":" + seller.getDocumentNumber()).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Loads seller information from the corresponding file
+     * @throws IOException if there's an error reading the file
+     */
+    void loadSellers() throws IOException {
+        CatalogBuilder builder = new CatalogBuilder();
+        FileSalesSource.readSellers(inputDir, builder);
+        builder.installSellers();
+    }
+    
+    /**
+     * Loads product information from the corresponding file
+     * @throws IOException if there's an error reading the file
+     */
+    void loadProducts() throws IOException {
+        CatalogBuilder builder = new CatalogBuilder();
+        FileSalesSource.readProducts(inputDir, builder);
+        builder.installProducts();
+    }
+    
+    /**
+     * Builds new catalogs from the records of a source, in object or compact
+     * storage, and installs them in place of the current ones
+     */
+    private final class CatalogBuilder implements SalesSource.CatalogSink {
+        private final List<Seller> newSellers = new ArrayList<>();
+        private final CompactCatalog.Sellers compactSellers = compactStorage ? new CompactCatalog.Sellers() : null;
+        private final SellerKeyIndex newSellerIndex = new SellerKeyIndex();
+        private final List<Product> newProducts = new ArrayList<>();
+        private final CompactCatalog.Products compactProducts = compactStorage ? new CompactCatalog.Products() : null;
+        private final ByteKeyIndex newProductIndex = new ByteKeyIndex();
+        private final ByteRecordReader reader = new ByteRecordReader();
+        
+        @Override
+        public int sellerText(ReadableByteChannel channel) throws IOException {
+            reader.reset(channel);
+            while (reader.nextLine()) {
+                if (reader.splitFields(false) >= 4) {
+                    // The "documentType:documentNumber" key is the start of the line
+                    int index = newSellerIndex.add(reader.buffer(), reader.fieldStart(0), reader.fieldEnd(1));
+                    if (compactSellers != null) {
+                        compactSellers.set(index, reader);
+                        continue;
+                    }
+                    String documentType = reader.fieldAsString(0);
+                    String documentNumber = reader.fieldAsString(1);
+                    String name = reader.fieldAsString(2);
+                    String lastName = reader.fieldAsString(3);
+                    putSeller(index, new Seller(documentType, documentNumber, name, lastName));
+                }
+            }
+            return sellerCount();
+        }
+        
+        @Override
+        public int seller(String documentType, String documentNumber, String name, String lastName) {
+            byte[] key = (documentType + ":" + documentNumber).getBytes(StandardCharsets.UTF_8);
+            int index = newSellerIndex.add(key, 0, key.length);
+            if (compactSellers != null) {
+                compactSellers.set(index, documentType, documentNumber, name, lastName);
+            } else {
+                putSeller(index, new Seller(documentType, documentNumber, name, lastName));
+            }
+            return index;
+        }
+        
+        private void putSeller(int index, Seller seller) {
+            if (index == newSellers.size()) {
+                newSellers.add(seller);
+            } else {
+                newSellers.set(index, seller);
+            }
+        }
+        
+        private int sellerCount() {
+            return compactSellers != null ? compactSellers.size() : newSellers.size();
+        }
+        
+        @Override
+        public int productText(ReadableByteChannel channel) throws IOException {
+            reader.reset(channel);
+            while (reader.nextLine()) {
+                if (reader.splitFields(false) >= 3) {
+                    // Acepta coma o punto como separador decimal; el precio se guarda en centavos
+                    long priceCents = reader.parseCentsField(2);
+                    
+                    int index = newProductIndex.add(reader.buffer(), reader.fieldStart(0), reader.fieldEnd(0));
+                    if (compactProducts != null) {
+                        compactProducts.set(index, reader, priceCents);
+                        continue;
+                    }
+                    String id = reader.fieldAsString(0);
+                    String name = reader.fieldAsString(1);
+                    putProduct(index, new Product(id, name, priceCents));
+                }
+            }
+            return productCount();
+        }
+        
+        @Override
+        public int product(String id, String name, long priceCents) {
+            byte[] key = id.getBytes(StandardCharsets.UTF_8);
+            int index = newProductIndex.add(key, 0, key.length);
+            if (compactProducts != null) {
+                compactProducts.set(index, id, name, priceCents);
+            } else {
+                putProduct(index, new Product(id, name, priceCents));
+            }
+            return index;
+        }
+        
+        private void putProduct(int index, Product product) {
+            if (index == newProducts.size()) {
+                newProducts.add(product);
+            } else {
+                newProducts.set(index, product);
+            }
+        }
+        
+        private int productCount() {
+            return compactProducts != null ? compactProducts.size() : newProducts.size();
+        }
+        
+        void installSellers() {
+            if (compactSellers != null) {
+                compactSellers.trim();
+            }
+            sellers = compactSellers != null ? compactSellers : newSellers;
+            sellerIndex = newSellerIndex;
+            
+            System.out.println("Vendedores cargados: " + sellers.size());
+        }
+        
+        void installProducts() {
+            if (compactProducts != null) {
+                compactProducts.trim();
+            }
+            products = compactProducts != null ? compactProducts : newProducts;
+            productIndex = newProductIndex;
+            productPrices = new long[products.size()];
+            for (int i = 0; i < productPrices.length; i++) {
+                productPrices[i] = products.get(i).getPriceCents();
+            }
+            productKeys = productKeys(products);
+            
+            System.out.println("Productos cargados: " + products.size());
+        }
+    }
+    
+    /**
+     * Ingests all the sales of the source, by default the sales files of the
+     * input directory. Every worker or source thread adds into its own
+     * accumulator, and the accumulators are summed at the end. Totals are
+     * exact integers, so the result does not depend on how the sales were
+     * distributed.
+     * @throws IOException if there's an error reading the sales
+     */
+    void processSalesFiles() throws IOException {
+        totalSoldBySeller = new long[sellers.size()];
+        totalProductsSold = new long[products.size()];
+        recordsPushed = 0;
+        streamsPushed = 0;
+        
+        long start = System.nanoTime();
+        SalesSource sales = salesSource();
+        sales.readSales(new SalesSource.SalesSink() {
+            @Override
+            public void files(File[] files) throws IOException {
+                ingestFiles(files);
+            }
+            
+            @Override
+            public int workers() {
+                return Math.max(1, workerCount);
+            }
+            
+            @Override
+            public SalesSource.SalesWriter writer() {
+                return new RecordWriter(newAccumulator());
+            }
+        });
+        long elapsedNanos = System.nanoTime() - start;
+        metrics.recordPhase(SalesMetrics.Phase.INGESTION, elapsedNanos);
+        
+        if (recordsPushed > 0 || streamsPushed > 0) {
+            long elapsedMillis = elapsedNanos / 1_000_000;
+            System.out.println("Ventas recibidas de " + sales.describe() + ": "
+                + (streamsPushed > 0 ? streamsPushed + " archivo(s) en memoria, " : "")
+                + (recordsPushed > 0 ? recordsPushed + " registro(s) (" + Math.round(recordsPushed / (elapsedNanos / 1e9)) + " registros/s), " : "")
+                + elapsedMillis + " ms, hilos: " + Math.max(1, workerCount));
+        }
+    }
+    
+    /**
+     * @return the source chosen with --source or useSource, or the files of the input directory
+     */
+    private SalesSource salesSource() {
+        return source != null ? source : new FileSalesSource(inputDir, this::isPartSalesFile);
+    }
+    
+    /**
+     * Ingests sales files. With more than one worker, the workers claim
+     * batches of files from the shared list and each one adds into its own
+     * accumulator.
+     * @param files the files, possibly none
+     * @throws IOException if a worker fails unexpectedly
+     */
+    private void ingestFiles(File[] files) throws IOException {
+        if (files.length == 0) {
+            System.out.println("ADVERTENCIA: No se encontraron archivos de ventas en " + inputDir);
+            return;
+        }
+        
+        long start = System.nanoTime();
+        if (cachePath != null) {
+            cache = SalesFileCache.load(cachePath);
+        }
+        
+        // Shards are ingested by byte ranges, per-seller files one by one; a compressed
+        // stream cannot be entered in the middle, so compressed shards and zip archives are whole units
+        List<File> sellerFiles = new ArrayList<>();
+        List<File> archives = new ArrayList<>();
+        List<SalesShards.Range> shardRanges = new ArrayList<>();
+        int shards = 0;
+        for (File file : files) {
+            if (SalesShards.isShardFileName(file.getName())) {
+                shardRanges.addAll(SalesShards.split(file, shardRangeSize(file.length())));
+                shards++;
+            } else if (SalesInput.holdsManySellers(file.getName())) {
+                archives.add(file);
+            } else {
+                sellerFiles.add(file);
+            }
+        }
+        
+        if (workerCount <= 1) {
+            SalesAccumulator accumulator = newAccumulator();
+            for (File file : archives) {
+                processSaleFileSafely(file, accumulator);
+            }
+            for (File file : sellerFiles) {
+                processSaleFileSafely(file, accumulator);
+            }
+            for (SalesShards.Range range : shardRanges) {
+                processShardRangeSafely(range, accumulator);
+            }
+            mergeResult(accumulator);
+        } else {
+            ingestInParallel(archives.toArray(new File[0]), sellerFiles.toArray(new File[0]), shardRanges);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        
+        System.out.println("Archivos de ventas procesados: " + files.length
+            + (shards > 0 ? " (" + shards + " fragmento(s) en " + shardRanges.size() + " rango(s))" : "")
+            + " (" + elapsedMillis + " ms, hilos: " + Math.max(1, workerCount) + ")");
+        
+        if (cache != null) {
+            // Only files present in this run are kept, so deleted files drop out of the cache
+            SalesFileCache.write(cachePath, cacheEntries);
+            System.out.println("Caché de ventas: " + filesFromCache + " archivo(s) reutilizados, "
+                + (sellerFiles.size() - filesFromCache) + " analizados");
+        }
+    }
+    
+    /**
+     * Lists the sales files of the input directory, only those of this
+     * process's part with --part. A file belongs to a part by the hash of its
+     * name, so processes agree on the split without sharing a listing.
+     * @return the files, or null if the directory cannot be read
+     */
+    private File[] listSalesFiles() {
+        return new File(inputDir).listFiles(this::isPartSalesFile);
+    }
+    
+    private boolean isPartSalesFile(File directory, String name) {
+        return isSalesFileName(name) && (partCount == 1 || Math.floorMod(name.hashCode(), partCount) == partIndex);
+    }
+    
+    static boolean isSalesFileName(String name) {
+        // Hidden files are temporaries, e.g. a shard being written
+        return !isCatalogFileName(name) && !name.startsWith(".");
+    }
+    
+    private static boolean isCatalogFileName(String name) {
+        return name.equals("vendedores.txt") || name.equals("productos.txt");
+    }
+    
+    /**
+     * Size of the byte ranges a shard is cut into: enough ranges to keep every
+     * worker busy, but not so small that aligning them costs more than parsing
+     * @param shardSize the size of the shard in bytes
+     * @return the target range size
+     */
+    private long shardRangeSize(long shardSize) {
+        if (workerCount <= 1) {
+            return Math.max(shardSize, 1);
+        }
+        return Math.max(MIN_SHARD_RANGE, shardSize / ((long) workerCount * SHARD_RANGES_PER_WORKER));
+    }
+    
+    /**
+     * Ingests the sales files and shard ranges on a pool of workerCount threads.
+     * Workers claim single archives first, the largest units, so their
+     * decompression runs in parallel, then batches of files, then single
+     * shard ranges.
+     * @param archives the compressed shards and zip archives
+     * @param files the per-seller sales files, compressed or not
+     * @param ranges the byte ranges of the shard files
+     * @throws IOException if a worker fails unexpectedly
+     */
+    private void ingestInParallel(File[] archives, File[] files, List<SalesShards.Range> ranges) throws IOException {
+        AtomicInteger nextArchive = new AtomicInteger();
+        AtomicInteger nextFile = new AtomicInteger();
+        AtomicInteger nextRange = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workerCount);
+        try {
+            List<Future<SalesAccumulator>> workers = new ArrayList<>();
+            for (int w = 0; w < workerCount; w++) {
+                workers.add(pool.submit(() -> {
+                    SalesAccumulator accumulator = newAccumulator();
+                    int archive;
+                    while ((archive = nextArchive.getAndIncrement()) < archives.length) {
+                        processSaleFileSafely(archives[archive], accumulator);
+                    }
+                    int from;
+                    while ((from = nextFile.getAndAdd(FILES_PER_BATCH)) < files.length) {
+                        int to = Math.min(from + FILES_PER_BATCH, files.length);
+                        for (int i = from; i < to; i++) {
+                            processSaleFileSafely(files[i], accumulator);
+                        }
+                    }
+                    int range;
+                    while ((range = nextRange.getAndIncrement()) < ranges.size()) {
+                        processShardRangeSafely(ranges.get(range), accumulator);
+                    }
+                    return accumulator;
+                }));
+            }
+            for (Future<SalesAccumulator> worker : workers) {
+                mergeResult(worker.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Procesamiento interrumpido", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+    
+    SalesAccumulator newAccumulator() {
+        SalesAccumulator accumulator = new SalesAccumulator(sellers.size(), products.size());
+        if (!rollupKinds.isEmpty()) {
+            accumulator.rollups = new SalesRollups(rollupKinds, sellers.size(), products.size());
+        }
+        if (segmentsPath != null) {
+            accumulator.segments = new SalesSegments();
+        }
+        return accumulator;
+    }
+    
+    /**
+     * Processes a sales file, reporting read errors without aborting the run
+     * @param file the file to process
+     * @param accumulator the accumulator that receives the file's sales
+     */
+    void processSaleFileSafely(File file, SalesAccumulator accumulator) {
+        try {
+            // The cache holds one seller per file: archives are parsed on every run, like shards
+            if (cache != null && spillingSellers == null && !SalesInput.holdsManySellers(file.getName())) {
+                processSaleFileWithCache(file, accumulator);
+                return;
+            }
+            processSaleFile(file, accumulator.reader, accumulator);
+        } catch (IOException e) {
+            readFailed(file.getName(), e);
+        }
+    }
+    
+    /**
+     * Counts and reports a file that could not be read; strict mode stops the run
+     * @param source the file name
+     * @param e the read error
+     */
+    private void readFailed(String source, IOException e) {
+        metrics.failedFiles.increment();
+        if (strict) {
+            throw new InvalidSalesDataException("no se pudo leer " + source + ": " + e.getMessage(), e);
+        }
+        System.err.println("Error al procesar archivo " + source + ": " + e.getMessage());
+    }
+    
+    /**
+     * Adds the ingested sales to the processor totals; source threads may close their writers concurrently
+     * @param result the sales accumulated by one worker
+     */
+    private synchronized void mergeResult(SalesAccumulator result) {
+        for (int i = 0; i < totalSoldBySeller.length; i++) {
+            totalSoldBySeller[i] = Money.add(totalSoldBySeller[i], result.totalSoldBySeller[i]);
+        }
+        for (int i = 0; i < totalProductsSold.length; i++) {
+            totalProductsSold[i] += result.productsSold[i];
+        }
+        cacheEntries.addAll(result.cacheEntries);
+        filesFromCache += result.filesFromCache;
+        if (result.rollups != null) {
+            if (rollups == null) {
+                rollups = result.rollups;
+            } else {
+                rollups.merge(result.rollups);
+            }
+        }
+        if (result.segments != null) {
+            if (segments == null) {
+                segments = result.segments;
+            } else {
+                segments.merge(result.segments);
+            }
+        }
+    }
+    
+    /**
+     * Processes a sales file through the file cache: an unchanged file is taken
+     * from the cache, any other file is parsed into a new cache entry. Either way
+     * the entry is resolved against the current catalogs and prices.
+     * @param file the file to process
+     * @param accumulator the accumulator that receives the file's sales
+     * @throws IOException if there's an error reading the file
+     */
+    private void processSaleFileWithCache(File file, SalesAccumulator accumulator) throws IOException {
+        SalesFileCache.Entry entry = cache.lookup(file);
+        if (entry != null) {
+            accumulator.filesFromCache++;
+        } else {
+            entry = readFilePartial(file, accumulator.reader, accumulator.partialScratch());
+        }
+        accumulator.cacheEntries.add(entry);
+        metrics.filesProcessed.increment();
+        
+        if (entry.sellerKey == null) {
+            reject(file.getName(), null, 0, Quarantine.Reason.EMPTY_FILE, "");
+            return;
+        }
+        int seller = sellerIndex.get(entry.sellerKey, 0, entry.sellerKey.length);
+        if (seller == CatalogIndex.NOT_FOUND) {
+            reject(file.getName(), null, 1, Quarantine.Reason.UNKNOWN_SELLER, new String(entry.sellerKey, StandardCharsets.UTF_8));
+            return;
+        }
+        for (int i = 0; i < entry.productIds.length; i++) {
+            byte[] productId = entry.productIds[i];
+            int product = productIndex.get(productId, 0, productId.length);
+            if (product == CatalogIndex.NOT_FOUND) {
+                // A cache entry sums each unknown product of a file, so it is rejected once per file, without line
+                reject(file.getName(), null, 0, Quarantine.Reason.UNKNOWN_PRODUCT, new String(productId, StandardCharsets.UTF_8));
+                continue;
+            }
+            accumulator.addSale(seller, product, productPrices[product], entry.quantities[i], SalesSegments.NO_DAY);
+        }
+    }
+    
+    /**
+     * Parses a sales file into its partial aggregate: the raw seller line and the
+     * quantity per product ID, including products missing from the catalog
+     * @param file the file to parse
+     * @param reader the reader used to parse the file
+     * @param scratch per-worker quantities by product index, left cleared on return
+     * @return the cache entry for the file
+     * @throws IOException if there's an error reading the file
+     */
+    private SalesFileCache.Entry readFilePartial(File file, ByteRecordReader reader, PartialScratch scratch) throws IOException {
+        // Read the version before the contents, a concurrent change then just invalidates the entry
+        long size = file.length();
+        long lastModified = file.lastModified();
+        
+        byte[] sellerKey = null;
+        Map<String, Long> unknown = new LinkedHashMap<>();
+        try (SalesInput input = SalesInput.open(file)) {
+            metrics.bytesProcessed.add(file.length());
+            boolean hasStream = input.next();
+            if (hasStream) {
+                reader.reset(input.channel());
+            }
+            if (hasStream && reader.nextLine()) {
+                sellerKey = Arrays.copyOfRange(reader.buffer(), reader.lineStart(), reader.lineEnd());
+                long lines = 0;
+                while (reader.nextLine()) {
+                    lines++;
+                    long sale = parseSaleQuantity(reader);
+                    if (sale < Integer.MIN_VALUE) {
+                        rejectMalformedLine(sale, file.getName(), null, reader.lineNumber(), reader);
+                        continue;
+                    }
+                    int quantity = (int) sale;
+                    int product = productIndex.get(reader.buffer(), reader.fieldStart(0), reader.fieldEnd(0));
+                    if (product == CatalogIndex.NOT_FOUND) {
+                        unknown.merge(reader.fieldAsString(0), (long) quantity, Long::sum);
+                    } else {
+                        scratch.add(product, quantity);
+                    }
+                }
+                metrics.linesProcessed.add(lines);
+            }
+            
+            byte[][] ids = new byte[scratch.count + unknown.size()][];
+            long[] totals = new long[ids.length];
+            int i = 0;
+            for (int t = 0; t < scratch.count; t++) {
+                int product = scratch.touched[t];
+                ids[i] = productKeys[product];
+                totals[i++] = scratch.quantities[product];
+            }
+            for (Map.Entry<String, Long> entry : unknown.entrySet()) {
+                ids[i] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                totals[i++] = entry.getValue();
+            }
+            return new SalesFileCache.Entry(file.getPath(), size, lastModified, sellerKey, ids, totals);
+        } finally {
+            scratch.clear();
+        }
+    }
+    
+    /**
+     * Processes an individual sales file
+     * @param file the file to process
+     * @param reader the reader used to parse the file
+     * @param sink the receiver of the file's sales
+     * @throws IOException if there's an error reading the file
+     */
+    private void processSaleFile(File file, ByteRecordReader reader, SaleSink sink) throws IOException {
+        try (SalesInput input = SalesInput.open(file)) {
+            metrics.filesProcessed.increment();
+            metrics.bytesProcessed.add(file.length());
+            
+            // One stream, or one per entry of a zip archive
+            while (input.next()) {
+                reader.reset(input.channel());
+                processSalesStream(reader, input.source(), input.isShard(), sink);
+            }
+        }
+    }
+    
+    /**
+     * Processes one sales stream: a per-seller file or a whole shard
+     * @param reader the reader, reset on the stream
+     * @param source the name of the stream, for messages
+     * @param shard whether the stream is a shard
+     * @param sink the receiver of the sales
+     * @throws IOException if there's an error reading the stream or writing the quarantine
+     */
+    private void processSalesStream(ByteRecordReader reader, String source, boolean shard, SaleSink sink) throws IOException {
+        if (shard) {
+            processShardStream(reader, source, sink);
+        } else if (reader.nextLine()) {
+            // First line: seller identification
+            processSellerBlock(reader, reader.lineStart(), source, false, sink);
+        } else {
+            reject(source, null, 0, Quarantine.Reason.EMPTY_FILE, "");
+        }
+    }
+    
+    /**
+     * Processes the sales of one seller, aggregated in memory or spilled to disk in spill mode
+     */
+    private void processSellerBlock(ByteRecordReader reader, int keyStart, String source, boolean sharded, SaleSink sink)
+            throws IOException {
+        if (spillingSellers != null) {
+            // Spill mode only ingests into accumulators
+            spillSalesBlock(reader, keyStart, source, sharded, (SalesAccumulator) sink);
+        } else {
+            processSalesBlock(reader, keyStart, source, sharded, sink);
+        }
+    }
+    
+    /**
+     * Processes the sales of one seller: a whole per-seller file, or one block of a shard
+     * @param reader the reader, positioned on the seller line
+     * @param keyStart where the seller key starts in the current line
+     * @param source the file name, for messages
+     * @param sharded whether a block header line ends the sales (shard format)
+     * @param sink the receiver of the sales
+     * @throws IOException if there's an error reading the file or writing the quarantine
+     */
+    private void processSalesBlock(ByteRecordReader reader, int keyStart, String source, boolean sharded, SaleSink sink) throws IOException {
+        // Rejected lines of a shard are located by block: its seller key and the line within the block
+        byte[] blockKey = sharded ? Arrays.copyOfRange(reader.buffer(), keyStart, reader.lineEnd()) : null;
+        long headerLine = reader.lineNumber();
+        int seller = sellerIndex.get(reader.buffer(), keyStart, reader.lineEnd());
+        if (seller == CatalogIndex.NOT_FOUND) {
+            reject(source, blockKey, 1, Quarantine.Reason.UNKNOWN_SELLER,
+                new String(reader.buffer(), keyStart, reader.lineEnd() - keyStart, StandardCharsets.UTF_8));
+            if (sharded) {
+                skipSalesBlock(reader);
+            }
+            return;
+        }
+        
+        // Read sales: "PID:qty;" or "PID:qty:date;" lines, resolved to dense indices without creating Strings
+        long lines = 0;
+        while (reader.nextLine()) {
+            if (sharded && SalesShards.isBlockHeader(reader)) {
+                reader.pushBack();
+                break;
+            }
+            lines++;
+            long sale = parseSaleQuantity(reader);
+            if (sale < Integer.MIN_VALUE) {
+                rejectMalformedLine(sale, source, blockKey, reader.lineNumber() - headerLine + 1, reader);
+                continue;
+            }
+            int product = productIndex.get(reader.buffer(), reader.fieldStart(0), reader.fieldEnd(0));
+            
+            if (product == CatalogIndex.NOT_FOUND) {
+                reject(source, blockKey, reader.lineNumber() - headerLine + 1, Quarantine.Reason.UNKNOWN_PRODUCT, reader.lineAsString());
+                continue;
+            }
+            
+            // The date was parsed with the quantity
+            sink.addSale(seller, product, productPrices[product], (int) sale, saleDay(sale));
+        }
+        metrics.linesProcessed.add(lines);
+    }
+    
+    /**
+     * Splits a sales line into its "productId:quantity[:date]" fields, parses
+     * the quantity and the optional date. Problems are reported through the
+     * return value, never as an exception, so dirty lines cost no more than
+     * clean ones.
+     * @param reader the reader, positioned on the line
+     * @return the quantity in the low 32 bits (read it with a cast to int) and
+     *         the day in the high bits (read it with saleDay), or BLANK_LINE,
+     *         MISSING_QUANTITY, INVALID_QUANTITY or INVALID_DATE, all below Integer.MIN_VALUE
+     */
+    private static long parseSaleQuantity(ByteRecordReader reader) {
+        int fields = reader.splitFields(true);
+        if (fields < 2) {
+            return reader.lineEnd() == reader.lineStart() ? BLANK_LINE : MISSING_QUANTITY;
+        }
+        long quantity = reader.tryParseIntField(1);
+        if (quantity == ByteRecordReader.INVALID_INT) {
+            return INVALID_QUANTITY;
+        }
+        if (fields == 2) {
+            return quantity & 0xFFFFFFFFL;
+        }
+        int day = SalesSegments.parseDay(reader.buffer(), reader.fieldStart(2), reader.fieldEnd(2));
+        if (day == SalesSegments.INVALID_DAY) {
+            return INVALID_DATE;
+        }
+        // Epoch days from 1970 on are non-negative, so the packed sale stays positive
+        return ((long) day + 1) << 32 | (quantity & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * The date of a sale returned by parseSaleQuantity
+     * @param sale a valid sale
+     * @return its epoch day, or SalesSegments.NO_DAY for an undated line
+     */
+    private static int saleDay(long sale) {
+        return (int) (sale >>> 32) - 1;
+    }
+    
+    /**
+     * Rejects the current line for the code returned by parseSaleQuantity; blank lines are just skipped
+     */
+    private void rejectMalformedLine(long code, String source, byte[] blockKey, long line, ByteRecordReader reader) throws IOException {
+        if (code != BLANK_LINE) {
+            reject(source, blockKey, line, malformedLineReason(code), reader.lineAsString());
+        }
+    }
+    
+    /**
+     * @param code a code returned by parseSaleQuantity other than BLANK_LINE
+     * @return the quarantine reason of the line
+     */
+    private static Quarantine.Reason malformedLineReason(long code) {
+        return code == MISSING_QUANTITY ? Quarantine.Reason.MISSING_QUANTITY
+            : code == INVALID_DATE ? Quarantine.Reason.INVALID_DATE : Quarantine.Reason.INVALID_QUANTITY;
+    }
+    
+    /**
+     * Rejects a record: counts it, logs a sample of the rejections and writes it
+     * to the quarantine file. In strict mode the run stops instead.
+     * @param source the file name
+     * @param blockKey the seller key of the shard block, or null outside shards
+     * @param line the line number within the file or block, or 0
+     * @param reason why the record is rejected
+     * @param content the rejected line or key
+     * @throws IOException if the quarantine file cannot be written
+     */
+    private void reject(String source, byte[] blockKey, long line, Quarantine.Reason reason, String content) throws IOException {
+        switch (reason) {
+            case EMPTY_FILE:
+                metrics.emptyFiles.increment();
+                break;
+            case UNKNOWN_SELLER:
+                metrics.unknownSellers.increment();
+                break;
+            case UNKNOWN_PRODUCT:
+                metrics.unknownProducts.increment();
+                break;
+            default:
+                metrics.parseErrors.increment();
+                break;
+        }
+        String location = blockKey == null ? source : source + " [" + new String(blockKey, StandardCharsets.UTF_8) + "]";
+        if (strict) {
+            throw new InvalidSalesDataException(reason.description + " en " + location
+                + (line > 0 ? ", línea " + line : "") + ": " + content);
+        }
+        if (metrics.sample()) {
+            System.out.println(Character.toUpperCase(reason.description.charAt(0)) + reason.description.substring(1)
+                + ": " + content + " (" + location + (line > 0 ? ", línea " + line : "") + ")");
+        }
+        if (quarantine != null) {
+            quarantine.reject(location, line, reason, content);
+        }
+    }
+    
+    /**
+     * Skips the rest of a shard block, leaving the next block header to be read
+     */
+    private static void skipSalesBlock(ByteRecordReader reader) throws IOException {
+        while (reader.nextLine()) {
+            if (SalesShards.isBlockHeader(reader)) {
+                reader.pushBack();
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Processes a byte range of a shard, reporting read errors without aborting the run
+     * @param range the range, starting at a block header
+     * @param accumulator the accumulator that receives the range's sales
+     */
+    private void processShardRangeSafely(SalesShards.Range range, SalesAccumulator accumulator) {
+        String source = range.file.getName();
+        ByteRecordReader reader = accumulator.reader;
+        try (ReadableByteChannel channel = SalesShards.open(range)) {
+            reader.reset(channel);
+            if (range.start == 0) {
+                metrics.filesProcessed.increment();
+            }
+            metrics.bytesProcessed.add(range.end - range.start);
+            processShardStream(reader, source, accumulator);
+        } catch (IOException e) {
+            readFailed(source, e);
+        }
+    }
+    
+    /**
+     * Processes the seller blocks of a shard, a byte range of one or a whole decompressed shard
+     * @param reader the reader, reset on the shard bytes
+     * @param source the file name, for messages
+     * @param sink the receiver of the sales
+     * @throws IOException if there's an error reading the shard or writing the quarantine
+     */
+    private void processShardStream(ByteRecordReader reader, String source, SaleSink sink) throws IOException {
+        while (reader.nextLine()) {
+            if (!SalesShards.isBlockHeader(reader)) {
+                // Only possible at the start of a shard that does not begin with a header
+                if (reader.lineEnd() > reader.lineStart()) {
+                    reject(source, null, reader.lineNumber(), Quarantine.Reason.OUTSIDE_BLOCK, reader.lineAsString());
+                }
+                continue;
+            }
+            processSellerBlock(reader, reader.lineStart() + 1, source, true, sink);
+        }
+    }
+    
+    /**
+     * Runs the batch process with the seller side kept on disk, for seller
+     * catalogs larger than the heap. The seller catalog and the totals of every
+     * sales file are partitioned into run files by SpillingSellerAggregator,
+     * each partition is aggregated within the memory budget, and the seller
+     * report is streamed from a merge of the ranked partitions. Products are
+     * still held in memory.
+     * @throws IOException if there's an error reading or writing the files
+     */
+    private void processWithSpilling() throws IOException {
+        File sellersFile = new File(inputDir + "vendedores.txt");
+        if (!sellersFile.exists()) {
+            throw new IOException("Archivo de vendedores no encontrado: " + sellersFile.getPath());
+        }
+        
+        long start = System.nanoTime();
+        loadProducts();
+        Path workDirectory = Files.createTempDirectory(Paths.get(outputDir), ".spill");
+        try (SpillingSellerAggregator aggregator =
+                new SpillingSellerAggregator(workDirectory, memoryBudget)) {
+            spillingSellers = aggregator;
+            long sellerCount = aggregator.loadCatalog(sellersFile);
+            metrics.recordPhase(SalesMetrics.Phase.CATALOG_LOAD, System.nanoTime() - start);
+            System.out.println("Vendedores particionados en disco: " + sellerCount
+                + " (" + aggregator.partitions() + " partición(es))");
+            
+            processSalesFiles();
+            
+            // Sales of unknown sellers are only known now, and are removed from the product totals here
+            start = System.nanoTime();
+            long rows = aggregator.rankPartitions(topK, totalProductsSold, this::reject);
+            try (SpillingSellerAggregator.Merge merge = aggregator.openMerge()) {
+                writeRankedReport("reporte_vendedores", SELLER_REPORT_HEADER, Math.toIntExact(rows),
+                    (writer, rank) -> {
+                        merge.next();
+                        String[] fields = merge.fields();
+                        writeSellerRow(writer, new Seller(fields[0], fields[1], fields[2], fields[3]), merge.total());
+                    });
+            }
+            metrics.recordPhase(SalesMetrics.Phase.SELLER_REPORT, System.nanoTime() - start);
+            System.out.println("Reporte de vendedores generado: reporte_vendedores" + reportExtension());
+            
+            createProductReport();
+        } finally {
+            spillingSellers = null;
+        }
+    }
     
     /**
-     * Main method that executes file processing and report generation
-     * @param args command line arguments 
+     * Spill mode: processes the sales of one seller, a whole file or a shard block
+     * @param reader the reader, positioned on the seller line
+     * @param keyStart where the seller key starts in the current line
+     * @param source the file name, for messages
+     * @param sharded whether a block header line ends the sales (shard format)
+     * @param accumulator the accumulator that receives the product quantities
+     * @throws IOException if there's an error reading the file or writing the run
      */
-    
-    public static void main(String[] args) {
-        SalesProcessor processor = new SalesProcessor();
+    private void spillSalesBlock(ByteRecordReader reader, int keyStart, String source, boolean sharded,
+            SalesAccumulator accumulator) throws IOException {
+        byte[] sellerKey = Arrays.copyOfRange(reader.buffer(), keyStart, reader.lineEnd());
+        byte[] blockKey = sharded ? sellerKey : null;
+        long headerLine = reader.lineNumber();
         
-        try {
-            // Create output directory if it doesn't exist
-            File directory = new File(OUTPUT_DIR);
-            if (!directory.exists()) {
-                directory.mkdirs();
+        FileSales sales = new FileSales(0, 0);
+        // The seller is only looked up when its partition is ranked: rejected lines wait for it,
+        // since the lines of an unknown seller are not rejected one by one
+        List<SpillingSellerAggregator.RejectedLine> rejected = null;
+        long lines = 0;
+        while (reader.nextLine()) {
+            if (sharded && SalesShards.isBlockHeader(reader)) {
+                reader.pushBack();
+                break;
+            }
+            lines++;
+            long sale = parseSaleQuantity(reader);
+            Quarantine.Reason reason = null;
+            int product = CatalogIndex.NOT_FOUND;
+            if (sale < Integer.MIN_VALUE) {
+                if (sale == BLANK_LINE) {
+                    continue;
+                }
+                reason = malformedLineReason(sale);
+            } else {
+                product = productIndex.get(reader.buffer(), reader.fieldStart(0), reader.fieldEnd(0));
+                if (product == CatalogIndex.NOT_FOUND) {
+                    reason = Quarantine.Reason.UNKNOWN_PRODUCT;
+                }
+            }
+            if (reason != null) {
+                if (rejected == null) {
+                    rejected = new ArrayList<>();
+                }
+                rejected.add(new SpillingSellerAggregator.RejectedLine(reason,
+                    reader.lineNumber() - headerLine + 1, reader.lineAsString()));
+                continue;
             }
             
-            // Load seller and product information
-            processor.loadSellers();
-            processor.loadProducts();
-            
-            // Process sales files
-            processor.processSalesFiles();
+            int quantity = (int) sale;
+            sales.addSale(-1, product, productPrices[product], quantity, SalesSegments.NO_DAY);
+            accumulator.productsSold[product] += quantity;
+        }
+        metrics.linesProcessed.add(lines);
+        spillingSellers.addFile(sellerKey, 0, sellerKey.length, sales.totalCents,
+            sales.products, sales.quantities, sales.count,
+            source, sharded, rejected != null ? rejected : Collections.emptyList());
+    }
+    
+    /**
+     * Watch mode: ingests every sales file, writes the reports and then keeps
+     * watching the input directory. New, modified and deleted sales files are
+     * applied as deltas to the totals (the previous contribution of a file is
+     * subtracted and the new one added), so an update costs one file parse
+     * regardless of how many files were already ingested. Reports are rewritten
+     * once the directory has been quiet for the debounce period. A change in the
+     * catalogs reloads them and re-ingests everything. Runs until interrupted.
+     * @throws IOException if the directory cannot be watched or a report cannot be written
+     */
+    private void watchSalesDirectory() throws IOException {
+        Path directory = Paths.get(inputDir);
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            directory.register(watcher,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
             
-            // Generate reports
-            processor.createSellerReport();
-            processor.createProductReport();
+            ingestAllForWatch();
+            publishSnapshot();
+            createSellerReport();
+            createProductReport();
+            finishRun();
+            System.out.println("Observando cambios en " + inputDir + " (Ctrl+C para terminar)");
             
-            System.out.println("Procesamiento completado exitosamente. Reportes generados en: " + OUTPUT_DIR);
-        } catch (IOException e) {
-            System.err.println("Error durante el procesamiento: " + e.getMessage());
-            e.printStackTrace();
+            Set<Path> pending = new LinkedHashSet<>();
+            boolean catalogChanged = false;
+            boolean rescan = false;
+            long firstPendingNanos = 0;
+            while (true) {
+                boolean idle = pending.isEmpty() && !catalogChanged && !rescan;
+                WatchKey key;
+                if (idle) {
+                    key = watcher.take();
+                    firstPendingNanos = System.nanoTime();
+                } else if (System.nanoTime() - firstPendingNanos > 10 * debounceMillis * 1_000_000) {
+                    // Files keep changing: do not postpone the update forever
+                    key = null;
+                } else {
+                    key = watcher.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                }
+                
+                if (key == null) {
+                    long start = System.nanoTime();
+                    if (catalogChanged) {
+                        System.out.println("Catálogo modificado, recargando");
+                        try {
+                            loadCatalogs();
+                        } catch (IOException | RuntimeException e) {
+                            // Keep watching: the next change to the catalog triggers a new reload
+                            System.err.println("Error al recargar el catálogo: " + e.getMessage());
+                            clearCatalog();
+                        }
+                        ingestAllForWatch();
+                    } else if (rescan) {
+                        rescanForWatch();
+                    } else {
+                        for (Path path : pending) {
+                            updateFileSales(path);
+                        }
+                    }
+                    metrics.recordPhase(SalesMetrics.Phase.INGESTION, System.nanoTime() - start);
+                    publishSnapshot();
+                    createSellerReport();
+                    createProductReport();
+                    finishRun();
+                    System.out.println("Reportes actualizados: " + (catalogChanged || rescan ? "todos los archivos" : pending.size() + " archivo(s)")
+                        + " en " + (System.nanoTime() - start) / 1_000_000 + " ms");
+                    pending.clear();
+                    catalogChanged = false;
+                    rescan = false;
+                    continue;
+                }
+                
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rescan = true;
+                        continue;
+                    }
+                    Path name = (Path) event.context();
+                    if (isSalesFileName(name.toString())) {
+                        pending.add(directory.resolve(name));
+                    } else if (isCatalogFileName(name.toString())) {
+                        catalogChanged = true;
+                    }
+                }
+                if (!key.reset()) {
+                    throw new IOException("El directorio " + inputDir + " ya no se puede observar");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
     
     /**
-     * Loads seller information from the corresponding file
-     * @throws IOException if there's an error reading the file
+     * Watch mode: leaves an empty catalog after a failed reload, so no sales are matched against stale data
+     */
+    private void clearCatalog() {
+        sellers = new ArrayList<>();
+        products = new ArrayList<>();
+        sellerIndex = new SellerKeyIndex();
+        productIndex = new ByteKeyIndex();
+        productPrices = new long[0];
+        productKeys = new byte[0][];
+    }
+    
+    /**
+     * Watch mode: forgets every file and ingests the whole directory again
      */
-    private void loadSellers() throws IOException {
-        File sellersFile = new File(INPUT_DIR + "vendedores.txt");
+    private void ingestAllForWatch() {
+        salesByFile.clear();
+        totalSoldBySeller = new long[sellers.size()];
+        totalProductsSold = new long[products.size()];
         
-        if (!sellersFile.exists()) {
-            throw new IOException("Archivo de vendedores no encontrado: " + sellersFile.getPath());
+        long start = System.nanoTime();
+        File[] files = listSalesFiles();
+        if (files != null) {
+            for (File file : files) {
+                updateFileSales(file.toPath());
+            }
         }
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(sellersFile))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(":");
-                if (parts.length >= 4) {
-                    String documentType = parts[0];
-                    String documentNumber = parts[1];
-                    String name = parts[2];
-                    String lastName = parts[3];
-                    
-                    String id = documentType + ":" + documentNumber;
-                    Seller seller = new Seller(documentType, documentNumber, name, lastName);
-                    sellers.put(id, seller);
-                    salesBySeller.put(id, new ArrayList<>());
-                }
+        metrics.recordPhase(SalesMetrics.Phase.INGESTION, System.nanoTime() - start);
+        System.out.println("Archivos de ventas procesados: " + salesByFile.size());
+    }
+    
+    /**
+     * Watch mode: compares the directory with the ingested files after missed
+     * events and applies only the differences
+     */
+    private void rescanForWatch() {
+        Set<Path> present = new LinkedHashSet<>();
+        File[] files = listSalesFiles();
+        if (files != null) {
+            for (File file : files) {
+                present.add(file.toPath());
+            }
+        }
+        Set<Path> known = new LinkedHashSet<>(salesByFile.keySet());
+        known.addAll(present);
+        for (Path path : known) {
+            updateFileSales(path);
+        }
+    }
+    
+    /**
+     * Watch mode: re-reads a sales file if it changed and applies the difference
+     * with its previous contribution; a deleted file is subtracted
+     * @param path the sales file
+     */
+    private void updateFileSales(Path path) {
+        File file = path.toFile();
+        if (SalesInput.holdsManySellers(file.getName())) {
+            // A shard or archive mixes many sellers; deltas are tracked per single-seller file only
+            System.out.println("Archivo con varios vendedores ignorado en modo --watch: " + file.getName());
+            return;
+        }
+        FileSales previous = salesByFile.get(path);
+        if (!file.isFile()) {
+            if (previous != null) {
+                applyFileSales(salesByFile.remove(path), -1);
             }
+            return;
+        }
+        if (previous != null && previous.isSameVersion(file)) {
+            return;
         }
         
-        System.out.println("Vendedores cargados: " + sellers.size());
+        FileSales current = new FileSales(file.length(), file.lastModified());
+        try {
+            processSaleFile(file, watchReader, current);
+        } catch (IOException e) {
+            readFailed(file.getName(), e);
+            return;
+        }
+        if (previous != null) {
+            applyFileSales(previous, -1);
+        }
+        applyFileSales(current, 1);
+        salesByFile.put(path, current);
     }
     
     /**
-     * Loads product information from the corresponding file
-     * @throws IOException if there's an error reading the file
+     * Adds or subtracts the contribution of a file to the totals
+     * @param sales the sales of the file
+     * @param sign 1 to add, -1 to subtract
+     */
+    private void applyFileSales(FileSales sales, int sign) {
+        if (sales.seller >= 0) {
+            totalSoldBySeller[sales.seller] = Money.add(totalSoldBySeller[sales.seller], sign * sales.totalCents);
+        }
+        for (int i = 0; i < sales.count; i++) {
+            totalProductsSold[sales.products[i]] += sign * sales.quantities[i];
+        }
+    }
+    
+    /**
+     * Replaces a report with its freshly written temporary file in one step,
+     * so readers never see a partially written report
+     * @param temporary the complete new report
+     * @param target the report to replace
+     * @throws IOException if the file cannot be moved
+     */
+    static void publishReport(Path temporary, Path target) throws IOException {
+        try {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    /**
+     * Generates the seller report ordered by total sales
+     * @throws IOException if there's an error writing the file
+     */
+    void createSellerReport() throws IOException {
+        long start = System.nanoTime();
+        // Sort by total sold (highest to lowest); ties keep catalog order
+        int[] order = rank(totalSoldBySeller);
+        
+        writeRankedReport("reporte_vendedores" + reportSuffix, SELLER_REPORT_HEADER, order.length,
+            (writer, rank) -> {
+                int index = order[rank];
+                writeSellerRow(writer, sellers.get(index), totalSoldBySeller[index]);
+            });
+        metrics.recordPhase(SalesMetrics.Phase.SELLER_REPORT, System.nanoTime() - start);
+        
+        System.out.println("Reporte de vendedores generado: reporte_vendedores" + reportSuffix + reportExtension());
+    }
+    
+    /**
+     * Writes the CSV row of a seller, without the line terminator
+     * @param writer the report writer
+     * @param seller the seller
+     * @param totalCents the seller's total sold, in cents
+     * @throws IOException if there's an error writing the row
+     */
+    static void writeSellerRow(CsvReportWriter writer, Seller seller, long totalCents) throws IOException {
+        // The total uses a decimal comma
+        writer.field(seller.getDocumentType())
+            .field(seller.getDocumentNumber())
+            .field(seller.getName())
+            .field(seller.getLastName())
+            .money(totalCents);
+    }
+    
+    /**
+     * Generates the product report ordered by quantity sold
+     * @throws IOException if there's an error writing the file
      */
-    private void loadProducts() throws IOException {
-        File productsFile = new File(INPUT_DIR + "productos.txt");
+    void createProductReport() throws IOException {
+        long start = System.nanoTime();
+        // Sort by quantity sold (highest to lowest); ties keep catalog order
+        int[] order = rank(totalProductsSold);
+        
+        writeRankedReport("reporte_productos" + reportSuffix, PRODUCT_REPORT_HEADER, order.length,
+            (writer, rank) -> {
+                int index = order[rank];
+                writeProductRow(writer, products.get(index), totalProductsSold[index]);
+            });
+        metrics.recordPhase(SalesMetrics.Phase.PRODUCT_REPORT, System.nanoTime() - start);
         
-        if (!productsFile.exists()) {
-            throw new IOException("Archivo de productos no encontrado: " + productsFile.getPath());
+        System.out.println("Reporte de productos generado: reporte_productos" + reportSuffix + reportExtension());
+    }
+    
+    /**
+     * Writes the CSV row of a product, without the line terminator
+     * @param writer the report writer
+     * @param product the product
+     * @param quantitySold the quantity sold of the product
+     * @throws IOException if there's an error writing the row
+     */
+    static void writeProductRow(CsvReportWriter writer, Product product, long quantitySold) throws IOException {
+        // The price uses a decimal comma
+        writer.field(product.getId())
+            .field(product.getName())
+            .money(product.getPriceCents())
+            .field(quantitySold);
+    }
+    
+    /**
+     * Writes a report for each rollup requested with --rollups, from the
+     * aggregates collected during the ingestion
+     * @throws IOException if there's an error writing the files
+     */
+    void createRollupReports() throws IOException {
+        if (rollups == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        Set<SalesRollups.Kind> kinds = rollups.kinds();
+        if (kinds.contains(SalesRollups.Kind.SELLER_PRODUCT)) {
+            createSellerProductReport();
+        }
+        if (kinds.contains(SalesRollups.Kind.PRODUCT_REVENUE)) {
+            createProductRevenueReport();
+        }
+        if (kinds.contains(SalesRollups.Kind.DOCUMENT_TYPE)) {
+            createDocumentTypeReport();
+        }
+        if (kinds.contains(SalesRollups.Kind.STATISTICS)) {
+            createStatisticsReport();
+        }
+        metrics.recordPhase(SalesMetrics.Phase.ROLLUP_REPORTS, System.nanoTime() - start);
+    }
+    
+    /**
+     * Writes the seller x product pairs that had sales, in catalog order of
+     * the seller and then of the product; --top does not apply to it
+     */
+    private void createSellerProductReport() throws IOException {
+        SalesRollups.PairTotals pairs = rollups.sellerProduct;
+        int[] slots = pairs.sortedSlots();
+        writeRankedReport("reporte_vendedor_producto", SELLER_PRODUCT_REPORT_HEADER, slots.length,
+            (writer, rank) -> {
+                int slot = slots[rank];
+                Seller seller = sellers.get(SalesRollups.PairTotals.seller(pairs.key(slot)));
+                Product product = products.get(SalesRollups.PairTotals.product(pairs.key(slot)));
+                writer.field(seller.getDocumentType())
+                    .field(seller.getDocumentNumber())
+                    .field(product.getId())
+                    .field(product.getName())
+                    .field(pairs.quantity(slot))
+                    .money(pairs.amount(slot));
+            });
+        System.out.println("Reporte de vendedor por producto generado: reporte_vendedor_producto" + reportExtension()
+            + " (" + slots.length + " combinaciones)");
+    }
+    
+    /**
+     * Writes the products ordered by revenue, highest first
+     */
+    private void createProductRevenueReport() throws IOException {
+        long[] revenue = rollups.productRevenue;
+        int[] order = rank(revenue);
+        writeRankedReport("reporte_ingresos_productos", PRODUCT_REVENUE_REPORT_HEADER, order.length,
+            (writer, rank) -> {
+                int index = order[rank];
+                writeProductRow(writer, products.get(index), totalProductsSold[index]);
+                writer.money(revenue[index]);
+            });
+        System.out.println("Reporte de ingresos por producto generado: reporte_ingresos_productos" + reportExtension());
+    }
+    
+    /**
+     * Writes the sellers, units and total sold of each document type, highest
+     * total first. The totals come from the seller totals, so only the units
+     * are collected per line.
+     */
+    private void createDocumentTypeReport() throws IOException {
+        // documentType -> {sellers, sellers with sales, units, total cents}, in first appearance order
+        Map<String, long[]> groups = new LinkedHashMap<>();
+        long[] units = rollups.sellerUnits;
+        for (int i = 0; i < sellers.size(); i++) {
+            long[] group = groups.computeIfAbsent(sellers.get(i).getDocumentType(), type -> new long[4]);
+            group[0]++;
+            if (units[i] != 0 || totalSoldBySeller[i] != 0) {
+                group[1]++;
+            }
+            group[2] += units[i];
+            group[3] = Money.add(group[3], totalSoldBySeller[i]);
+        }
+        List<String> types = new ArrayList<>(groups.keySet());
+        long[] totals = new long[types.size()];
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] = groups.get(types.get(i))[3];
+        }
+        int[] order = Ranking.sort(totals);
+        writeRankedReport("reporte_tipo_documento", DOCUMENT_TYPE_REPORT_HEADER, order.length,
+            (writer, rank) -> {
+                String type = types.get(order[rank]);
+                long[] group = groups.get(type);
+                writer.field(type)
+                    .field(group[0])
+                    .field(group[1])
+                    .field(group[2])
+                    .money(group[3]);
+            });
+        System.out.println("Reporte por tipo de documento generado: reporte_tipo_documento" + reportExtension());
+    }
+    
+    /**
+     * Writes count, extremes, mean, deviation and percentiles of the line
+     * amounts and quantities (percentiles from a histogram, within about 6%)
+     * and of the seller totals and product quantities (exact). Amounts are
+     * written like every other amount; quantities are whole units, except the
+     * mean and deviation, which have two decimals in the same format.
+     */
+    private void createStatisticsReport() throws IOException {
+        String[] names = {"Importe por línea", "Unidades por línea", "Total por vendedor", "Unidades por producto"};
+        SalesRollups.Distribution[] lines = {rollups.lineAmounts, rollups.lineQuantities};
+        long[][] records = {totalSoldBySeller, totalProductsSold};
+        writeRankedReport("reporte_estadisticas", STATISTICS_REPORT_HEADER, names.length,
+            (writer, rank) -> {
+                boolean cents = rank % 2 == 0;
+                writer.field(names[rank]);
+                if (rank < 2) {
+                    SalesRollups.Distribution distribution = lines[rank];
+                    writer.field(distribution.count());
+                    writeStatisticsValue(writer, distribution.min(), cents);
+                    writeStatisticsValue(writer, distribution.max(), cents);
+                    writeStatisticsMean(writer, distribution.mean(), cents);
+                    writeStatisticsMean(writer, distribution.standardDeviation(), cents);
+                    writeStatisticsValue(writer, distribution.percentile(0.50), cents);
+                    writeStatisticsValue(writer, distribution.percentile(0.90), cents);
+                    writeStatisticsValue(writer, distribution.percentile(0.99), cents);
+                } else {
+                    writeExactStatistics(writer, records[rank - 2], cents);
+                }
+            });
+        System.out.println("Reporte de estadísticas generado: reporte_estadisticas" + reportExtension());
+    }
+    
+    /**
+     * Writes the statistics columns of a set of totals, computed from a sorted copy
+     * @param writer the report writer
+     * @param values one total per seller or product
+     * @param cents whether the values are amounts in cents rather than units
+     * @throws IOException if there's an error writing the row
+     */
+    private static void writeExactStatistics(CsvReportWriter writer, long[] values, boolean cents) throws IOException {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (long value : sorted) {
+            sum += value;
+            sumOfSquares += (double) value * value;
+        }
+        double mean = n == 0 ? 0 : sum / n;
+        double deviation = n == 0 ? 0 : Math.sqrt(Math.max(0, sumOfSquares / n - mean * mean));
+        writer.field(n);
+        writeStatisticsValue(writer, n == 0 ? 0 : sorted[0], cents);
+        writeStatisticsValue(writer, n == 0 ? 0 : sorted[n - 1], cents);
+        writeStatisticsMean(writer, mean, cents);
+        writeStatisticsMean(writer, deviation, cents);
+        writeStatisticsValue(writer, exactPercentile(sorted, 0.50), cents);
+        writeStatisticsValue(writer, exactPercentile(sorted, 0.90), cents);
+        writeStatisticsValue(writer, exactPercentile(sorted, 0.99), cents);
+    }
+    
+    /**
+     * Writes an observed value: an amount with two decimals or a whole number of units
+     */
+    private static void writeStatisticsValue(CsvReportWriter writer, long value, boolean cents) throws IOException {
+        if (cents) {
+            writer.money(value);
+        } else {
+            writer.field(value);
+        }
+    }
+    
+    /**
+     * Writes a mean or deviation with two decimals, in pesos or in units
+     */
+    private static void writeStatisticsMean(CsvReportWriter writer, double value, boolean cents) throws IOException {
+        writer.money(Math.round(cents ? value : value * 100));
+    }
+    
+    private static long exactPercentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
         }
+        int rank = (int) Math.max(1, Math.ceil(fraction * sorted.length));
+        return sorted[rank - 1];
+    }
+    
+    /**
+     * Orders record indices by value, highest first: only the best topK with a
+     * bounded heap when a top-K report was requested, otherwise all of them
+     * @param values the value of each record
+     * @return the record indices to write, in report order
+     */
+    private int[] rank(long[] values) {
+        return topK > 0 ? Ranking.top(values, topK) : Ranking.sort(values);
+    }
+    
+    /**
+     * @return the extension of the report files, ".csv" or ".csv.gz"
+     */
+    private String reportExtension() {
+        return compressReports ? ".csv.gz" : ".csv";
+    }
+    
+    /**
+     * Writes ranked rows to a report, or to numbered pages of pageSize rows
+     * (name_p0001.csv, name_p0002.csv...) when pagination is enabled. Each file
+     * has the header and is published atomically.
+     * @param name the report name, without extension
+     * @param header the CSV header columns
+     * @param rowCount the number of rows
+     * @param rowWriter writes the row at each rank, called once per rank in ascending order
+     * @throws IOException if there's an error writing the files
+     */
+    private void writeRankedReport(String name, String[] header, int rowCount, RowWriter rowWriter) throws IOException {
+        int rowsPerFile = pageSize > 0 ? pageSize : Math.max(rowCount, 1);
+        int pages = Math.max(1, (int) (((long) rowCount + rowsPerFile - 1) / rowsPerFile));
+        String extension = reportExtension();
         
-        try (BufferedReader reader = new BufferedReader(new FileReader(productsFile))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(":");
-                if (parts.length >= 3) {
-                    String id = parts[0];
-                    String name = parts[1];
-                    
-                    // Reemplazar coma por punto para manejar el formato decimal
-                    String priceStr = parts[2].replace(',', '.');
-                    double price = Double.parseDouble(priceStr);
-                    
-                    Product product = new Product(id, name, price);
-                    products.put(id, product);
-                    totalProductsSold.put(id, 0);
+        for (int page = 0; page < pages; page++) {
+            String fileName = pageSize > 0 ? String.format("%s_p%04d%s", name, page + 1, extension) : name + extension;
+            Path target = Paths.get(outputDir, fileName);
+            Path temporary = Paths.get(outputDir, fileName + ".tmp");
+            try (CsvReportWriter writer = new CsvReportWriter(temporary, compressReports)) {
+                writer.row(header);
+                
+                int to = (int) Math.min(rowCount, (long) (page + 1) * rowsPerFile);
+                for (int rank = page * rowsPerFile; rank < to; rank++) {
+                    rowWriter.write(writer, rank);
+                    writer.endRow();
                 }
             }
+            publishReport(temporary, target);
         }
         
-        System.out.println("Productos cargados: " + products.size());
+        // Remove pages left over from a previous, longer report
+        if (pageSize > 0) {
+            for (int page = pages + 1; ; page++) {
+                if (!Files.deleteIfExists(Paths.get(outputDir, String.format("%s_p%04d%s", name, page, extension)))) {
+                    break;
+                }
+            }
+        }
     }
     
     /**
-     * Processes all sales files in the input directory
-     * @throws IOException if there's an error reading the files
+     * Writes the CSV fields at a given rank; the row is ended by the caller
+     */
+    private interface RowWriter {
+        void write(CsvReportWriter writer, int rank) throws IOException;
+    }
+    
+    /**
+     * Receives the sales a source pushes on one thread into its own
+     * accumulator, which joins the totals when the writer is closed
      */
-    private void processSalesFiles() throws IOException {
-        File directory = new File(INPUT_DIR);
-        File[] files = directory.listFiles((dir, name) -> 
-            !name.equals("vendedores.txt") && 
-            !name.equals("productos.txt"));
+    private final class RecordWriter implements SalesSource.SalesWriter {
+        private final SalesAccumulator accumulator;
+        private long records;
+        private int streams;
+        private boolean closed;
         
-        if (files == null || files.length == 0) {
-            System.out.println("ADVERTENCIA: No se encontraron archivos de ventas en " + INPUT_DIR);
-            return;
+        RecordWriter(SalesAccumulator accumulator) {
+            this.accumulator = accumulator;
         }
         
-        for (File file : files) {
+        @Override
+        public void text(String source, ReadableByteChannel channel, long bytes) {
+            streams++;
+            metrics.filesProcessed.increment();
+            if (bytes >= 0) {
+                metrics.bytesProcessed.add(bytes);
+            }
             try {
-                processSaleFile(file);
+                accumulator.reader.reset(channel);
+                processSalesStream(accumulator.reader, source, SalesShards.isShardFileName(source), accumulator);
             } catch (IOException e) {
-                System.err.println("Error al procesar archivo " + file.getName() + ": " + e.getMessage());
+                readFailed(source, e);
             }
         }
         
-        System.out.println("Archivos de ventas procesados: " + files.length);
+        @Override
+        public void sale(int seller, int product, int quantity, int day) {
+            Objects.checkIndex(seller, totalSoldBySeller.length);
+            Objects.checkIndex(product, productPrices.length);
+            accumulator.addSale(seller, product, productPrices[product], quantity, day);
+            records++;
+        }
+        
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            metrics.linesProcessed.add(records);
+            mergeResult(accumulator);
+            synchronized (SalesProcessor.this) {
+                recordsPushed += records;
+                streamsPushed += streams;
+            }
+        }
     }
     
     /**
-     * Processes an individual sales file
-     * @param file the file to process
-     * @throws IOException if there's an error reading the file
+     * Receiver of the sales lines parsed from a file
      */
-    private void processSaleFile(File file) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            // First line: seller identification
-            String firstLine = reader.readLine();
-            if (firstLine == null) {
-                System.out.println("Archivo vacío: " + file.getName());
-                return;
+    private interface SaleSink {
+        /**
+         * Receives a sales line
+         * @param seller the index of the seller that made the sale
+         * @param product the index of the product sold
+         * @param priceCents the product's unit price in cents
+         * @param quantity the units sold
+         * @param day the epoch day of the sale, or SalesSegments.NO_DAY
+         */
+        void addSale(int seller, int product, long priceCents, long quantity, int day);
+    }
+    
+    /**
+     * Sales ingested by a single worker, indexed by dense seller and product
+     * indices and merged into the processor totals at the end
+     */
+    static class SalesAccumulator implements SaleSink {
+        private final long[] totalSoldBySeller;
+        private final long[] productsSold;
+        private final ByteRecordReader reader = new ByteRecordReader();
+        // File cache mode only
+        private final List<SalesFileCache.Entry> cacheEntries = new ArrayList<>();
+        private int filesFromCache;
+        private PartialScratch partialScratch;
+        // Requested rollups only
+        private SalesRollups rollups;
+        // Segments mode only
+        private SalesSegments segments;
+        
+        public SalesAccumulator(int sellerCount, int productCount) {
+            this.totalSoldBySeller = new long[sellerCount];
+            this.productsSold = new long[productCount];
+        }
+        
+        public PartialScratch partialScratch() {
+            if (partialScratch == null) {
+                partialScratch = new PartialScratch(productsSold.length);
             }
-            
-            String sellerId = firstLine;
-            if (!sellers.containsKey(sellerId)) {
-                System.out.println("Vendedor no encontrado: " + sellerId + " en archivo " + file.getName());
-                return;
+            return partialScratch;
+        }
+        
+        /**
+         * Adds a sales line to the running totals; the line itself is not retained
+         */
+        @Override
+        public void addSale(int seller, int product, long priceCents, long quantity, int day) {
+            long amount = Money.times(priceCents, quantity);
+            totalSoldBySeller[seller] = Money.add(totalSoldBySeller[seller], amount);
+            productsSold[product] += quantity;
+            if (rollups != null) {
+                rollups.addSale(seller, product, priceCents, quantity);
             }
-            
-            // Read sales
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.endsWith(";")) {
-                    line = line.substring(0, line.length() - 1);
-                }
-                
-                String[] parts = line.split(":");
-                if (parts.length >= 2) {
-                    String productId = parts[0];
-                    int quantity = Integer.parseInt(parts[1]);
-                    
-                    if (!products.containsKey(productId)) {
-                        System.out.println("Producto no encontrado: " + productId + " en archivo " + file.getName());
-                        continue;
-                    }
-                    
-                    Product product = products.get(productId);
-                    salesBySeller.get(sellerId).add(new Sale(product, quantity));
-                    
-                    // Update total product counter
-                    totalProductsSold.put(productId, 
-                        totalProductsSold.get(productId) + quantity);
-                }
+            if (segments != null) {
+                segments.addSale(day, seller, product, amount, quantity);
             }
         }
     }
     
     /**
-     * Generates the seller report ordered by total sales
-     * @throws IOException if there's an error writing the file
+     * File cache mode: per-worker quantities of the file being parsed, by
+     * product index, with the list of products touched so clearing is cheap
      */
-    private void createSellerReport() throws IOException {
-        List<SellerReport> sellerReports = new ArrayList<>();
+    private static class PartialScratch {
+        private final long[] quantities;
+        private final boolean[] seen;
+        private final int[] touched;
+        private int count;
         
-        for (String sellerId : salesBySeller.keySet()) {
-            Seller seller = sellers.get(sellerId);
-            List<Sale> sales = salesBySeller.get(sellerId);
-            
-            double totalSold = 0;
-            for (Sale sale : sales) {
-                totalSold += sale.getProduct().getPrice() * sale.getQuantity();
-            }
-            
-            sellerReports.add(new SellerReport(seller, totalSold));
+        public PartialScratch(int productCount) {
+            this.quantities = new long[productCount];
+            this.seen = new boolean[productCount];
+            this.touched = new int[productCount];
         }
         
-        // Sort by total sold (highest to lowest)
-        Collections.sort(sellerReports, Comparator.comparingDouble(SellerReport::getTotalSold).reversed());
-        
-        // Generate CSV file
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(OUTPUT_DIR + "reporte_vendedores.csv"))) {
-            // Header
-            writer.write("Tipo Documento,Número Documento,Nombre,Apellido,Total Vendido");
-            writer.newLine();
-            
-            // Data
-            for (SellerReport report : sellerReports) {
-                Seller seller = report.getSeller();
-                // Usar punto como separador decimal para el CSV
-                String formattedTotal = String.format("%.2f", report.getTotalSold()).replace('.', ',');
-                writer.write(String.format("%s,%s,%s,%s,%s",
-                    seller.getDocumentType(),
-                    seller.getDocumentNumber(),
-                    seller.getName(),
-                    seller.getLastName(),
-                    formattedTotal));
-                writer.newLine();
+        public void add(int product, int quantity) {
+            if (!seen[product]) {
+                seen[product] = true;
+                touched[count++] = product;
             }
+            quantities[product] += quantity;
         }
         
-        System.out.println("Reporte de vendedores generado: reporte_vendedores.csv");
+        public void clear() {
+            for (int t = 0; t < count; t++) {
+                quantities[touched[t]] = 0;
+                seen[touched[t]] = false;
+            }
+            count = 0;
+        }
     }
     
     /**
-     * Generates the product report ordered by quantity sold
-     * @throws IOException if there's an error writing the file
+     * Watch mode: the contribution of one sales file to the totals, kept so it
+     * can be subtracted when the file changes or disappears
      */
-    private void createProductReport() throws IOException {
-        List<ProductReport> productReports = new ArrayList<>();
+    private static class FileSales implements SaleSink {
+        private final long size;
+        private final long lastModified;
+        private int seller = -1;
+        private long totalCents;
+        private int count;
+        private int[] products = new int[8];
+        private long[] quantities = new long[8];
         
-        for (String productId : totalProductsSold.keySet()) {
-            Product product = products.get(productId);
-            int quantitySold = totalProductsSold.get(productId);
-            
-            productReports.add(new ProductReport(product, quantitySold));
+        public FileSales(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
         }
         
-        // Sort by quantity sold (highest to lowest)
-        Collections.sort(productReports, Comparator.comparingInt(ProductReport::getQuantitySold).reversed());
-        
-        // Generate CSV file
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(OUTPUT_DIR + "reporte_productos.csv"))) {
-            // Header
-            writer.write("ID,Nombre,Precio,Cantidad Vendida");
-            writer.newLine();
-            
-            // Data
-            for (ProductReport report : productReports) {
-                Product product = report.getProduct();
-                // Usar coma como separador decimal para el CSV
-                String formattedPrice = String.format("%.2f", product.getPrice()).replace('.', ',');
-                writer.write(String.format("%s,%s,%s,%d",
-                    product.getId(),
-                    product.getName(),
-                    formattedPrice,
-                    report.getQuantitySold()));
-                writer.newLine();
+        @Override
+        public void addSale(int seller, int product, long priceCents, long quantity, int day) {
+            this.seller = seller;
+            totalCents = Money.add(totalCents, Money.times(priceCents, quantity));
+            if (count == products.length) {
+                products = Arrays.copyOf(products, count * 2);
+                quantities = Arrays.copyOf(quantities, count * 2);
             }
+            products[count] = product;
+            quantities[count] = quantity;
+            count++;
         }
         
-        System.out.println("Reporte de productos generado: reporte_productos.csv");
+        /**
+         * @return whether the file still has the size and modification time it had when read
+         */
+        public boolean isSameVersion(File file) {
+            return file.length() == size && file.lastModified() == lastModified;
+        }
     }
     
     /**
      * Internal class to represent a seller
      */
-    private static class Seller {
+    static class Seller {
         private final String documentType;
         private final String documentNumber;
         private final String name;
@@ -320,15 +2393,15 @@ public class SalesProcessor {
     /**
      * Internal class to represent a product
      */
-    private static class Product {
+    static class Product {
         private final String id;
         private final String name;
-        private final double price;
+        private final long priceCents;
         
-        public Product(String id, String name, double price) {
+        public Product(String id, String name, long priceCents) {
             this.id = id;
             this.name = name;
-            this.price = price;
+            this.priceCents = priceCents;
         }
         
         public String getId() {
@@ -339,71 +2412,8 @@ public class SalesProcessor {
             return name;
         }
         
-        public double getPrice() {
-            return price;
-        }
-    }
-    
-    /**
-     * Internal class to represent a sale
-     */
-    private static class Sale {
-        private final Product product;
-        private final int quantity;
-        
-        public Sale(Product product, int quantity) {
-            this.product = product;
-            this.quantity = quantity;
-        }
-        
-        public Product getProduct() {
-            return product;
-        }
-        
-        public int getQuantity() {
-            return quantity;
-        }
-    }
-    
-    /**
-     * Internal class for the seller report
-     */
-    private static class SellerReport {
-        private final Seller seller;
-        private final double totalSold;
-        
-        public SellerReport(Seller seller, double totalSold) {
-            this.seller = seller;
-            this.totalSold = totalSold;
-        }
-        
-        public Seller getSeller() {
-            return seller;
-        }
-        
-        public double getTotalSold() {
-            return totalSold;
-        }
-    }
-    
-    /**
-     * Internal class for the product report
-     */
-    private static class ProductReport {
-        private final Product product;
-        private final int quantitySold;
-        
-        public ProductReport(Product product, int quantitySold) {
-            this.product = product;
-            this.quantitySold = quantitySold;
-        }
-        
-        public Product getProduct() {
-            return product;
-        }
-        
-        public int getQuantitySold() {
-            return quantitySold;
+        public long getPriceCents() {
+            return priceCents;
         }
     }
 }
\ No newline at end of file
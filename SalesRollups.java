@@ -0,0 +1,347 @@
+package entregaUno;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Extra aggregations computed in the same ingestion pass as the seller and
+ * product totals, so any number of breakdowns costs one read of the data.
+ * Each ingestion worker fills its own instance from the sales lines it parses
+ * and the instances are merged at the end, like the accumulators.
+ *
+ * Only the rollups that were requested are kept: the sparse seller x product
+ * matrix (quantity and revenue of every pair that had sales), the revenue per
+ * product, the units per seller (for the totals by document type) and the
+ * distribution of the line amounts and quantities.
+ */
+final class SalesRollups {
+
+    /**
+     * The rollups that can be requested, by their command line name
+     */
+    enum Kind {
+        SELLER_PRODUCT("vendedor-producto"),
+        PRODUCT_REVENUE("ingresos-producto"),
+        DOCUMENT_TYPE("tipo-documento"),
+        STATISTICS("estadisticas");
+
+        final String option;
+
+        Kind(String option) {
+            this.option = option;
+        }
+    }
+
+    /**
+     * Parses a comma separated list of rollup names, or "todos"
+     * @param list the list
+     * @return the requested rollups
+     * @throws IllegalArgumentException if a name is unknown
+     */
+    static Set<Kind> parseKinds(String list) {
+        Set<Kind> kinds = EnumSet.noneOf(Kind.class);
+        for (String name : list.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.equals("todos")) {
+                return EnumSet.allOf(Kind.class);
+            }
+            Kind found = null;
+            for (Kind kind : Kind.values()) {
+                if (kind.option.equals(trimmed)) {
+                    found = kind;
+                }
+            }
+            if (found == null) {
+                throw new IllegalArgumentException("agregación desconocida: " + trimmed
+                    + " (vendedor-producto, ingresos-producto, tipo-documento, estadisticas o todos)");
+            }
+            kinds.add(found);
+        }
+        return kinds;
+    }
+
+    private final Set<Kind> kinds;
+
+    // SELLER_PRODUCT: quantity and revenue by (seller, product)
+    final PairTotals sellerProduct;
+    // PRODUCT_REVENUE: revenue in cents by product index
+    final long[] productRevenue;
+    // DOCUMENT_TYPE: units sold by seller index (amounts come from the seller totals)
+    final long[] sellerUnits;
+    // STATISTICS: distribution of the amount and the quantity of every sales line
+    final Distribution lineAmounts;
+    final Distribution lineQuantities;
+
+    SalesRollups(Set<Kind> kinds, int sellerCount, int productCount) {
+        this.kinds = kinds;
+        sellerProduct = kinds.contains(Kind.SELLER_PRODUCT) ? new PairTotals() : null;
+        productRevenue = kinds.contains(Kind.PRODUCT_REVENUE) ? new long[productCount] : null;
+        sellerUnits = kinds.contains(Kind.DOCUMENT_TYPE) ? new long[sellerCount] : null;
+        lineAmounts = kinds.contains(Kind.STATISTICS) ? new Distribution() : null;
+        lineQuantities = kinds.contains(Kind.STATISTICS) ? new Distribution() : null;
+    }
+
+    Set<Kind> kinds() {
+        return kinds;
+    }
+
+    /**
+     * Adds a sales line to every requested rollup
+     */
+    void addSale(int seller, int product, long priceCents, long quantity) {
+        long amount = Money.times(priceCents, quantity);
+        if (sellerProduct != null) {
+            sellerProduct.add(((long) seller << 32) | product, quantity, amount);
+        }
+        if (productRevenue != null) {
+            productRevenue[product] = Money.add(productRevenue[product], amount);
+        }
+        if (sellerUnits != null) {
+            sellerUnits[seller] += quantity;
+        }
+        if (lineAmounts != null) {
+            lineAmounts.add(amount);
+            lineQuantities.add(quantity);
+        }
+    }
+
+    /**
+     * Adds the rollups of another worker into this one
+     */
+    void merge(SalesRollups other) {
+        if (sellerProduct != null) {
+            sellerProduct.addAll(other.sellerProduct);
+        }
+        if (productRevenue != null) {
+            for (int i = 0; i < productRevenue.length; i++) {
+                productRevenue[i] = Money.add(productRevenue[i], other.productRevenue[i]);
+            }
+        }
+        if (sellerUnits != null) {
+            for (int i = 0; i < sellerUnits.length; i++) {
+                sellerUnits[i] += other.sellerUnits[i];
+            }
+        }
+        if (lineAmounts != null) {
+            lineAmounts.merge(other.lineAmounts);
+            lineQuantities.merge(other.lineQuantities);
+        }
+    }
+
+    /**
+     * Quantity and revenue by packed (seller, product) key, in an
+     * open-addressing table of primitives: only pairs with sales take space
+     */
+    static final class PairTotals {
+        private static final long EMPTY = -1L;
+
+        private long[] keys = newKeys(1024);
+        private long[] quantities = new long[1024];
+        private long[] amounts = new long[1024];
+        private int size;
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        void add(long key, long quantity, long amount) {
+            int slot = find(key);
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    keys[slot] = EMPTY;
+                    size--;
+                    grow();
+                    slot = find(key);
+                    keys[slot] = key;
+                    size++;
+                }
+            }
+            quantities[slot] += quantity;
+            amounts[slot] = Money.add(amounts[slot], amount);
+        }
+
+        void addAll(PairTotals other) {
+            for (int i = 0; i < other.keys.length; i++) {
+                if (other.keys[i] != EMPTY) {
+                    add(other.keys[i], other.quantities[i], other.amounts[i]);
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return the slots in use, ordered by key: by seller index, then product index
+         */
+        int[] sortedSlots() {
+            long[] order = new long[size];
+            int n = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    order[n++] = keys[i];
+                }
+            }
+            Arrays.sort(order);
+            int[] slots = new int[size];
+            for (int i = 0; i < size; i++) {
+                slots[i] = find(order[i]);
+            }
+            return slots;
+        }
+
+        static int seller(long key) {
+            return (int) (key >>> 32);
+        }
+
+        static int product(long key) {
+            return (int) key;
+        }
+
+        long key(int slot) {
+            return keys[slot];
+        }
+
+        long quantity(int slot) {
+            return quantities[slot];
+        }
+
+        long amount(int slot) {
+            return amounts[slot];
+        }
+
+        private int find(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) (key ^ (key >>> 29)) * 0x9E3779B9 & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldQuantities = quantities;
+            long[] oldAmounts = amounts;
+            keys = newKeys(oldKeys.length * 2);
+            quantities = new long[keys.length];
+            amounts = new long[keys.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = find(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    quantities[slot] = oldQuantities[i];
+                    amounts[slot] = oldAmounts[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Count, extremes, mean and deviation of a stream of values, with
+     * percentiles from a log-linear histogram: 16 buckets per power of two,
+     * so a percentile is within about 6% of the exact value
+     */
+    static final class Distribution {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private long count;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+        private double sum;
+        private double sumOfSquares;
+        // Bucket 0 holds every value <= 0
+        private final long[] buckets = new long[64 * SUB_BUCKETS];
+
+        void add(long value) {
+            count++;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+            sumOfSquares += (double) value * value;
+            buckets[bucket(value)]++;
+        }
+
+        void merge(Distribution other) {
+            count += other.count;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            sum += other.sum;
+            sumOfSquares += other.sumOfSquares;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] += other.buckets[i];
+            }
+        }
+
+        long count() {
+            return count;
+        }
+
+        long min() {
+            return count == 0 ? 0 : min;
+        }
+
+        long max() {
+            return count == 0 ? 0 : max;
+        }
+
+        double mean() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        double standardDeviation() {
+            if (count == 0) {
+                return 0;
+            }
+            double mean = mean();
+            return Math.sqrt(Math.max(0, sumOfSquares / count - mean * mean));
+        }
+
+        /**
+         * @param fraction between 0 and 1, e.g. 0.99
+         * @return the lower bound of the bucket holding the percentile, clamped to [min, max]
+         */
+        long percentile(double fraction) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.max(min, Math.min(max, lowerBound(i)));
+                }
+            }
+            return max;
+        }
+
+        private static int bucket(long value) {
+            if (value <= 0) {
+                return 0;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            if (exponent < SUB_BUCKET_BITS) {
+                // Small values get one bucket each
+                return (int) value;
+            }
+            int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        private static long lowerBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long sub = bucket % SUB_BUCKETS;
+            return (1L << exponent) | (sub << (exponent - SUB_BUCKET_BITS));
+        }
+    }
+}
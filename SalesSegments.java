@@ -0,0 +1,376 @@
+package entregaUno;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Rollups of dated sales by day, kept as immutable segment files so rankings
+ * for a date range are answered from the segments instead of the sales files.
+ *
+ * During the ingestion each worker sums the amount by (day, seller) and the
+ * quantity by (day, product) in sparse tables; afterwards every day becomes a
+ * segment, a {@link PartialAggregate} named by the span it covers
+ * (segmento_2026-10-16_2026-10-16.parcial). A range query merges only the
+ * segments inside the range, k-way like any set of partials.
+ *
+ * Old segments are compacted, measuring age from the newest segment: days
+ * into weeks (Monday to Sunday, cut at month ends so weeks nest in months)
+ * and days and weeks into months. A compacted span is sealed: later runs do
+ * not rewrite its days, so its totals are never counted twice. A compaction
+ * publishes the merged segment before deleting its inputs; inputs left by an
+ * interrupted compaction lie inside a larger segment and are deleted when the
+ * directory is next listed.
+ */
+final class SalesSegments {
+
+    /** Day of a sales line without a date */
+    static final int NO_DAY = -1;
+    /** Day of a sales line whose date is not a valid YYYY-MM-DD from 1970 on */
+    static final int INVALID_DAY = -2;
+
+    private static final String PREFIX = "segmento_";
+    private static final int DATE_LENGTH = 10;
+    // Age in days, before the newest segment, from which segments compact into weeks and into months
+    static final int WEEKLY_AFTER_DAYS = 14;
+    static final int MONTHLY_AFTER_DAYS = 62;
+
+    // Amount in cents by day << 32 | seller index, and quantity by day << 32 | product index
+    private final SalesRollups.PairTotals sellerDays = new SalesRollups.PairTotals();
+    private final SalesRollups.PairTotals productDays = new SalesRollups.PairTotals();
+    private long undatedLines;
+
+    /**
+     * Adds a sales line
+     * @param day the epoch day of the sale, or NO_DAY
+     */
+    void addSale(int day, int seller, int product, long amountCents, long quantity) {
+        if (day == NO_DAY) {
+            undatedLines++;
+            return;
+        }
+        sellerDays.add((long) day << 32 | seller, quantity, amountCents);
+        productDays.add((long) day << 32 | product, quantity, amountCents);
+    }
+
+    /**
+     * Adds the days of another worker into these
+     */
+    void merge(SalesSegments other) {
+        sellerDays.addAll(other.sellerDays);
+        productDays.addAll(other.productDays);
+        undatedLines += other.undatedLines;
+    }
+
+    /**
+     * @return the sales lines without a date, which only count in the full reports
+     */
+    long undatedLines() {
+        return undatedLines;
+    }
+
+    /**
+     * Parses a date field
+     * @param bytes the line buffer
+     * @param from the start of the field
+     * @param to the end of the field
+     * @return the epoch day of a YYYY-MM-DD date from 1970 on, or INVALID_DAY
+     */
+    static int parseDay(byte[] bytes, int from, int to) {
+        if (to - from != DATE_LENGTH || bytes[from + 4] != '-' || bytes[from + 7] != '-') {
+            return INVALID_DAY;
+        }
+        int year = digits(bytes, from, from + 4);
+        int month = digits(bytes, from + 5, from + 7);
+        int day = digits(bytes, from + 8, from + 10);
+        if (year < 1970 || month < 1 || month > 12 || day < 1 || day > Month.of(month).length(Year.isLeap(year))) {
+            return INVALID_DAY;
+        }
+        return (int) LocalDate.of(year, month, day).toEpochDay();
+    }
+
+    private static int digits(byte[] bytes, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            if (bytes[i] < '0' || bytes[i] > '9') {
+                return -1;
+            }
+            value = value * 10 + (bytes[i] - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Writes a segment per day seen, replacing the segment an earlier run wrote
+     * for the same day; days inside a compacted segment are skipped
+     * @param directory the segment directory
+     * @param sellerKey the catalog key of a seller index
+     * @param productKey the catalog key of a product index
+     * @return the number of segments written
+     * @throws IOException if a segment cannot be written
+     */
+    int write(Path directory, IntFunction<byte[]> sellerKey, IntFunction<byte[]> productKey) throws IOException {
+        Files.createDirectories(directory);
+        List<Segment> compacted = new ArrayList<>();
+        for (Segment segment : list(directory)) {
+            if (segment.days() > 1) {
+                compacted.add(segment);
+            }
+        }
+        // Sorted by key, so by day and then by index
+        int[] sellerSlots = sellerDays.sortedSlots();
+        int[] productSlots = productDays.sortedSlots();
+        int written = 0;
+        int sealedDays = 0;
+        int s = 0;
+        int p = 0;
+        while (s < sellerSlots.length || p < productSlots.length) {
+            int day = Math.min(s < sellerSlots.length ? dayOf(sellerDays, sellerSlots[s]) : Integer.MAX_VALUE,
+                p < productSlots.length ? dayOf(productDays, productSlots[p]) : Integer.MAX_VALUE);
+            int sellerEnd = s;
+            while (sellerEnd < sellerSlots.length && dayOf(sellerDays, sellerSlots[sellerEnd]) == day) {
+                sellerEnd++;
+            }
+            int productEnd = p;
+            while (productEnd < productSlots.length && dayOf(productDays, productSlots[productEnd]) == day) {
+                productEnd++;
+            }
+            LocalDate date = LocalDate.ofEpochDay(day);
+            if (isSealed(compacted, date)) {
+                sealedDays++;
+            } else {
+                int sellerFrom = s;
+                int productFrom = p;
+                try (PartialAggregate.Writer writer = new PartialAggregate.Writer(directory.resolve(fileName(date, date)))) {
+                    PartialAggregate.writeSection(writer, sellerEnd - sellerFrom,
+                        i -> sellerKey.apply(indexOf(sellerDays, sellerSlots[sellerFrom + i])),
+                        i -> sellerDays.amount(sellerSlots[sellerFrom + i]));
+                    PartialAggregate.writeSection(writer, productEnd - productFrom,
+                        i -> productKey.apply(indexOf(productDays, productSlots[productFrom + i])),
+                        i -> productDays.quantity(productSlots[productFrom + i]));
+                    writer.finish();
+                }
+                written++;
+            }
+            s = sellerEnd;
+            p = productEnd;
+        }
+        if (sealedDays > 0) {
+            System.out.println("ADVERTENCIA: " + sealedDays + " día(s) ya compactados no se reescribieron");
+        }
+        return written;
+    }
+
+    private static int dayOf(SalesRollups.PairTotals totals, int slot) {
+        return (int) (totals.key(slot) >>> 32);
+    }
+
+    private static int indexOf(SalesRollups.PairTotals totals, int slot) {
+        return (int) totals.key(slot);
+    }
+
+    private static boolean isSealed(List<Segment> compacted, LocalDate date) {
+        for (Segment segment : compacted) {
+            if (segment.contains(date, date)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compacts the old segments: months first, so old days go straight into their month, then weeks
+     * @param directory the segment directory
+     * @return the number of compacted segments written
+     * @throws IOException if a segment cannot be read or written
+     */
+    static int compact(Path directory) throws IOException {
+        List<Segment> segments = list(directory);
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        LocalDate newest = segments.stream().map(segment -> segment.to).max(Comparator.naturalOrder()).get();
+        int written = compactInto(directory, segments, SalesSegments::monthOf, newest.minusDays(MONTHLY_AFTER_DAYS));
+        List<Segment> days = new ArrayList<>();
+        for (Segment segment : list(directory)) {
+            if (segment.days() == 1) {
+                days.add(segment);
+            }
+        }
+        return written + compactInto(directory, days, SalesSegments::weekOf, newest.minusDays(WEEKLY_AFTER_DAYS));
+    }
+
+    private static int compactInto(Path directory, List<Segment> segments, Function<LocalDate, Segment> spanOf,
+            LocalDate limit) throws IOException {
+        Map<LocalDate, List<Segment>> groups = new LinkedHashMap<>();
+        Map<LocalDate, Segment> spans = new LinkedHashMap<>();
+        for (Segment segment : segments) {
+            Segment span = spanOf.apply(segment.from);
+            if (!span.to.isAfter(limit) && span.contains(segment.from, segment.to)) {
+                groups.computeIfAbsent(span.from, from -> new ArrayList<>()).add(segment);
+                spans.put(span.from, span);
+            }
+        }
+        int written = 0;
+        for (Map.Entry<LocalDate, List<Segment>> group : groups.entrySet()) {
+            Segment span = spans.get(group.getKey());
+            List<Segment> members = group.getValue();
+            if (members.size() == 1 && members.get(0).from.equals(span.from) && members.get(0).to.equals(span.to)) {
+                continue;
+            }
+            List<Path> inputs = new ArrayList<>();
+            for (Segment member : members) {
+                inputs.add(member.path);
+            }
+            try (PartialAggregate.Writer writer = new PartialAggregate.Writer(directory.resolve(fileName(span.from, span.to)))) {
+                PartialAggregate.merge(inputs, writer, writer);
+                writer.finish();
+            }
+            for (Path input : inputs) {
+                Files.deleteIfExists(input);
+            }
+            written++;
+        }
+        return written;
+    }
+
+    private static Segment monthOf(LocalDate date) {
+        return new Segment(date.withDayOfMonth(1), date.withDayOfMonth(date.lengthOfMonth()), null);
+    }
+
+    private static Segment weekOf(LocalDate date) {
+        LocalDate monday = date.with(DayOfWeek.MONDAY);
+        LocalDate from = monday.isBefore(date.withDayOfMonth(1)) ? date.withDayOfMonth(1) : monday;
+        LocalDate sunday = monday.plusDays(6);
+        LocalDate monthEnd = date.withDayOfMonth(date.lengthOfMonth());
+        return new Segment(from, sunday.isAfter(monthEnd) ? monthEnd : sunday, null);
+    }
+
+    /**
+     * Selects the segments of a date range
+     * @param directory the segment directory
+     * @param from the first day of the range
+     * @param to the last day of the range
+     * @return the segments inside the range, possibly none
+     * @throws SegmentRangeException if a compacted segment is only partly inside the range
+     * @throws IOException if a leftover segment cannot be deleted
+     */
+    static List<Path> select(Path directory, LocalDate from, LocalDate to) throws IOException {
+        List<Path> selected = new ArrayList<>();
+        Segment range = new Segment(from, to, null);
+        Segment cut = null;
+        LocalDate first = from;
+        LocalDate last = to;
+        for (Segment segment : list(directory)) {
+            if (segment.to.isBefore(from) || segment.from.isAfter(to)) {
+                continue;
+            }
+            if (!range.contains(segment.from, segment.to)) {
+                // Widen the suggested range to every segment the query cuts
+                cut = cut == null ? segment : cut;
+                first = segment.from.isBefore(first) ? segment.from : first;
+                last = segment.to.isAfter(last) ? segment.to : last;
+                continue;
+            }
+            selected.add(segment.path);
+        }
+        if (cut != null) {
+            boolean monthly = cut.days() > 7;
+            throw new SegmentRangeException("el rango " + from + ".." + to + " corta el segmento "
+                + (monthly ? "mensual " : "semanal ") + cut.from + ".." + cut.to + ": "
+                + (monthly ? "los meses terminados hace más de " + MONTHLY_AFTER_DAYS + " días solo se consultan completos"
+                    : "las semanas terminadas hace más de " + WEEKLY_AFTER_DAYS + " días solo se consultan completas")
+                + "; use, por ejemplo, --range=" + first + ".." + last);
+        }
+        return selected;
+    }
+
+    /**
+     * Lists the segments of a directory, deleting those inside a larger one
+     * @param directory the segment directory
+     * @return the segments, ordered by their first day
+     * @throws IOException if a leftover segment cannot be deleted
+     */
+    static List<Segment> list(Path directory) throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        File[] files = directory.toFile().listFiles((dir, name) -> name.startsWith(PREFIX)
+            && name.endsWith(PartialAggregate.EXTENSION));
+        if (files == null) {
+            return segments;
+        }
+        for (File file : files) {
+            Segment segment = Segment.parse(file.toPath());
+            if (segment != null) {
+                segments.add(segment);
+            }
+        }
+        // Widest first, so a leftover input is seen after the compacted segment that holds it
+        segments.sort(Comparator.comparing((Segment segment) -> segment.from)
+            .thenComparing(segment -> segment.to, Comparator.reverseOrder()));
+        List<Segment> kept = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (!kept.isEmpty() && kept.get(kept.size() - 1).contains(segment.from, segment.to)) {
+                Files.deleteIfExists(segment.path);
+            } else {
+                kept.add(segment);
+            }
+        }
+        return kept;
+    }
+
+    static String fileName(LocalDate from, LocalDate to) {
+        return PREFIX + from + "_" + to + PartialAggregate.EXTENSION;
+    }
+
+    /**
+     * A segment file and the days it covers, both inclusive
+     */
+    static final class Segment {
+        final LocalDate from;
+        final LocalDate to;
+        final Path path;
+
+        Segment(LocalDate from, LocalDate to, Path path) {
+            this.from = from;
+            this.to = to;
+            this.path = path;
+        }
+
+        static Segment parse(Path path) {
+            String name = path.getFileName().toString();
+            String span = name.substring(PREFIX.length(), name.length() - PartialAggregate.EXTENSION.length());
+            int separator = span.indexOf('_');
+            if (separator < 0) {
+                return null;
+            }
+            try {
+                LocalDate from = LocalDate.parse(span.substring(0, separator));
+                LocalDate to = LocalDate.parse(span.substring(separator + 1));
+                return to.isBefore(from) ? null : new Segment(from, to, path);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+
+        boolean contains(LocalDate first, LocalDate last) {
+            return !first.isBefore(from) && !last.isAfter(to);
+        }
+
+        long days() {
+            return to.toEpochDay() - from.toEpochDay() + 1;
+        }
+    }
+}
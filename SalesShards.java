@@ -0,0 +1,158 @@
+package entregaUno;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sharded sales format. A shard file (*.shard) holds the sales of many
+ * sellers as consecutive blocks; a block is a header line "@" followed by
+ * the seller key, then the seller's "productId:quantity;" lines, exactly the
+ * contents of a per-seller sales file. Because every block starts with a line
+ * beginning with '@', a shard can be cut into byte ranges aligned to block
+ * headers and the ranges parsed independently, in parallel.
+ */
+final class SalesShards {
+
+    public static final String EXTENSION = ".shard";
+    public static final byte BLOCK_MARKER = '@';
+
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private SalesShards() {
+    }
+
+    public static boolean isShardFileName(String name) {
+        return name.endsWith(EXTENSION);
+    }
+
+    /**
+     * @return whether the current line of the reader is a block header
+     */
+    public static boolean isBlockHeader(ByteRecordReader reader) {
+        return reader.lineEnd() > reader.lineStart() && reader.buffer()[reader.lineStart()] == BLOCK_MARKER;
+    }
+
+    /**
+     * Cuts a shard into ranges of about targetBytes, each starting at a block
+     * header (the first range starts at the beginning of the file)
+     * @param shard the shard file
+     * @param targetBytes the wanted range size
+     * @return the ranges, in file order, covering the whole file
+     * @throws IOException if the file cannot be read
+     */
+    public static List<Range> split(File shard, long targetBytes) throws IOException {
+        List<Range> ranges = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(shard.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer scan = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            long start = 0;
+            while (start < size) {
+                long end = start + targetBytes >= size ? size : nextBlockStart(channel, start + targetBytes, size, scan);
+                ranges.add(new Range(shard, start, end));
+                start = end;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Finds the first block header at or after a position
+     * @return the offset of the header's '@', or size if there is none
+     */
+    private static long nextBlockStart(FileChannel channel, long from, long size, ByteBuffer scan) throws IOException {
+        // A header is an '@' right after a line break, so the scan starts one byte early
+        long offset = from - 1;
+        while (offset < size) {
+            scan.clear();
+            int read = channel.read(scan, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i + 1 < read; i++) {
+                if (scan.get(i) == '\n' && scan.get(i + 1) == BLOCK_MARKER) {
+                    return offset + i + 1;
+                }
+            }
+            // The last byte may be a line break whose '@' is in the next chunk
+            offset += Math.max(1, read - 1);
+        }
+        return size;
+    }
+
+    /**
+     * Opens a channel that reads only the bytes of a range
+     * @param range the range
+     * @return the channel; closing it closes the file
+     * @throws IOException if the file cannot be opened
+     */
+    public static ReadableByteChannel open(Range range) throws IOException {
+        return new RangeChannel(FileChannel.open(range.file.toPath(), StandardOpenOption.READ), range.start, range.end);
+    }
+
+    /**
+     * A byte range [start, end) of a shard file
+     */
+    static final class Range {
+        final File file;
+        final long start;
+        final long end;
+
+        Range(File file, long start, long end) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Positional reads over [start, end) of a file channel
+     */
+    private static final class RangeChannel implements ReadableByteChannel {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        RangeChannel(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            long remaining = end - position;
+            if (remaining <= 0) {
+                return -1;
+            }
+            int limit = destination.limit();
+            if (destination.remaining() > remaining) {
+                destination.limit(destination.position() + (int) remaining);
+            }
+            try {
+                int read = channel.read(destination, position);
+                if (read > 0) {
+                    position += read;
+                }
+                return read;
+            } finally {
+                destination.limit(limit);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package entregaUno;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Immutable copy of the SalesProcessor aggregates, published to the report
+ * server after every change. Readers only ever see a complete snapshot and
+ * never lock anything the ingestion uses; the ingestion pays one copy of the
+ * totals per update.
+ *
+ * The rankings are computed on first use and kept for the life of the
+ * snapshot, as are the rendered responses, so polling the same query costs a
+ * map lookup until the aggregates change and a new snapshot replaces this one.
+ */
+final class SalesSnapshot {
+
+    // Rendered responses kept per snapshot; beyond this, responses are rendered on every request
+    private static final int MAX_CACHED_RESPONSES = 256;
+
+    final long version;
+    final long createdMillis;
+    final List<SalesProcessor.Seller> sellers;
+    final long[] sellerTotals;
+    final List<SalesProcessor.Product> products;
+    final long[] productTotals;
+    // Read-only once the catalog is loaded; a reload builds a new index
+    private final CatalogIndex sellerIndex;
+
+    // Computed lazily; a race only computes the same array twice
+    private volatile int[] sellerOrder;
+    private volatile int[] sellerRanks;
+    private volatile int[] productOrder;
+    private final ConcurrentMap<String, byte[]> responses = new ConcurrentHashMap<>();
+
+    SalesSnapshot(long version, List<SalesProcessor.Seller> sellers, long[] sellerTotals, CatalogIndex sellerIndex,
+            List<SalesProcessor.Product> products, long[] productTotals) {
+        this.version = version;
+        this.createdMillis = System.currentTimeMillis();
+        this.sellers = sellers;
+        this.sellerTotals = sellerTotals;
+        this.sellerIndex = sellerIndex;
+        this.products = products;
+        this.productTotals = productTotals;
+    }
+
+    /**
+     * @return seller indices by total sold, highest first, ties in catalog order (as in the report)
+     */
+    int[] sellerOrder() {
+        int[] order = sellerOrder;
+        if (order == null) {
+            order = Ranking.sort(sellerTotals);
+            sellerOrder = order;
+        }
+        return order;
+    }
+
+    /**
+     * @return product indices by quantity sold, highest first, ties in catalog order
+     */
+    int[] productOrder() {
+        int[] order = productOrder;
+        if (order == null) {
+            order = Ranking.sort(productTotals);
+            productOrder = order;
+        }
+        return order;
+    }
+
+    /**
+     * @param seller a seller index
+     * @return the 1-based position of the seller in the seller ranking
+     */
+    int sellerRank(int seller) {
+        int[] ranks = sellerRanks;
+        if (ranks == null) {
+            int[] order = sellerOrder();
+            ranks = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                ranks[order[i]] = i + 1;
+            }
+            sellerRanks = ranks;
+        }
+        return ranks[seller];
+    }
+
+    /**
+     * @param key the "documentType:documentNumber" key, UTF-8
+     * @return the seller index, or CatalogIndex.NOT_FOUND
+     */
+    int findSeller(byte[] key) {
+        return sellerIndex.get(key, 0, key.length);
+    }
+
+    /**
+     * Returns a cached response, rendering it on the first request
+     * @param key identifies the query and format
+     * @param render produces the response body
+     * @return the response body
+     */
+    byte[] response(String key, Supplier<byte[]> render) {
+        byte[] body = responses.get(key);
+        if (body == null) {
+            body = render.get();
+            if (responses.size() < MAX_CACHED_RESPONSES) {
+                responses.putIfAbsent(key, body);
+            }
+        }
+        return body;
+    }
+}
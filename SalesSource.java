@@ -0,0 +1,167 @@
+package entregaUno;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Where the processor's catalogs and sales come from. A source pushes its
+ * records into sinks the processor hands it, so the same aggregation and
+ * reports run over the files of a directory (FileSalesSource), the same files
+ * memory-mapped (MappedSalesSource), a dataset generated in memory with no
+ * disk I/O at all (GeneratedSalesSource) or whatever an embedding program
+ * implements.
+ *
+ * Records come in three shapes, and a source may mix them: whole sales files,
+ * which go through the processor's own parallel file pipeline; text streams
+ * in the catalog and sales file formats, parsed like the files; and already
+ * resolved records, the cheapest, which name sellers and products by the
+ * catalog indices the catalog sink returned.
+ */
+interface SalesSource {
+
+    /**
+     * @return a short description for the console, e.g. the directory or the generation settings
+     */
+    String describe();
+
+    /**
+     * Sends the seller and product catalogs; called once, before readSales
+     * @param sink the receiver of the catalog records
+     * @throws IOException if a catalog cannot be read
+     */
+    void readCatalogs(CatalogSink sink) throws IOException;
+
+    /**
+     * Sends the sales, on as many threads as the source likes, one writer per thread
+     * @param sink the receiver of the sales
+     * @throws IOException if the sales cannot be read
+     */
+    void readSales(SalesSink sink) throws IOException;
+
+    /**
+     * Receives catalog records. A key that is already present replaces the
+     * record and keeps its index, like a repeated line of a catalog file.
+     */
+    interface CatalogSink {
+        /**
+         * Parses sellers in the vendedores.txt format, "TYPE:NUMBER:NAME:LASTNAME" lines
+         * @return the number of sellers in the catalog so far
+         */
+        int sellerText(ReadableByteChannel channel) throws IOException;
+
+        /**
+         * Parses products in the productos.txt format, "ID:NAME:PRICE" lines
+         * @return the number of products in the catalog so far
+         */
+        int productText(ReadableByteChannel channel) throws IOException;
+
+        /**
+         * @return the seller's index, to be used in SalesWriter.sale
+         */
+        int seller(String documentType, String documentNumber, String name, String lastName);
+
+        /**
+         * @return the product's index, to be used in SalesWriter.sale
+         */
+        int product(String id, String name, long priceCents);
+    }
+
+    /**
+     * Receives the sales of a run
+     */
+    interface SalesSink {
+        /**
+         * Ingests sales files through the processor's file pipeline, on its own workers
+         * @param files the files, per-seller files, shards and archives in any mix
+         * @throws IOException if a worker fails unexpectedly; unreadable files are only reported
+         */
+        void files(File[] files) throws IOException;
+
+        /**
+         * @return how many threads the processor was asked to ingest with
+         */
+        int workers();
+
+        /**
+         * @return a new writer, to be used by a single thread and closed once done
+         */
+        SalesWriter writer();
+    }
+
+    /**
+     * Receives sales on one thread; they count in the totals once it is closed
+     */
+    interface SalesWriter extends Closeable {
+        /**
+         * Parses one sales stream: a per-seller file, or a shard when the name says so
+         * @param source the name of the stream, for messages and the shard check
+         * @param channel the bytes of the stream; not closed here
+         * @param bytes the size of the stream, or -1 if unknown
+         */
+        void text(String source, ReadableByteChannel channel, long bytes);
+
+        /**
+         * Adds a sales line
+         * @param seller the seller's catalog index
+         * @param product the product's catalog index
+         * @param quantity the units sold
+         * @param day the epoch day of the sale, or SalesSegments.NO_DAY
+         */
+        void sale(int seller, int product, int quantity, int day);
+    }
+
+    /**
+     * A body run by every thread of inParallel
+     */
+    interface Task {
+        void run() throws IOException;
+    }
+
+    /**
+     * Runs a task on a number of threads and waits for all of them, for
+     * sources that push their records from several threads
+     * @param threads how many threads run the task
+     * @param task the task, usually a loop claiming work from a shared counter into its own writer
+     * @throws IOException if a thread fails; runtime exceptions, e.g. of strict mode, are rethrown as they are
+     */
+    static void inParallel(int threads, Task task) throws IOException {
+        if (threads <= 1) {
+            task.run();
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(pool.submit(() -> {
+                    task.run();
+                    return null;
+                }));
+            }
+            for (Future<Void> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Procesamiento interrumpido", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package entregaUno;
+
+/**
+ * Rejects a --range query that starts or ends inside a compacted segment,
+ * whose days can no longer be told apart. Thrown before any segment is read.
+ */
+final class SegmentRangeException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    SegmentRangeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,184 @@
+package entregaUno;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Interns seller keys ("documentType:documentNumber") into dense int indices.
+ * The usual key, a short document type followed by up to 15 digits, is packed
+ * into a single long (type code, digit count and numeric value) and looked up
+ * in an open-addressing table of primitive longs, so millions of sellers need
+ * neither Strings nor boxed entries. Keys that do not fit that shape fall back
+ * to a {@link ByteKeyIndex}; both share the same index space. Filled while the
+ * catalog loads, read-only afterwards.
+ */
+final class SellerKeyIndex implements CatalogIndex {
+
+    private static final int MAX_DIGITS = 15;
+    private static final int MAX_TYPES = 255;
+    private static final long EMPTY = 0L;
+
+    // Document types ("CC", "NIT"...) interned to small codes
+    private final ByteKeyIndex documentTypes = new ByteKeyIndex();
+    // Keys that cannot be packed, mapped to positions in fallbackIndices
+    private final ByteKeyIndex fallbackKeys = new ByteKeyIndex();
+    private int[] fallbackIndices = new int[16];
+
+    private long[] keys;
+    private int[] indices;
+    private int packedSize;
+    private int mask;
+    private int size;
+
+    public SellerKeyIndex() {
+        this(16);
+    }
+
+    public SellerKeyIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+        keys = new long[capacity];
+        indices = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Interns a seller key
+     * @param key the "documentType:documentNumber" key
+     * @return the seller's index, either new or the one it already had
+     */
+    public int add(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        return add(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Interns the seller key stored in bytes[from, to)
+     * @return the seller's index, either new or the one it already had
+     */
+    public int add(byte[] bytes, int from, int to) {
+        long packed = pack(bytes, from, to, true);
+        if (packed == EMPTY) {
+            int known = fallbackKeys.size();
+            int position = fallbackKeys.add(bytes, from, to);
+            if (fallbackKeys.size() == known) {
+                return fallbackIndices[position];
+            }
+            if (position == fallbackIndices.length) {
+                fallbackIndices = Arrays.copyOf(fallbackIndices, position * 2);
+            }
+            fallbackIndices[position] = size;
+            return size++;
+        }
+
+        int slot = find(packed);
+        if (keys[slot] != EMPTY) {
+            return indices[slot];
+        }
+        keys[slot] = packed;
+        indices[slot] = size;
+        if (++packedSize * 2 > keys.length) {
+            grow();
+        }
+        return size++;
+    }
+
+    /**
+     * Looks up the seller key stored in bytes[from, to)
+     * @return the seller's index, or NOT_FOUND
+     */
+    @Override
+    public int get(byte[] bytes, int from, int to) {
+        long packed = pack(bytes, from, to, false);
+        if (packed == EMPTY) {
+            int position = fallbackKeys.get(bytes, from, to);
+            return position == ByteKeyIndex.NOT_FOUND ? NOT_FOUND : fallbackIndices[position];
+        }
+        int slot = find(packed);
+        return keys[slot] != EMPTY ? indices[slot] : NOT_FOUND;
+    }
+
+    /**
+     * @return the number of distinct sellers
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Packs "TYPE:DIGITS" as [type code + 1 : 8 bits][digit count : 5 bits][value : 50 bits].
+     * Keeping the digit count distinguishes numbers with leading zeros.
+     * @param register whether an unseen document type may be assigned a code
+     * @return the packed key, or EMPTY if the key does not have the packable shape
+     */
+    private long pack(byte[] bytes, int from, int to, boolean register) {
+        int separator = -1;
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == ':') {
+                separator = i;
+                break;
+            }
+        }
+        int digits = to - separator - 1;
+        if (separator <= from || digits < 1 || digits > MAX_DIGITS) {
+            return EMPTY;
+        }
+
+        long value = 0;
+        for (int i = separator + 1; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return EMPTY;
+            }
+            value = value * 10 + digit;
+        }
+
+        int typeCode;
+        if (register) {
+            if (documentTypes.size() >= MAX_TYPES && documentTypes.get(bytes, from, separator) == ByteKeyIndex.NOT_FOUND) {
+                return EMPTY;
+            }
+            typeCode = documentTypes.add(bytes, from, separator);
+        } else {
+            typeCode = documentTypes.get(bytes, from, separator);
+            if (typeCode == ByteKeyIndex.NOT_FOUND) {
+                return EMPTY;
+            }
+        }
+        return ((long) (typeCode + 1) << 55) | ((long) digits << 50) | value;
+    }
+
+    private int find(long packed) {
+        int slot = mix(packed) & mask;
+        long key;
+        while ((key = keys[slot]) != EMPTY && key != packed) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldIndices = indices;
+        keys = new long[oldKeys.length * 2];
+        indices = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                indices[slot] = oldIndices[i];
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        // Finalizer of MurmurHash3, spreads sequential document numbers
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb93fe1a85ec3L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,207 @@
+package entregaUno;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Converts a directory of per-seller sales files into the sharded format read
+ * by SalesProcessor: a few large *.shard files, each holding the sales of many
+ * sellers as blocks whose header line is "@" followed by the seller key. The
+ * catalogs are copied unchanged. Compressed files and zip archives are read
+ * through SalesInput, so their decompressed sales are packed (one block per
+ * per-seller entry), and shards already in the input are copied as they are.
+ * The input is never modified, so the output directory must be a different
+ * one, otherwise every sale would be counted twice.
+ */
+public class ShardConverter {
+
+    private static final String DEFAULT_INPUT_DIR = "data/";
+    private static final String DEFAULT_OUTPUT_DIR = "data_shards/";
+    private static final long DEFAULT_SHARD_SIZE_MB = 256;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * @param args command line arguments: [--input=DIR] [--output=DIR] [--shard-size=MB]
+     */
+    public static void main(String[] args) {
+        String inputDir = DEFAULT_INPUT_DIR;
+        String outputDir = DEFAULT_OUTPUT_DIR;
+        long shardSize = DEFAULT_SHARD_SIZE_MB * 1024 * 1024;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--input=")) {
+                    inputDir = arg.substring("--input=".length());
+                } else if (arg.startsWith("--output=")) {
+                    outputDir = arg.substring("--output=".length());
+                } else if (arg.startsWith("--shard-size=")) {
+                    long megabytes = Long.parseLong(arg.substring("--shard-size=".length()));
+                    if (megabytes < 1) {
+                        throw new IllegalArgumentException("el tamaño de fragmento debe ser al menos 1 MB");
+                    }
+                    shardSize = megabytes * 1024 * 1024;
+                } else {
+                    throw new IllegalArgumentException("opción desconocida: " + arg);
+                }
+            }
+            if (Paths.get(inputDir).toAbsolutePath().normalize().equals(Paths.get(outputDir).toAbsolutePath().normalize())) {
+                throw new IllegalArgumentException("el directorio de salida debe ser distinto del de entrada");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Argumentos inválidos: " + e.getMessage());
+            System.err.println("Uso: java entregaUno.ShardConverter [--input=DIR] [--output=DIR] [--shard-size=MB]");
+            return;
+        }
+
+        try {
+            long start = System.nanoTime();
+            int[] counts = convert(Paths.get(inputDir), Paths.get(outputDir), shardSize);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("Archivos de ventas convertidos: " + counts[0] + " en " + counts[1]
+                + " fragmento(s) de " + outputDir + " (" + elapsedMillis + " ms)");
+        } catch (IOException e) {
+            System.err.println("Error al convertir los archivos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Copies the catalogs and packs the sales files of input into shards in output
+     * @param input the directory of per-seller sales files
+     * @param output the directory for the catalogs and shards
+     * @param shardSize the size after which a new shard is started
+     * @return the number of sales files packed and of shards written
+     * @throws IOException if a file cannot be read or written
+     */
+    static int[] convert(Path input, Path output, long shardSize) throws IOException {
+        Files.createDirectories(output);
+        for (String catalog : new String[] {"vendedores.txt", "productos.txt"}) {
+            Files.copy(input.resolve(catalog), output.resolve(catalog), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        File[] files = input.toFile().listFiles((dir, name) -> SalesProcessor.isSalesFileName(name));
+        if (files == null) {
+            throw new IOException("no se pudo listar " + input);
+        }
+        // Sorted by name, so the same input always gives the same shards
+        Arrays.sort(files);
+
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        int packed = 0;
+        int shards = 0;
+        ShardWriter shard = null;
+        try {
+            for (File file : files) {
+                if (!file.isFile()) {
+                    continue;
+                }
+                try (SalesInput sales = SalesInput.open(file)) {
+                    while (sales.next()) {
+                        if (shard == null || shard.size >= shardSize) {
+                            if (shard != null) {
+                                shard.publish();
+                            }
+                            shards++;
+                            shard = new ShardWriter(output, String.format("ventas_%05d%s", shards, SalesShards.EXTENSION));
+                        }
+                        // The stream is left open: it belongs to the input, which closes it
+                        InputStream in = Channels.newInputStream(sales.channel());
+                        if (shard.append(in, sales.source(), sales.isShard(), buffer)) {
+                            packed++;
+                        } else {
+                            System.out.println("Archivo vacío omitido: " + sales.source());
+                        }
+                    }
+                }
+            }
+            if (shard != null) {
+                shard.publish();
+                shard = null;
+            }
+        } finally {
+            if (shard != null) {
+                shard.discard();
+            }
+        }
+        return new int[] {packed, shards};
+    }
+
+    /**
+     * A shard being written to a hidden temporary file, renamed when complete
+     */
+    private static final class ShardWriter {
+        private final Path target;
+        private final Path temporary;
+        private final OutputStream out;
+        private long size;
+
+        ShardWriter(Path directory, String name) throws IOException {
+            this.target = directory.resolve(name);
+            this.temporary = directory.resolve("." + name + ".tmp");
+            this.out = Files.newOutputStream(temporary);
+        }
+
+        /**
+         * Appends a decompressed sales stream, ending with a line break so the
+         * next header starts a line. A per-seller file becomes a block: "@"
+         * before its seller line, then its contents; a shard is already made
+         * of blocks and is copied as it is.
+         * @param in the sales stream
+         * @param source the name of the stream, for messages
+         * @param sharded whether the stream is a shard
+         * @param buffer the copy buffer
+         * @return false if the stream was empty, in which case nothing is written
+         */
+        boolean append(InputStream in, String source, boolean sharded, byte[] buffer) throws IOException {
+            boolean lineStart = true;
+            int last = '\n';
+            boolean firstLine = true;
+            boolean empty = true;
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                if (read == 0) {
+                    continue;
+                }
+                if (empty && !sharded) {
+                    out.write(SalesShards.BLOCK_MARKER);
+                    size++;
+                }
+                empty = false;
+                for (int i = 0; i < read && !sharded; i++) {
+                    if (lineStart && !firstLine && buffer[i] == SalesShards.BLOCK_MARKER) {
+                        System.out.println("Línea que empieza con '@' en " + source
+                            + ": se leerá como inicio de otro vendedor");
+                    }
+                    if (buffer[i] == '\n') {
+                        firstLine = false;
+                    }
+                    lineStart = buffer[i] == '\n';
+                }
+                out.write(buffer, 0, read);
+                size += read;
+                last = buffer[read - 1];
+            }
+            if (last != '\n') {
+                out.write('\n');
+                size++;
+            }
+            return !empty;
+        }
+
+        void publish() throws IOException {
+            out.close();
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        void discard() throws IOException {
+            out.close();
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
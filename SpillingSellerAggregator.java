@@ -0,0 +1,577 @@
+package entregaUno;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Seller aggregation that keeps its state on disk, for seller catalogs that do
+ * not fit in the heap. Catalog rows and the totals of every sales file are
+ * hash-partitioned by seller key into run files. The number of partitions is
+ * chosen so one partition fits the memory budget; each partition is then
+ * aggregated and ranked on its own, and the sorted partition runs are merged
+ * k-way into the final ranking. All disk access is sequential appends and
+ * sequential reads. Ties are broken by catalog position, as in the in-memory
+ * report.
+ *
+ * A partition keeps its catalog rows as they are stored in the run, in a
+ * single byte array, indexed by primitive arrays and an open-addressing table,
+ * so its heap size is known from its row count and byte count before it is
+ * read: about the catalog text plus ROW_BYTES per seller.
+ */
+final class SpillingSellerAggregator implements AutoCloseable {
+
+    /*
+     * Heap bytes of a partition row besides its record: catalog index and
+     * total (8 + 8), record start and hash (4 + 4), up to 4 table slots of 4
+     * at the lowest load factor (16), and the packed sort keys, their work
+     * array and the resulting order while the partition is ranked (8 + 8 + 4)
+     */
+    private static final int ROW_BYTES = 60;
+    // Share of the budget a partition is sized for; the rest absorbs the hash skew between partitions
+    private static final double PARTITION_FILL = 0.75;
+    private static final int MAX_PARTITIONS = 4096;
+    // Records are stored with an unsigned short length, like DataOutputStream.writeUTF
+    private static final int MAX_RECORD_LENGTH = 0xFFFF;
+
+    private final Path workDirectory;
+    private final long memoryBudget;
+    private int partitions;
+    private int bufferSize;
+
+    private DataOutputStream[] salesRuns;
+    private long[] partitionRows;
+    private long catalogRows;
+    private long salesRecords;
+
+    /**
+     * @param workDirectory directory for the run files, removed on close
+     * @param memoryBudget bytes the aggregation may keep in memory
+     * @throws IOException if the work directory cannot be created
+     */
+    public SpillingSellerAggregator(Path workDirectory, long memoryBudget) throws IOException {
+        this.workDirectory = workDirectory;
+        this.memoryBudget = memoryBudget;
+        Files.createDirectories(workDirectory);
+    }
+
+    /**
+     * @return the number of partitions, known once the catalog is loaded
+     */
+    public int partitions() {
+        return partitions;
+    }
+
+    /**
+     * Splits the seller catalog ("type:number:name:last" lines) into partition
+     * files. The catalog is first scanned for its line count, which with its
+     * size gives the heap the partitions will need and so their number.
+     * @param sellersFile the seller catalog
+     * @return the number of catalog rows
+     * @throws IOException if there's an error reading or writing
+     */
+    public long loadCatalog(File sellersFile) throws IOException {
+        long lines = countLines(sellersFile);
+        // Each record takes its line plus a 2 byte length in place of the line break, at most
+        long heapBytes = sellersFile.length() + lines * (1 + ROW_BYTES);
+        long partitionCount = (long) Math.ceil(heapBytes / (memoryBudget * PARTITION_FILL));
+        partitions = (int) Math.max(1, Math.min(MAX_PARTITIONS, partitionCount));
+        // Output buffers must fit in the budget too
+        bufferSize = (int) Math.max(4096, Math.min(1 << 16, memoryBudget / (4L * partitions)));
+        partitionRows = new long[partitions];
+        salesRuns = new DataOutputStream[partitions];
+        for (int p = 0; p < partitions; p++) {
+            salesRuns[p] = openRun("ventas", p);
+        }
+
+        DataOutputStream[] catalogRuns = new DataOutputStream[partitions];
+        try {
+            for (int p = 0; p < partitions; p++) {
+                catalogRuns[p] = openRun("catalogo", p);
+            }
+            ByteRecordReader reader = new ByteRecordReader();
+            try (FileChannel channel = FileChannel.open(sellersFile.toPath(), StandardOpenOption.READ)) {
+                reader.reset(channel);
+                while (reader.nextLine()) {
+                    if (reader.splitFields(false) >= 4) {
+                        // The "documentType:documentNumber" key is the start of the line; the four
+                        // fields contain no ':', so the record is split again by its separators
+                        int keyFrom = reader.fieldStart(0);
+                        int keyTo = reader.fieldEnd(1);
+                        int partition = partition(reader.buffer(), keyFrom, keyTo);
+                        DataOutputStream out = catalogRuns[partition];
+                        out.writeLong(catalogRows++);
+                        writeRecord(out, reader.buffer(), keyFrom, reader.fieldEnd(3));
+                        partitionRows[partition]++;
+                    }
+                }
+            }
+        } finally {
+            for (DataOutputStream out : catalogRuns) {
+                if (out != null) {
+                    out.close();
+                }
+            }
+        }
+        return catalogRows;
+    }
+
+    private static long countLines(File file) throws IOException {
+        long lines = 0;
+        byte[] buffer = new byte[1 << 16];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+            }
+        }
+        // A last line without a line break
+        return lines + 1;
+    }
+
+    /**
+     * Appends the totals of one sales file to the run of its seller's partition
+     * @param key the bytes holding the raw seller key
+     * @param from first index, inclusive
+     * @param to last index, exclusive
+     * @param cents the amount sold in the file
+     * @param products the indices of the products sold in the file
+     * @param quantities the quantity of each of those products
+     * @param count the number of products
+     * @param source the file name, for rejections
+     * @param sharded whether the sales are a shard block, located by their seller key in rejections
+     * @param rejected the rejected lines, reported only if the seller is in the catalog
+     * @throws IOException if the run cannot be written
+     */
+    public synchronized void addFile(byte[] key, int from, int to, long cents,
+            int[] products, long[] quantities, int count,
+            String source, boolean sharded, List<RejectedLine> rejected) throws IOException {
+        DataOutputStream out = salesRuns[partition(key, from, to)];
+        writeRecord(out, key, from, to);
+        out.writeLong(cents);
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeInt(products[i]);
+            out.writeLong(quantities[i]);
+        }
+        out.writeUTF(source);
+        out.writeBoolean(sharded);
+        out.writeInt(rejected.size());
+        for (RejectedLine line : rejected) {
+            out.writeByte(line.reason.ordinal());
+            out.writeLong(line.line);
+            byte[] content = line.content.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(content.length);
+            out.write(content);
+        }
+        salesRecords++;
+    }
+    
+    /**
+     * Aggregates and ranks every partition, writing one sorted run per partition.
+     * Sales of sellers missing from the catalog are not counted, so their
+     * product quantities are taken back out of productTotals. As when the
+     * catalog is in memory, such a file is rejected as a whole, while the
+     * rejected lines of the other files are reported one by one.
+     * @param topK rows kept per partition (0 = all)
+     * @param productTotals quantities sold by product index, corrected in place
+     * @param rejections receives the unknown sellers and the rejected lines of the known ones
+     * @return the number of ranked rows available to the merge
+     * @throws IOException if there's an error reading or writing the runs, or reporting a rejection
+     */
+    public long rankPartitions(int topK, long[] productTotals, Rejections rejections) throws IOException {
+        for (DataOutputStream out : salesRuns) {
+            out.close();
+        }
+
+        long rows = 0;
+        for (int p = 0; p < partitions; p++) {
+            rows += rankPartition(p, topK, productTotals, rejections);
+        }
+        System.out.println("Agregación en disco: " + partitions + " partición(es), "
+            + catalogRows + " vendedores, " + salesRecords + " archivos de ventas");
+        return topK > 0 ? Math.min(rows, topK) : rows;
+    }
+
+    private long rankPartition(int partition, int topK, long[] productTotals, Rejections rejections) throws IOException {
+        // Catalog rows of this partition, in catalog order
+        File catalogRun = workDirectory.resolve("catalogo_" + partition + ".run").toFile();
+        int rows = Math.toIntExact(partitionRows[partition]);
+        PartitionRows table = new PartitionRows(rows, Math.toIntExact(catalogRun.length() - 8L * rows));
+        try (DataInputStream in = openRunForReading("catalogo", partition)) {
+            for (int i = 0; i < rows; i++) {
+                table.add(in.readLong(), in);
+            }
+        }
+
+        long[] totals = table.totals;
+        byte[] key = new byte[64];
+        try (DataInputStream in = openRunForReading("ventas", partition)) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readUnsignedShort();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length > key.length) {
+                    key = new byte[Math.max(length, key.length * 2)];
+                }
+                in.readFully(key, 0, length);
+                long cents = in.readLong();
+                int index = table.find(key, 0, length);
+                if (index >= 0) {
+                    totals[index] = Money.add(totals[index], cents);
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    int product = in.readInt();
+                    long quantity = in.readLong();
+                    if (index < 0) {
+                        productTotals[product] -= quantity;
+                    }
+                }
+                String source = in.readUTF();
+                byte[] blockKey = in.readBoolean() ? Arrays.copyOf(key, length) : null;
+                int rejected = in.readInt();
+                if (index < 0) {
+                    rejections.reject(source, blockKey, 1, Quarantine.Reason.UNKNOWN_SELLER,
+                        new String(key, 0, length, StandardCharsets.UTF_8));
+                }
+                for (int i = 0; i < rejected; i++) {
+                    Quarantine.Reason reason = Quarantine.Reason.values()[in.readUnsignedByte()];
+                    long line = in.readLong();
+                    byte[] content = new byte[in.readInt()];
+                    in.readFully(content);
+                    if (index >= 0) {
+                        rejections.reject(source, blockKey, line, reason, new String(content, StandardCharsets.UTF_8));
+                    }
+                }
+            }
+        }
+
+        // Repeated sellers leave the last rows unused; local indices follow
+        // catalog order, so ties rank exactly as in memory
+        long[] ranked = table.size() == rows ? totals : Arrays.copyOf(totals, table.size());
+        int[] order = topK > 0 ? Ranking.top(ranked, topK) : Ranking.sort(ranked);
+        try (DataOutputStream out = openRun("ranking", partition)) {
+            for (int index : order) {
+                out.writeLong(totals[index]);
+                out.writeLong(table.catalogIndices[index]);
+                table.writeRecord(index, out);
+            }
+        }
+        return order.length;
+    }
+
+    /**
+     * A sales line rejected while its seller was still unknown
+     */
+    static final class RejectedLine {
+        final Quarantine.Reason reason;
+        final long line;
+        final String content;
+
+        /**
+         * @param reason why the line is rejected
+         * @param line the line number within the file or shard block
+         * @param content the rejected line
+         */
+        RejectedLine(Quarantine.Reason reason, long line, String content) {
+            this.reason = reason;
+            this.line = line;
+            this.content = content;
+        }
+    }
+
+    /**
+     * Receives the rejections found while the partitions are ranked
+     */
+    interface Rejections {
+        /**
+         * @param source the file name
+         * @param blockKey the seller key of the shard block, or null outside shards
+         * @param line the line number within the file or block
+         * @param reason why the record is rejected
+         * @param content the rejected line or seller key
+         * @throws IOException if the rejection cannot be recorded
+         */
+        void reject(String source, byte[] blockKey, long line, Quarantine.Reason reason, String content) throws IOException;
+    }
+
+    /**
+     * Opens a k-way merge over the sorted partition runs
+     * @return the merge, positioned before the best seller
+     * @throws IOException if a run cannot be opened
+     */
+    public Merge openMerge() throws IOException {
+        return new Merge();
+    }
+
+    private int partition(byte[] key, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + key[i];
+        }
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        h ^= h >>> 16;
+        return Math.floorMod(h, partitions);
+    }
+
+    /**
+     * Writes bytes[from, to) preceded by its length as an unsigned short
+     */
+    private static void writeRecord(DataOutputStream out, byte[] bytes, int from, int to) throws IOException {
+        if (to - from > MAX_RECORD_LENGTH) {
+            throw new IOException("registro de vendedor demasiado largo: " + (to - from) + " bytes");
+        }
+        out.writeShort(to - from);
+        out.write(bytes, from, to - from);
+    }
+
+    private DataOutputStream openRun(String kind, int partition) throws IOException {
+        File file = workDirectory.resolve(kind + "_" + partition + ".run").toFile();
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), bufferSize));
+    }
+
+    private DataInputStream openRunForReading(String kind, int partition) throws IOException {
+        File file = workDirectory.resolve(kind + "_" + partition + ".run").toFile();
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(file), bufferSize));
+    }
+
+    /**
+     * Deletes the run files and the work directory
+     */
+    @Override
+    public void close() throws IOException {
+        if (salesRuns != null) {
+            for (DataOutputStream out : salesRuns) {
+                out.close();
+            }
+        }
+        File[] files = workDirectory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+        Files.deleteIfExists(workDirectory);
+    }
+
+    /**
+     * Merges the ranked partition runs: sellers come out by total sold, highest
+     * first, ties by catalog position
+     */
+    final class Merge implements AutoCloseable {
+        private final PriorityQueue<RunCursor> heads = new PriorityQueue<>((a, b) -> a.total != b.total
+            ? Long.compare(b.total, a.total)
+            : Long.compare(a.catalogIndex, b.catalogIndex));
+        private final List<RunCursor> cursors = new ArrayList<>();
+        private RunCursor current;
+
+        private Merge() throws IOException {
+            for (int p = 0; p < partitions; p++) {
+                RunCursor cursor = new RunCursor(openRunForReading("ranking", p));
+                cursors.add(cursor);
+                if (cursor.advance()) {
+                    heads.add(cursor);
+                }
+            }
+        }
+
+        /**
+         * Moves to the next seller in rank order
+         * @return false when every run is exhausted
+         */
+        public boolean next() throws IOException {
+            if (current != null && current.advance()) {
+                heads.add(current);
+            }
+            current = heads.poll();
+            return current != null;
+        }
+
+        public long total() {
+            return current.total;
+        }
+
+        /**
+         * @return document type, document number, name and last name of the current seller
+         */
+        public String[] fields() {
+            return current.fields;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (RunCursor cursor : cursors) {
+                cursor.in.close();
+            }
+        }
+    }
+
+    private static final class RunCursor {
+        private final DataInputStream in;
+        private long total;
+        private long catalogIndex;
+        private String[] fields;
+
+        RunCursor(DataInputStream in) {
+            this.in = in;
+        }
+
+        boolean advance() throws IOException {
+            try {
+                total = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            catalogIndex = in.readLong();
+            byte[] record = new byte[in.readUnsignedShort()];
+            in.readFully(record);
+            fields = new String(record, StandardCharsets.UTF_8).split(":", -1);
+            return true;
+        }
+    }
+
+    /**
+     * The catalog rows of one partition: the "type:number:name:last" records
+     * back to back in one array, each preceded by its 2 byte length, with
+     * per-row primitive arrays and an open-addressing table from the
+     * "type:number" key to the row. Sized up front, it never grows.
+     */
+    private static final class PartitionRows {
+        private final byte[] records;
+        private final int[] starts;
+        private final int[] hashes;
+        final long[] catalogIndices;
+        final long[] totals;
+        // Row index + 1 of each slot, 0 when empty
+        private final int[] slots;
+        private final int mask;
+        private int size;
+        private int end;
+
+        PartitionRows(int rows, int recordBytes) {
+            records = new byte[recordBytes];
+            starts = new int[rows];
+            hashes = new int[rows];
+            catalogIndices = new long[rows];
+            totals = new long[rows];
+            int capacity = Integer.highestOneBit(Math.max(rows, 4) * 2 - 1) << 1;
+            slots = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        /**
+         * Reads the next record of the catalog run. A repeated seller keeps
+         * its first position and its last data.
+         */
+        void add(long catalogIndex, DataInputStream in) throws IOException {
+            int start = end;
+            in.readFully(records, start, 2);
+            int length = recordLength(start);
+            in.readFully(records, start + 2, length);
+            end = start + 2 + length;
+
+            int keyTo = keyEnd(start);
+            int hash = hash(records, start + 2, keyTo);
+            int slot = slot(records, start + 2, keyTo, hash);
+            if (slots[slot] != 0) {
+                starts[slots[slot] - 1] = start;
+                return;
+            }
+            starts[size] = start;
+            hashes[size] = hash;
+            catalogIndices[size] = catalogIndex;
+            slots[slot] = ++size;
+        }
+
+        /**
+         * @return the number of distinct sellers read
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return the row of the key stored in bytes[from, to), or -1
+         */
+        int find(byte[] bytes, int from, int to) {
+            return slots[slot(bytes, from, to, hash(bytes, from, to))] - 1;
+        }
+
+        /**
+         * Writes the record of a row with its length, as it was read
+         */
+        void writeRecord(int row, DataOutputStream out) throws IOException {
+            int start = starts[row];
+            out.write(records, start, 2 + recordLength(start));
+        }
+
+        /**
+         * @return the slot holding the key, or the empty slot where it would go
+         */
+        private int slot(byte[] bytes, int from, int to, int hash) {
+            int slot = hash & mask;
+            int entry;
+            while ((entry = slots[slot]) != 0) {
+                int start = starts[entry - 1];
+                if (hashes[entry - 1] == hash
+                        && Arrays.equals(records, start + 2, keyEnd(start), bytes, from, to)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private int recordLength(int start) {
+            return (records[start] & 0xff) << 8 | (records[start + 1] & 0xff);
+        }
+
+        /**
+         * @return the end of the "type:number" key: the second ':' of the record
+         */
+        private int keyEnd(int start) {
+            int i = start + 2;
+            while (records[i] != ':') {
+                i++;
+            }
+            i++;
+            while (records[i] != ':') {
+                i++;
+            }
+            return i;
+        }
+
+        private static int hash(byte[] bytes, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) {
+                h = 31 * h + bytes[i];
+            }
+            // Spread the high bits, the table index only uses the low ones
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package entregaUno;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Compares a JMH JSON result file (-rf json) with a stored baseline. Scores
+ * are matched by benchmark, mode and parameters; throughput must not drop and
+ * time per operation and normalized allocation (-prof gc) must not grow by
+ * more than the threshold. When the baseline does not exist yet, the results
+ * are stored as the new baseline.
+ */
+public class BaselineCompare {
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+    /**
+     * @param args command line arguments: results.json baseline.json [--threshold=PCT] [--update]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: java entregaUno.BaselineCompare resultados.json linea_base.json [--threshold=PCT] [--update]");
+            System.exit(2);
+        }
+        Path results = Paths.get(args[0]);
+        Path baseline = Paths.get(args[1]);
+        double threshold = DEFAULT_THRESHOLD_PERCENT;
+        boolean update = false;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].startsWith("--threshold=")) {
+                threshold = Double.parseDouble(args[i].substring("--threshold=".length()));
+            } else if (args[i].equals("--update")) {
+                update = true;
+            } else {
+                System.err.println("Opción desconocida: " + args[i]);
+                System.exit(2);
+            }
+        }
+
+        if (update || !Files.exists(baseline)) {
+            Path directory = baseline.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Files.copy(results, baseline, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Línea base guardada en " + baseline);
+            return;
+        }
+
+        Map<String, Score> current = readScores(results);
+        Map<String, Score> reference = readScores(baseline);
+        int regressions = 0;
+        System.out.printf("%-80s %14s %14s %9s%n", "Benchmark", "Línea base", "Actual", "Cambio");
+        for (Map.Entry<String, Score> entry : new TreeMap<>(current).entrySet()) {
+            Score before = reference.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-80s %14s %14.3f %9s%n", entry.getKey(), "-", entry.getValue().value, "nuevo");
+                continue;
+            }
+            Score after = entry.getValue();
+            double change = (after.value - before.value) * 100 / before.value;
+            // Positive when the result got worse
+            double worse = after.higherIsBetter ? -change : change;
+            boolean regression = worse > threshold;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-80s %14.3f %14.3f %+8.1f%%%s%n", entry.getKey(), before.value, after.value, change,
+                regression ? "  REGRESIÓN" : "");
+        }
+
+        if (regressions > 0) {
+            System.out.println(regressions + " resultado(s) empeoraron más de " + threshold + "%");
+            System.exit(1);
+        }
+        System.out.println("Sin regresiones por encima de " + threshold + "%");
+    }
+
+    /**
+     * Reads the primary score and the normalized allocation of every benchmark in a JMH JSON file
+     */
+    private static Map<String, Score> readScores(Path file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JsonArray runs = JsonParser.parseReader(reader).getAsJsonArray();
+            for (JsonElement element : runs) {
+                JsonObject run = element.getAsJsonObject();
+                String mode = run.get("mode").getAsString();
+                String key = run.get("benchmark").getAsString().replace("entregaUno.", "") + " " + mode + params(run);
+
+                JsonObject primary = run.getAsJsonObject("primaryMetric");
+                scores.put(key, new Score(primary.get("score").getAsDouble(), mode.equals("thrpt")));
+
+                JsonObject secondary = run.getAsJsonObject("secondaryMetrics");
+                if (secondary != null && secondary.has(ALLOCATION_METRIC)) {
+                    double bytes = secondary.getAsJsonObject(ALLOCATION_METRIC).get("score").getAsDouble();
+                    scores.put(key + " " + ALLOCATION_METRIC, new Score(bytes, false));
+                }
+            }
+        }
+        return scores;
+    }
+
+    private static String params(JsonObject run) {
+        JsonObject params = run.getAsJsonObject("params");
+        if (params == null) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, JsonElement> param : new TreeMap<>(params.asMap()).entrySet()) {
+            builder.append(' ').append(param.getKey()).append('=').append(param.getValue().getAsString());
+        }
+        return builder.toString();
+    }
+
+    private static final class Score {
+        private final double value;
+        private final boolean higherIsBetter;
+
+        Score(double value, boolean higherIsBetter) {
+            this.value = value;
+            this.higherIsBetter = higherIsBetter;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package entregaUno;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark datasets generated with GenerateInfoFiles from a fixed seed, one
+ * directory per scale. A dataset is generated once and reused by later runs
+ * and forks; a marker file next to the directory is written last, so an
+ * interrupted generation is started over.
+ */
+final class BenchmarkDatasets {
+
+    // Overrides the dataset root, by default target/datasets
+    private static final String ROOT_PROPERTY = "benchmark.datasets";
+    private static final String COMPLETE_SUFFIX = ".completo";
+
+    // Dataset shape: sales files list 1 to 199 products (about 100 lines per file)
+    static final int PRODUCTS = 1000;
+    static final int MAX_SALES_PER_SELLER = 199;
+    static final int AVERAGE_LINES_PER_SELLER = (1 + MAX_SALES_PER_SELLER) / 2;
+    // Fixed seed, so every machine benchmarks the same files
+    static final long SEED = 20240601L;
+
+    private BenchmarkDatasets() {
+    }
+
+    /**
+     * Returns the directory of the dataset with about saleLines sales lines,
+     * generating it if needed
+     * @param saleLines the scale of the dataset
+     * @return the dataset directory, ending in '/'
+     * @throws IOException if the dataset cannot be generated
+     */
+    static String prepare(int saleLines) throws IOException {
+        Path root = Paths.get(System.getProperty(ROOT_PROPERTY, "target/datasets"));
+        Path directory = root.resolve("lineas_" + saleLines);
+        Path marker = root.resolve("lineas_" + saleLines + COMPLETE_SUFFIX);
+        if (!Files.exists(marker)) {
+            deleteRecursively(directory);
+            Files.createDirectories(directory);
+            int sellers = Math.max(1, saleLines / AVERAGE_LINES_PER_SELLER);
+            GenerateInfoFiles.Settings settings = new GenerateInfoFiles.Settings();
+            settings.seed = SEED;
+            settings.maxLines = MAX_SALES_PER_SELLER;
+            GenerateInfoFiles.generate(directory + File.separator, sellers, PRODUCTS, settings);
+            Files.createFile(marker);
+        }
+        return directory + File.separator;
+    }
+
+    /**
+     * Creates an empty directory for the reports of a benchmark
+     * @param name the benchmark name
+     * @return the directory, ending in '/'
+     * @throws IOException if the directory cannot be created
+     */
+    static String reportsDirectory(String name) throws IOException {
+        Path root = Paths.get(System.getProperty(ROOT_PROPERTY, "target/datasets"));
+        Path directory = root.resolve("reportes_" + name);
+        deleteRecursively(directory);
+        Files.createDirectories(directory);
+        return directory + File.separator;
+    }
+
+    /**
+     * @return whether a file of the dataset is a sales file
+     */
+    static boolean isSalesFile(File file) {
+        String name = file.getName();
+        return !name.equals("vendedores.txt") && !name.equals("productos.txt");
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted((a, b) -> b.compareTo(a))::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package entregaUno;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+
+/**
+ * Compares the heap retained by the seller and product catalogs in the two
+ * storage backends of SalesProcessor: one object per record with a String per
+ * attribute, and the struct-of-arrays CompactCatalog. Each backend loads the
+ * catalogs of the input directory and the live heap is measured after a full
+ * GC before and after; the figure includes the key indices, which are the same
+ * in both. Run it with a heap large enough for the object graph.
+ */
+public class CatalogFootprint {
+
+    private static final String INPUT_DIR = "data/";
+
+    /**
+     * Prints the retained heap of each backend
+     * @param args command line arguments: [inputDir] (default data/)
+     */
+    public static void main(String[] args) throws IOException {
+        String inputDir = args.length >= 1 ? args[0] : INPUT_DIR;
+        if (!inputDir.endsWith("/")) {
+            inputDir += "/";
+        }
+
+        // Load both once so class loading and JIT do not count against the first one
+        load(inputDir, false);
+        load(inputDir, true);
+
+        long objects = measure(inputDir, false);
+        long compact = measure(inputDir, true);
+        int sellers = load(inputDir, false).sellers().size();
+
+        System.out.println("Vendedores: " + sellers);
+        print("Objetos", objects, sellers);
+        print("Compacto", compact, sellers);
+        System.out.printf("Reducción: %.1fx%n", (double) objects / Math.max(compact, 1));
+    }
+
+    private static long measure(String inputDir, boolean compact) throws IOException {
+        long before = liveHeap();
+        SalesProcessor processor = load(inputDir, compact);
+        long after = liveHeap();
+        Reference.reachabilityFence(processor);
+        return after - before;
+    }
+
+    private static SalesProcessor load(String inputDir, boolean compact) throws IOException {
+        SalesProcessor processor = new SalesProcessor(inputDir, inputDir);
+        if (compact) {
+            processor.useCompactStorage();
+        }
+        // The processor reports progress on the console; keep it out of the comparison
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            processor.loadSellers();
+            processor.loadProducts();
+        } finally {
+            System.setOut(console);
+        }
+        return processor;
+    }
+
+    private static long liveHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void print(String label, long bytes, int sellers) {
+        System.out.printf("%-10s %,10.1f MB %8.1f bytes/vendedor%n",
+            label, bytes / (1024.0 * 1024.0), (double) bytes / Math.max(sellers, 1));
+    }
+}
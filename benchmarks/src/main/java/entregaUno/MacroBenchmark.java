@@ -0,0 +1,370 @@
+package entregaUno;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * End-to-end benchmark of the whole pipeline at production scale: for every
+ * scale profile, GenerateInfoFiles writes a dataset and SalesProcessor loads,
+ * ingests and reports it, each in a fresh JVM (see PipelineStep) started on
+ * an empty working directory, so no run inherits a warm JIT, heap, page cache
+ * of its own outputs or leftovers of another profile. Each profile is run a
+ * number of times and every dimension keeps its median: total wall time
+ * (both JVMs, startup included), the time of each step and of each processor
+ * phase, peak RSS and heap, and the collector pauses.
+ *
+ * The results are written as JSON and compared with a stored baseline like
+ * BaselineCompare does for the microbenchmarks: every dimension is lower is
+ * better, and the run exits with 1 if any of them grows by more than the
+ * threshold. Changes under an absolute floor are ignored, so a 3 ms pause
+ * that becomes 5 ms does not fail the build.
+ */
+public class MacroBenchmark {
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+    // Smaller changes are noise whatever their percentage
+    private static final double MILLIS_FLOOR = 25;
+    private static final double MEGABYTES_FLOOR = 8;
+    private static final double PAUSES_FLOOR = 5;
+
+    /**
+     * A scale of the matrix: GenerateInfoFiles counts, lines per sales file and product skew
+     */
+    static final class Profile {
+        final String name;
+        final int sellers;
+        final int products;
+        final int minLines;
+        final int maxLines;
+        final double zipf;
+
+        Profile(String name, int sellers, int products, int minLines, int maxLines, double zipf) {
+            this.name = name;
+            this.sellers = sellers;
+            this.products = products;
+            this.minLines = minLines;
+            this.maxLines = maxLines;
+            this.zipf = zipf;
+        }
+
+        /**
+         * Reads a custom profile, NAME:SELLERS:PRODUCTS:MIN-MAX[:ZIPF]
+         * @throws IllegalArgumentException if the spec is malformed
+         */
+        static Profile parse(String spec) {
+            String[] fields = spec.split(":");
+            if (fields.length < 4 || fields[3].indexOf('-') < 0) {
+                throw new IllegalArgumentException("perfil inválido (NOMBRE:VENDEDORES:PRODUCTOS:MIN-MAX[:ZIPF]): " + spec);
+            }
+            String[] lines = fields[3].split("-");
+            return new Profile(fields[0], Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                Integer.parseInt(lines[0]), Integer.parseInt(lines[1]), fields.length > 4 ? Double.parseDouble(fields[4]) : 0);
+        }
+    }
+
+    // From 1k to 1M sellers and 10 to 100k products. GenerateInfoFiles draws the line count of a file
+    // uniformly, so the skew comes from wide line ranges and Zipf product popularity.
+    static final List<Profile> PROFILES = List.of(
+        new Profile("minimo", 1_000, 10, 1, 5, 0),
+        new Profile("medio", 10_000, 1_000, 1, 50, 1.0),
+        new Profile("catalogo-grande", 100_000, 100_000, 1, 20, 0.8),
+        new Profile("sesgado", 100_000, 10_000, 1, 400, 1.3),
+        new Profile("maximo", 1_000_000, 1_000, 1, 10, 1.1));
+
+    /**
+     * @param args command line arguments: [--profiles=LIST] profile names or NAME:SELLERS:PRODUCTS:MIN-MAX[:ZIPF]
+     *             specs (all by default), [--repetitions=N] runs per profile, [--threads=N] threads of both steps
+     *             (0 = all cores), [--heap=SIZE] -Xmx of the child JVMs, [--work=DIR] working directory,
+     *             [--results=FILE] results file, [--baseline=FILE] baseline to compare with or create,
+     *             [--threshold=PCT] allowed growth, [--update] to store the results as the new baseline
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        List<Profile> profiles = PROFILES;
+        int repetitions = 3;
+        int threads = 0;
+        String heap = "4g";
+        Path work = Paths.get("target/macro");
+        Path results = null;
+        Path baseline = Paths.get("baseline/macro_linea_base.json");
+        double threshold = DEFAULT_THRESHOLD_PERCENT;
+        boolean update = false;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--profiles=")) {
+                    profiles = selectProfiles(arg.substring("--profiles=".length()));
+                } else if (arg.startsWith("--repetitions=")) {
+                    repetitions = Integer.parseInt(arg.substring("--repetitions=".length()));
+                    if (repetitions <= 0) {
+                        throw new IllegalArgumentException("el número de repeticiones debe ser positivo: " + repetitions);
+                    }
+                } else if (arg.startsWith("--threads=")) {
+                    threads = Integer.parseInt(arg.substring("--threads=".length()));
+                } else if (arg.startsWith("--heap=")) {
+                    heap = arg.substring("--heap=".length());
+                } else if (arg.startsWith("--work=")) {
+                    work = Paths.get(arg.substring("--work=".length()));
+                } else if (arg.startsWith("--results=")) {
+                    results = Paths.get(arg.substring("--results=".length()));
+                } else if (arg.startsWith("--baseline=")) {
+                    baseline = Paths.get(arg.substring("--baseline=".length()));
+                } else if (arg.startsWith("--threshold=")) {
+                    threshold = Double.parseDouble(arg.substring("--threshold=".length()));
+                } else if (arg.equals("--update")) {
+                    update = true;
+                } else {
+                    throw new IllegalArgumentException("opción desconocida: " + arg);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error en los argumentos: " + e.getMessage());
+            System.err.println("Uso: java -cp target/benchmarks.jar entregaUno.MacroBenchmark [--profiles=LISTA] [--repetitions=N]"
+                + " [--threads=N] [--heap=TAMAÑO] [--work=DIR] [--results=ARCHIVO] [--baseline=ARCHIVO] [--threshold=PCT] [--update]");
+            System.exit(2);
+        }
+        if (results == null) {
+            results = work.resolve("resultados.json");
+        }
+
+        JsonObject report = new JsonObject();
+        report.addProperty("java", System.getProperty("java.version"));
+        report.addProperty("cpus", Runtime.getRuntime().availableProcessors());
+        report.addProperty("heap", heap);
+        report.addProperty("threads", threads);
+        report.addProperty("repetitions", repetitions);
+        JsonObject measured = new JsonObject();
+        report.add("profiles", measured);
+        for (Profile profile : profiles) {
+            List<Map<String, Double>> runs = new ArrayList<>();
+            for (int r = 1; r <= repetitions; r++) {
+                System.out.println("Perfil " + profile.name + " (" + profile.sellers + " vendedores, " + profile.products
+                    + " productos, líneas " + profile.minLines + "-" + profile.maxLines + "), ejecución " + r + " de " + repetitions);
+                Map<String, Double> run;
+                try {
+                    run = runPipeline(profile, work.resolve(profile.name), threads, heap);
+                } catch (IOException e) {
+                    // A failed step is not a regression: exit 2 like a usage error
+                    System.err.println("Error en el perfil " + profile.name + ": " + e.getMessage());
+                    System.exit(2);
+                    return;
+                }
+                System.out.printf("  total %.0f ms, RSS pico %.0f MB, pausas GC %.0f ms%n",
+                    run.get("totalMillis"), run.getOrDefault("peakRssMb", -1.0), run.get("gcPauseMillis"));
+                runs.add(run);
+            }
+            JsonObject entry = new JsonObject();
+            entry.addProperty("sellers", profile.sellers);
+            entry.addProperty("products", profile.products);
+            entry.addProperty("lines", profile.minLines + "-" + profile.maxLines);
+            entry.addProperty("zipf", profile.zipf);
+            JsonObject metrics = new JsonObject();
+            for (Map.Entry<String, Double> dimension : median(runs).entrySet()) {
+                metrics.addProperty(dimension.getKey(), dimension.getValue());
+            }
+            entry.add("metrics", metrics);
+            measured.add(profile.name, entry);
+        }
+
+        Files.createDirectories(results.toAbsolutePath().getParent());
+        try (Writer out = Files.newBufferedWriter(results, StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(report, out);
+        }
+        System.out.println("Resultados guardados en " + results);
+
+        if (update || !Files.exists(baseline)) {
+            Files.createDirectories(baseline.toAbsolutePath().getParent());
+            Files.copy(results, baseline, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Línea base guardada en " + baseline);
+            return;
+        }
+        if (compare(report, read(baseline), threshold) > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static List<Profile> selectProfiles(String list) {
+        List<Profile> selected = new ArrayList<>();
+        for (String name : list.split(",")) {
+            if (name.contains(":")) {
+                selected.add(Profile.parse(name));
+                continue;
+            }
+            Profile found = PROFILES.stream().filter(profile -> profile.name.equals(name)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("perfil desconocido: " + name));
+            selected.add(found);
+        }
+        return selected;
+    }
+
+    /**
+     * Runs generation and processing of one profile, each in its own JVM, on an emptied directory
+     * @return the dimensions of the run
+     * @throws IOException if a step fails or its outputs are missing
+     */
+    private static Map<String, Double> runPipeline(Profile profile, Path directory, int threads, String heap)
+            throws IOException, InterruptedException {
+        BenchmarkDatasets.deleteRecursively(directory);
+        Files.createDirectories(directory);
+        Path generateMetrics = directory.resolve("paso_generar.json");
+        Path processMetrics = directory.resolve("paso_procesar.json");
+
+        long start = System.nanoTime();
+        runStep(directory, heap, generateMetrics, "generar", String.valueOf(profile.sellers), String.valueOf(profile.products),
+            "--seed=" + BenchmarkDatasets.SEED, "--threads=" + threads,
+            "--lines=" + profile.minLines + "-" + profile.maxLines, "--zipf=" + profile.zipf);
+        runStep(directory, heap, processMetrics, "procesar", "--threads=" + threads);
+        long totalMillis = (System.nanoTime() - start) / 1_000_000;
+
+        Path summary = directory.resolve("reports/resumen_ejecucion.json");
+        if (!Files.exists(directory.resolve("reports/reporte_vendedores.csv")) || !Files.exists(summary)) {
+            throw new IOException("el procesamiento del perfil " + profile.name + " no generó sus reportes; ver " + directory);
+        }
+        JsonObject generate = read(generateMetrics);
+        JsonObject process = read(processMetrics);
+        JsonObject phases = read(summary).getAsJsonObject("phasesMillis");
+
+        Map<String, Double> run = new LinkedHashMap<>();
+        run.put("totalMillis", (double) totalMillis);
+        run.put("generateMillis", generate.get("wallMillis").getAsDouble());
+        run.put("processMillis", process.get("wallMillis").getAsDouble());
+        for (Map.Entry<String, JsonElement> phase : phases.entrySet()) {
+            // catalogLoadMillis, ingestionMillis, sellerReportMillis...
+            run.put(phase.getKey() + "Millis", phase.getValue().getAsDouble());
+        }
+        long rss = Math.max(generate.get("peakRssBytes").getAsLong(), process.get("peakRssBytes").getAsLong());
+        if (rss >= 0) {
+            run.put("peakRssMb", rss / (1024.0 * 1024.0));
+        }
+        run.put("peakHeapMb", Math.max(generate.get("peakHeapBytes").getAsLong(), process.get("peakHeapBytes").getAsLong())
+            / (1024.0 * 1024.0));
+        run.put("gcPauses", generate.get("gcPauses").getAsDouble() + process.get("gcPauses").getAsDouble());
+        run.put("gcPauseMillis", generate.get("gcPauseMillis").getAsDouble() + process.get("gcPauseMillis").getAsDouble());
+        run.put("gcMaxPauseMillis", Math.max(generate.get("gcMaxPauseMillis").getAsDouble(),
+            process.get("gcMaxPauseMillis").getAsDouble()));
+        return run;
+    }
+
+    /**
+     * Starts a JVM on the benchmark classpath in the profile directory, where
+     * both programs use their default data/ and reports/ directories
+     */
+    private static void runStep(Path directory, String heap, Path metrics, String step, String... stepArgs)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(Arrays.asList(
+            Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+            "-Xmx" + heap,
+            "-cp", absoluteClassPath(),
+            PipelineStep.class.getName(),
+            metrics.toAbsolutePath().toString(),
+            step));
+        command.addAll(Arrays.asList(stepArgs));
+        Process process = new ProcessBuilder(command)
+            .directory(directory.toFile())
+            .redirectErrorStream(true)
+            .redirectOutput(directory.resolve("salida_" + step + ".log").toFile())
+            .start();
+        int exit = process.waitFor();
+        if (exit != 0 || !Files.exists(metrics)) {
+            throw new IOException("el paso " + step + " terminó con código " + exit + "; ver " + directory.resolve("salida_" + step + ".log"));
+        }
+    }
+
+    /**
+     * @return this JVM's classpath with absolute entries, valid from the profile directory
+     */
+    private static String absoluteClassPath() {
+        StringBuilder classPath = new StringBuilder();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (classPath.length() > 0) {
+                classPath.append(File.pathSeparator);
+            }
+            classPath.append(new File(entry).getAbsolutePath());
+        }
+        return classPath.toString();
+    }
+
+    /**
+     * @return the median of every dimension over the runs
+     */
+    private static Map<String, Double> median(List<Map<String, Double>> runs) {
+        Map<String, Double> medians = new LinkedHashMap<>();
+        for (String dimension : runs.get(0).keySet()) {
+            double[] values = runs.stream().mapToDouble(run -> run.get(dimension)).sorted().toArray();
+            int middle = values.length / 2;
+            medians.put(dimension, values.length % 2 == 1 ? values[middle] : (values[middle - 1] + values[middle]) / 2);
+        }
+        return medians;
+    }
+
+    /**
+     * Prints every dimension of the profiles found in both files
+     * @return the number of regressions
+     */
+    private static int compare(JsonObject current, JsonObject reference, double threshold) {
+        JsonObject before = reference.getAsJsonObject("profiles");
+        int regressions = 0;
+        System.out.printf("%-40s %14s %14s %9s%n", "Dimensión", "Línea base", "Actual", "Cambio");
+        for (Map.Entry<String, JsonElement> profile : current.getAsJsonObject("profiles").entrySet()) {
+            JsonObject after = profile.getValue().getAsJsonObject().getAsJsonObject("metrics");
+            JsonObject baseline = before.has(profile.getKey())
+                ? before.getAsJsonObject(profile.getKey()).getAsJsonObject("metrics") : new JsonObject();
+            for (Map.Entry<String, JsonElement> dimension : after.entrySet()) {
+                String key = profile.getKey() + " " + dimension.getKey();
+                double value = dimension.getValue().getAsDouble();
+                if (!baseline.has(dimension.getKey())) {
+                    System.out.printf("%-40s %14s %14.1f %9s%n", key, "-", value, "nuevo");
+                    continue;
+                }
+                double old = baseline.get(dimension.getKey()).getAsDouble();
+                // From zero any growth is infinite; the floor still decides
+                double change = old != 0 ? (value - old) * 100 / old : value > 0 ? Double.POSITIVE_INFINITY : 0;
+                boolean regression = change > threshold && value - old > floor(dimension.getKey());
+                if (regression) {
+                    regressions++;
+                }
+                System.out.printf("%-40s %14.1f %14.1f %+8.1f%%%s%n", key, old, value, change, regression ? "  REGRESIÓN" : "");
+            }
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " dimensión(es) empeoraron más de " + threshold + "%");
+        } else {
+            System.out.println("Sin regresiones por encima de " + threshold + "%");
+        }
+        return regressions;
+    }
+
+    private static double floor(String dimension) {
+        if (dimension.endsWith("Millis")) {
+            return MILLIS_FLOOR;
+        }
+        if (dimension.endsWith("Mb")) {
+            return MEGABYTES_FLOOR;
+        }
+        if (dimension.endsWith("Pauses")) {
+            return PAUSES_FLOOR;
+        }
+        return 0;
+    }
+
+    private static JsonObject read(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(reader).getAsJsonObject();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package entregaUno;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the String based line parsing used originally by SalesProcessor
+ * (BufferedReader, split, Integer.parseInt) with the byte level
+ * ByteRecordReader. Each operation parses one per-seller sales file, cycling
+ * through the dataset: both variants resolve the product and add up the
+ * quantities. Run with "-prof gc" for the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ParserBenchmark {
+
+    // Approximate number of sales lines in the dataset
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int saleLines;
+
+    private File[] salesFiles;
+    private int nextFile;
+
+    private final Map<String, Integer> productIndex = new HashMap<>();
+    private final ByteKeyIndex productKeys = new ByteKeyIndex();
+    private final ByteRecordReader reader = new ByteRecordReader();
+
+    @Setup
+    public void prepare() throws IOException {
+        String dataDirectory = BenchmarkDatasets.prepare(saleLines);
+        salesFiles = new File(dataDirectory).listFiles(BenchmarkDatasets::isSalesFile);
+
+        try (BufferedReader catalog = Files.newBufferedReader(Paths.get(dataDirectory, "productos.txt"), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = catalog.readLine()) != null) {
+                String id = line.split(":")[0];
+                productIndex.put(id, productIndex.size());
+                productKeys.add(id);
+            }
+        }
+    }
+
+    @Benchmark
+    public long parseWithStrings() throws IOException {
+        long total = 0;
+        try (BufferedReader lines = Files.newBufferedReader(nextFile().toPath(), StandardCharsets.UTF_8)) {
+            lines.readLine();
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (line.endsWith(";")) {
+                    line = line.substring(0, line.length() - 1);
+                }
+                String[] parts = line.split(":");
+                if (parts.length >= 2 && productIndex.containsKey(parts[0])) {
+                    total += Integer.parseInt(parts[1]);
+                }
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long parseWithBytes() throws IOException {
+        long total = 0;
+        try (FileChannel channel = FileChannel.open(nextFile().toPath(), StandardOpenOption.READ)) {
+            reader.reset(channel);
+            reader.nextLine();
+            while (reader.nextLine()) {
+                if (reader.splitFields(true) >= 2
+                        && productKeys.get(reader.buffer(), reader.fieldStart(0), reader.fieldEnd(0)) != CatalogIndex.NOT_FOUND) {
+                    total += reader.parseIntField(1);
+                }
+            }
+        }
+        return total;
+    }
+
+    private File nextFile() {
+        File file = salesFiles[nextFile];
+        nextFile = nextFile + 1 == salesFiles.length ? 0 : nextFile + 1;
+        return file;
+    }
+}
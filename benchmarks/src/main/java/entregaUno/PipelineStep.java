@@ -0,0 +1,127 @@
+package entregaUno;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import com.google.gson.JsonObject;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * One step of the macro benchmark pipeline, run by MacroBenchmark in a fresh
+ * JVM: calls the main method of GenerateInfoFiles or SalesProcessor and then
+ * writes what the step cost to a small JSON file. The JVM measures itself,
+ * so nothing is lost between the last sample and the exit:
+ * - the peak resident set size, VmHWM of /proc/self/status (Linux only, -1 elsewhere);
+ * - the peak heap, the heap in use right before each collection, or at the end;
+ * - the collector pauses, from the GC notifications: count, total and longest.
+ *   Concurrent cycles run beside the application and are not counted.
+ */
+public class PipelineStep {
+
+    private final Set<String> heapPools = new HashSet<>();
+    private long peakHeapBytes;
+    private long pauses;
+    private long pauseMillis;
+    private long maxPauseMillis;
+
+    /**
+     * @param args command line arguments: metrics.json generar|procesar [arguments of the step's main]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || !(args[1].equals("generar") || args[1].equals("procesar"))) {
+            System.err.println("Uso: java entregaUno.PipelineStep metricas.json generar|procesar [argumentos]");
+            System.exit(2);
+        }
+        PipelineStep step = new PipelineStep();
+        step.listen();
+        String[] stepArgs = Arrays.copyOfRange(args, 2, args.length);
+
+        long start = System.nanoTime();
+        if (args[1].equals("generar")) {
+            GenerateInfoFiles.main(stepArgs);
+        } else {
+            SalesProcessor.main(stepArgs);
+        }
+        long wallMillis = (System.nanoTime() - start) / 1_000_000;
+
+        step.write(Paths.get(args[0]), wallMillis);
+    }
+
+    private void listen() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+            }
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+                if (notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                    recordCollection(GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()));
+                }
+            }, null, null);
+        }
+    }
+
+    private synchronized void recordCollection(GarbageCollectionNotificationInfo info) {
+        long heapBefore = 0;
+        for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageBeforeGc().entrySet()) {
+            if (heapPools.contains(pool.getKey())) {
+                heapBefore += pool.getValue().getUsed();
+            }
+        }
+        peakHeapBytes = Math.max(peakHeapBytes, heapBefore);
+        if (info.getGcName().contains("Concurrent")) {
+            return;
+        }
+        long duration = info.getGcInfo().getDuration();
+        pauses++;
+        pauseMillis += duration;
+        maxPauseMillis = Math.max(maxPauseMillis, duration);
+    }
+
+    private synchronized void write(Path file, long wallMillis) throws IOException {
+        long heapNow = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        JsonObject metrics = new JsonObject();
+        metrics.addProperty("wallMillis", wallMillis);
+        metrics.addProperty("peakRssBytes", peakResidentBytes());
+        metrics.addProperty("peakHeapBytes", Math.max(peakHeapBytes, heapNow));
+        metrics.addProperty("gcPauses", pauses);
+        metrics.addProperty("gcPauseMillis", pauseMillis);
+        metrics.addProperty("gcMaxPauseMillis", maxPauseMillis);
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(metrics.toString());
+        }
+    }
+
+    private static long peakResidentBytes() {
+        try {
+            List<String> status = Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.UTF_8);
+            for (String line : status) {
+                if (line.startsWith("VmHWM:")) {
+                    // "VmHWM:    123456 kB"
+                    return Long.parseLong(line.substring("VmHWM:".length()).replace("kB", "").trim()) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not Linux: the resident peak is left out
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,112 @@
+package entregaUno;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the SalesProcessor hot paths on GenerateInfoFiles datasets
+ * of increasing size. Every benchmark is measured both as throughput and as
+ * sampled time per operation, which gives the latency percentiles; run with
+ * "-prof gc" for the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SalesProcessorBenchmark {
+
+    // Approximate number of sales lines in the dataset
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int saleLines;
+
+    private String dataDirectory;
+    private File[] salesFiles;
+    private int nextFile;
+
+    // Catalogs loaded and sales processed, for the report benchmarks
+    private SalesProcessor loaded;
+    // Target of the catalog benchmarks, reloaded on every call
+    private SalesProcessor catalogs;
+    private SalesProcessor.SalesAccumulator accumulator;
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void prepare() throws IOException {
+        dataDirectory = BenchmarkDatasets.prepare(saleLines);
+        salesFiles = new File(dataDirectory).listFiles(BenchmarkDatasets::isSalesFile);
+
+        // The processor reports progress on the console; keep it out of the measurements
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        loaded = new SalesProcessor(dataDirectory, BenchmarkDatasets.reportsDirectory("lineas_" + saleLines));
+        loaded.loadSellers();
+        loaded.loadProducts();
+        loaded.processSalesFiles();
+
+        catalogs = new SalesProcessor(dataDirectory, dataDirectory);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetAccumulator() {
+        // A fresh accumulator per iteration keeps the running totals far from overflow
+        accumulator = loaded.newAccumulator();
+    }
+
+    @TearDown(Level.Trial)
+    public void restoreConsole() {
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public SalesProcessor loadSellers() throws IOException {
+        catalogs.loadSellers();
+        return catalogs;
+    }
+
+    @Benchmark
+    public SalesProcessor loadProducts() throws IOException {
+        catalogs.loadProducts();
+        return catalogs;
+    }
+
+    /**
+     * Processes one sales file per operation, cycling through the dataset
+     */
+    @Benchmark
+    public SalesProcessor.SalesAccumulator processSaleFile() {
+        File file = salesFiles[nextFile];
+        nextFile = nextFile + 1 == salesFiles.length ? 0 : nextFile + 1;
+        loaded.processSaleFileSafely(file, accumulator);
+        return accumulator;
+    }
+
+    @Benchmark
+    public void createSellerReport() throws IOException {
+        loaded.createSellerReport();
+    }
+
+    @Benchmark
+    public void createProductReport() throws IOException {
+        loaded.createProductReport();
+    }
+}
@@ -0,0 +1,81 @@
+package entregaUno;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+class CsvReportWriterTest {
+
+    private interface Rows {
+        void write(CsvReportWriter writer) throws IOException;
+    }
+
+    private static String csv(Rows rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CsvReportWriter writer = new CsvReportWriter(Channels.newChannel(bytes), false)) {
+            rows.write(writer);
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void quotesTextFieldsAsRfc4180() throws IOException {
+        String nl = System.lineSeparator();
+        assertEquals("plain,\"a,b\",\"say \"\"hi\"\"\",\"two" + "\n" + "lines\"" + nl,
+            csv(writer -> writer.row("plain", "a,b", "say \"hi\"", "two\nlines")));
+    }
+
+    @Test
+    void quotesAmountsBecauseOfTheDecimalComma() throws IOException {
+        String nl = System.lineSeparator();
+        assertEquals("\"123,45\",\"0,05\",\"-1,00\",\"-92233720368547758,08\"" + nl,
+            csv(writer -> {
+                writer.money(12345).money(5).money(-100).money(Long.MIN_VALUE);
+                writer.endRow();
+            }));
+    }
+
+    @Test
+    void writesIntegersIncludingTheExtremes() throws IOException {
+        String nl = System.lineSeparator();
+        assertEquals("0,-7," + Long.MIN_VALUE + "," + Long.MAX_VALUE + nl,
+            csv(writer -> {
+                writer.field(0).field(-7).field(Long.MIN_VALUE).field(Long.MAX_VALUE);
+                writer.endRow();
+            }));
+    }
+
+    @Test
+    void encodesUtf8AcrossBufferFlushes() throws IOException {
+        // Longer than the 64 KB buffer, with two, three and four byte characters
+        String value = "ñ€😀".repeat(30_000);
+        String nl = System.lineSeparator();
+        assertEquals(value + "," + value + nl, csv(writer -> writer.row(value, value)));
+    }
+
+    @Test
+    void compressesWithGzip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (CsvReportWriter writer = new CsvReportWriter(Channels.newChannel(bytes), true)) {
+            writer.field("Señal").money(150).endRow();
+        }
+        StringBuilder text = new StringBuilder();
+        try (Reader reader = new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray())), StandardCharsets.UTF_8)) {
+            int c;
+            while ((c = reader.read()) != -1) {
+                text.append((char) c);
+            }
+        }
+        assertEquals("Señal,\"1,50\"" + System.lineSeparator(), text.toString());
+    }
+}
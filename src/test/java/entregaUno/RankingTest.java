@@ -0,0 +1,51 @@
+package entregaUno;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class RankingTest {
+
+    private static byte[] key(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void sortsKeysAsUnsignedBytes() {
+        byte[][] keys = {key("P010"), key("Ñandú"), key("P002"), key("P01"), key("CC:9")};
+        // 'Ñ' starts with 0xC3, which is negative as a signed byte
+        assertArrayEquals(new int[] {4, 2, 3, 0, 1}, Ranking.sortByKey(keys));
+    }
+
+    @Test
+    void keepsEqualKeysInIndexOrder() {
+        byte[][] keys = {key("B"), key("A"), key("B"), key("A")};
+        assertArrayEquals(new int[] {1, 3, 0, 2}, Ranking.sortByKey(keys));
+    }
+
+    @Test
+    void matchesAComparatorSort() {
+        Random random = new Random(11);
+        byte[][] keys = new byte[1000][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new byte[1 + random.nextInt(6)];
+            random.nextBytes(keys[i]);
+        }
+        int[] expected = IntStream.range(0, keys.length).boxed()
+            .sorted(Comparator.comparing(i -> keys[i], Arrays::compareUnsigned))
+            .mapToInt(Integer::intValue).toArray();
+        assertArrayEquals(expected, Ranking.sortByKey(keys));
+    }
+
+    @Test
+    void sortsEmptyAndSingleKeys() {
+        assertArrayEquals(new int[0], Ranking.sortByKey(new byte[0][]));
+        assertArrayEquals(new int[] {0}, Ranking.sortByKey(new byte[][] {key("x")}));
+    }
+}
@@ -0,0 +1,223 @@
+package entregaUno;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * End-to-end runs of SalesProcessor over a generated dataset: every way of
+ * splitting the work must write the same reports as a sequential run.
+ */
+class SalesProcessorTest {
+
+    private static final String[] REPORTS = {"reporte_vendedores.csv", "reporte_productos.csv"};
+
+    @TempDir
+    static Path directory;
+    private static String input;
+    private static String sequential;
+
+    @BeforeAll
+    static void generateDataset() throws IOException {
+        input = generate(directory.resolve("data"), 20000, 40, 7);
+        sequential = run("secuencial", "--threads=1");
+    }
+
+    /**
+     * Writes a GenerateInfoFiles dataset
+     * @return the input directory, ending in '/'
+     */
+    static String generate(Path target, int sellers, int products, long seed) throws IOException {
+        Files.createDirectories(target);
+        GenerateInfoFiles.Settings settings = new GenerateInfoFiles.Settings();
+        settings.seed = seed;
+        settings.threads = 2;
+        GenerateInfoFiles.generate(target + File.separator, sellers, products, settings);
+        return target + File.separator;
+    }
+
+    /**
+     * Runs the processor over the dataset
+     * @return the output directory, ending in '/'
+     */
+    private static String run(String name, String... args) throws IOException {
+        String output = directory.resolve(name) + File.separator;
+        assertEquals(0, SalesProcessor.run(new SalesProcessor(input, output), args));
+        return output;
+    }
+
+    /**
+     * Writes a small dataset with an unknown seller and rejectable lines
+     * @return the input directory, ending in '/'
+     */
+    private static String writeRejectableDataset() throws IOException {
+        Path target = directory.resolve("rechazos");
+        Files.createDirectories(target);
+        Files.write(target.resolve("vendedores.txt"), List.of("CC:1:Ana:Gómez", "CC:2:Luis:Pérez"), StandardCharsets.UTF_8);
+        Files.write(target.resolve("productos.txt"), List.of("P001:Mesa:100,50", "P002:Silla:20,00"), StandardCharsets.UTF_8);
+        Files.write(target.resolve("CC_1.txt"), List.of("CC:1", "P001:2;", "P999:1;", "P002:x;"), StandardCharsets.UTF_8);
+        Files.write(target.resolve("CC_2.txt"), List.of("CC:2", "P002:3;"), StandardCharsets.UTF_8);
+        Files.write(target.resolve("CC_3.txt"), List.of("CC:3", "P001:1;", "P998:4;", "P002:"), StandardCharsets.UTF_8);
+        return target + File.separator;
+    }
+
+    private static List<String> quarantine(String dataset, String name, String... args) throws IOException {
+        Path file = directory.resolve(name + ".csv");
+        List<String> arguments = new ArrayList<>(List.of(args));
+        arguments.add("--quarantine=" + file);
+        String output = directory.resolve(name) + File.separator;
+        assertEquals(0, SalesProcessor.run(new SalesProcessor(dataset, output), arguments.toArray(new String[0])));
+        List<String> rows = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Collections.sort(rows);
+        return rows;
+    }
+
+    private static void assertSameReports(String expected, String actual) throws IOException {
+        for (String report : REPORTS) {
+            List<String> expectedLines = Files.readAllLines(Path.of(expected, report), StandardCharsets.UTF_8);
+            assertTrue(expectedLines.size() > 1, report + " has no rows");
+            assertEquals(expectedLines, Files.readAllLines(Path.of(actual, report), StandardCharsets.UTF_8), report);
+        }
+    }
+
+    @Test
+    void threadCountDoesNotChangeTheReports() throws IOException {
+        assertSameReports(sequential, run("hilos_2", "--threads=2"));
+        assertSameReports(sequential, run("hilos_8", "--threads=8"));
+    }
+
+    @Test
+    void spillingMatchesTheInMemoryAggregation() throws IOException {
+        // The catalog needs a few megabytes of partitions, so 1 MB spills to several
+        assertSameReports(sequential, run("disco", "--threads=4", "--memory-budget=1"));
+    }
+
+    @Test
+    void spillingKeepsTheTopRows() throws IOException {
+        String inMemory = run("top_memoria", "--top=25");
+        assertSameReports(inMemory, run("top_disco", "--top=25", "--memory-budget=1"));
+    }
+
+    @Test
+    void spillingQuarantinesLikeTheInMemoryAggregation() throws IOException {
+        String dataset = writeRejectableDataset();
+        List<String> inMemory = quarantine(dataset, "cuarentena_memoria");
+        assertEquals(4, inMemory.size(), String.join("\n", inMemory));
+        assertEquals(inMemory, quarantine(dataset, "cuarentena_disco", "--memory-budget=1"));
+    }
+
+    @Test
+    void spillingStopsOnAnUnknownSellerInStrictMode() throws IOException {
+        String dataset = writeRejectableDataset();
+        String output = directory.resolve("estricto_disco") + File.separator;
+        assertEquals(1, SalesProcessor.run(new SalesProcessor(dataset, output), new String[] {"--strict", "--memory-budget=1"}));
+    }
+
+    @Test
+    void catalogSnapshotMatchesTheTextCatalogs() throws IOException {
+        String snapshot = "--catalog-snapshot=" + directory.resolve("catalogo.snapshot");
+        assertSameReports(sequential, run("instantanea_creada", snapshot));
+        assertSameReports(sequential, run("instantanea_mapeada", snapshot));
+    }
+
+    @Test
+    void mergedPartialsMatchASingleRun() throws IOException {
+        Path partials = directory.resolve("parciales");
+        Files.createDirectories(partials);
+        for (int part = 0; part < 3; part++) {
+            run("parte_" + part, "--part=" + part + "/3", "--map=" + partials.resolve("p" + part + PartialAggregate.EXTENSION));
+        }
+        assertSameReports(sequential, run("combinado", "--merge=" + partials));
+    }
+
+    @Test
+    void partialsMergeInLevels() throws IOException {
+        Path leaves = directory.resolve("hojas");
+        Files.createDirectories(leaves);
+        for (int part = 0; part < 4; part++) {
+            run("hoja_" + part, "--part=" + part + "/4", "--map=" + leaves.resolve("h" + part + PartialAggregate.EXTENSION));
+        }
+        Path level = directory.resolve("nivel");
+        Files.createDirectories(level);
+        run("nivel_0", "--merge=" + leaves.resolve("h0" + PartialAggregate.EXTENSION) + "," + leaves.resolve("h1" + PartialAggregate.EXTENSION),
+            "--map=" + level.resolve("n0" + PartialAggregate.EXTENSION));
+        run("nivel_1", "--merge=" + leaves.resolve("h2" + PartialAggregate.EXTENSION) + "," + leaves.resolve("h3" + PartialAggregate.EXTENSION),
+            "--map=" + level.resolve("n1" + PartialAggregate.EXTENSION));
+        assertSameReports(sequential, run("combinado_niveles", "--merge=" + level));
+    }
+
+    @Test
+    void rollupsDoNotDependOnTheThreadCount() throws IOException {
+        String[] rollupReports = {"reporte_vendedor_producto.csv", "reporte_ingresos_productos.csv",
+            "reporte_tipo_documento.csv", "reporte_estadisticas.csv"};
+        String one = run("agregaciones_1", "--threads=1", "--rollups=todos");
+        String four = run("agregaciones_4", "--threads=4", "--rollups=todos");
+        assertSameReports(sequential, one);
+        for (String report : rollupReports) {
+            assertEquals(Files.readAllLines(Path.of(one, report), StandardCharsets.UTF_8),
+                Files.readAllLines(Path.of(four, report), StandardCharsets.UTF_8), report);
+        }
+    }
+
+    @Test
+    void everyReportParsesAndSharesTheAmountFormat() throws IOException {
+        String output = run("formato", "--rollups=todos");
+        Map<String, String> prices = new HashMap<>();
+        for (List<String> row : parse(Path.of(output, "reporte_productos.csv"), SalesProcessor.PRODUCT_REPORT_HEADER.length)) {
+            prices.put(row.get(0), row.get(2));
+        }
+        for (List<String> row : parse(Path.of(output, "reporte_ingresos_productos.csv"),
+                SalesProcessor.PRODUCT_REVENUE_REPORT_HEADER.length)) {
+            assertEquals(prices.get(row.get(0)), row.get(2), "price of " + row.get(0));
+        }
+        parse(Path.of(output, "reporte_vendedores.csv"), SalesProcessor.SELLER_REPORT_HEADER.length);
+        parse(Path.of(output, "reporte_vendedor_producto.csv"), SalesProcessor.SELLER_PRODUCT_REPORT_HEADER.length);
+        parse(Path.of(output, "reporte_tipo_documento.csv"), SalesProcessor.DOCUMENT_TYPE_REPORT_HEADER.length);
+        parse(Path.of(output, "reporte_estadisticas.csv"), SalesProcessor.STATISTICS_REPORT_HEADER.length);
+    }
+
+    /**
+     * Reads an RFC 4180 report, checking that every row has the header's field count
+     * @return the rows after the header
+     */
+    private static List<List<String>> parse(Path report, int fields) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        for (String line : Files.readAllLines(report, StandardCharsets.UTF_8)) {
+            List<String> row = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted && c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = !quoted;
+                } else if (c == ',' && !quoted) {
+                    row.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            row.add(field.toString());
+            assertEquals(fields, row.size(), report.getFileName() + ": " + line);
+            rows.add(row);
+        }
+        return rows.subList(1, rows.size());
+    }
+}
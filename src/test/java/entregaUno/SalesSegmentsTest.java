@@ -0,0 +1,62 @@
+package entregaUno;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Range queries over segments compacted into a month and a week
+ */
+class SalesSegmentsTest {
+
+    @TempDir
+    static Path directory;
+    private static Path segments;
+
+    @BeforeAll
+    static void writeSegments() throws IOException {
+        Path input = directory.resolve("datos");
+        Files.createDirectories(input);
+        Files.write(input.resolve("vendedores.txt"), List.of("CC:1:Ana:Gómez"), StandardCharsets.UTF_8);
+        Files.write(input.resolve("productos.txt"), List.of("P001:Mesa:100,50"), StandardCharsets.UTF_8);
+        // Against 2026-05-31, January compacts into a month and the week of 2026-05-04 into a week
+        Files.write(input.resolve("CC_1.txt"), List.of("CC:1", "P001:1:2026-01-05;", "P001:2:2026-01-20;",
+            "P001:3:2026-05-06;", "P001:4:2026-05-31;"), StandardCharsets.UTF_8);
+        segments = directory.resolve("segmentos");
+        assertEquals(0, SalesProcessor.run(new SalesProcessor(input + File.separator, directory.resolve("reportes") + File.separator),
+            new String[] {"--segments=" + segments}));
+    }
+
+    @Test
+    void selectsTheCompactedSegmentsInsideTheRange() throws IOException {
+        assertEquals(2, SalesSegments.select(segments, LocalDate.parse("2026-01-01"), LocalDate.parse("2026-05-10")).size());
+    }
+
+    @Test
+    void namesTheMonthACutRangeHasToInclude() {
+        SegmentRangeException e = assertThrows(SegmentRangeException.class,
+            () -> SalesSegments.select(segments, LocalDate.parse("2026-01-10"), LocalDate.parse("2026-05-31")));
+        assertTrue(e.getMessage().contains("mensual 2026-01-01..2026-01-31"), e.getMessage());
+        assertTrue(e.getMessage().contains("--range=2026-01-01..2026-05-31"), e.getMessage());
+    }
+
+    @Test
+    void namesTheWeekACutRangeHasToInclude() {
+        SegmentRangeException e = assertThrows(SegmentRangeException.class,
+            () -> SalesSegments.select(segments, LocalDate.parse("2026-05-06"), LocalDate.parse("2026-05-31")));
+        assertTrue(e.getMessage().contains("semanal 2026-05-04..2026-05-10"), e.getMessage());
+        assertTrue(e.getMessage().contains("--range=2026-05-04..2026-05-31"), e.getMessage());
+    }
+}
@@ -0,0 +1,78 @@
+package entregaUno;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class SellerKeyIndexTest {
+
+    private static int get(CatalogIndex index, String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        return index.get(bytes, 0, bytes.length);
+    }
+
+    @Test
+    void packedAndFallbackKeysShareOneIndexSpace() {
+        SellerKeyIndex index = new SellerKeyIndex();
+        assertEquals(0, index.add("CC:12345678"));
+        assertEquals(1, index.add("PP:AB12"));
+        assertEquals(2, index.add("NIT:0012345678"));
+        assertEquals(3, index.add("CC:0012345678"));
+        assertEquals(4, index.size());
+        assertEquals(1, get(index, "PP:AB12"));
+        assertEquals(3, get(index, "CC:0012345678"));
+        assertEquals(CatalogIndex.NOT_FOUND, get(index, "CC:1"));
+        assertEquals(CatalogIndex.NOT_FOUND, get(index, "TI:12345678"));
+    }
+
+    @Test
+    void repeatedPackedKeyKeepsItsIndex() {
+        SellerKeyIndex index = new SellerKeyIndex();
+        assertEquals(0, index.add("CC:1"));
+        assertEquals(0, index.add("CC:1"));
+        assertEquals(1, index.add("CC:2"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void repeatedFallbackKeyKeepsItsIndex() {
+        SellerKeyIndex index = new SellerKeyIndex();
+        // The latest fallback key repeated right away, then an older one
+        assertEquals(0, index.add("PP:AB12"));
+        assertEquals(0, index.add("PP:AB12"));
+        assertEquals(1, index.add("CC:1"));
+        assertEquals(2, index.add("PP:CD34"));
+        assertEquals(0, index.add("PP:AB12"));
+        assertEquals(2, index.add("PP:CD34"));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void manyFallbackKeysSurviveGrowth() {
+        SellerKeyIndex index = new SellerKeyIndex(4);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(2 * i, index.add("PP:X" + i));
+            assertEquals(2 * i + 1, index.add("CC:" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(2 * i, get(index, "PP:X" + i));
+            assertEquals(2 * i + 1, get(index, "CC:" + i));
+        }
+    }
+
+    @Test
+    void byteKeyIndexInternsKeysInFirstSeenOrder() {
+        ByteKeyIndex index = new ByteKeyIndex(2);
+        assertEquals(0, index.add("P001"));
+        assertEquals(1, index.add("P002"));
+        assertEquals(0, index.add("P001"));
+        for (int i = 3; i < 100; i++) {
+            assertEquals(i - 1, index.add(String.format("P%03d", i)));
+        }
+        assertEquals(99, index.size());
+        assertEquals(1, get(index, "P002"));
+        assertEquals(CatalogIndex.NOT_FOUND, get(index, "P100"));
+    }
+}